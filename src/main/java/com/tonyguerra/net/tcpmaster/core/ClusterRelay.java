@@ -0,0 +1,318 @@
+package com.tonyguerra.net.tcpmaster.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Links a {@link TcpServer} to the other nodes of a static cluster.
+ * <p>
+ * Every node opens one outgoing link per seed and forwards the broadcasts and
+ * publishes that originate locally as {@code !cluster.relay} commands. The seed
+ * list is expected to be a full mesh (every node lists every other node), so
+ * relayed messages are delivered locally and never forwarded again. Each
+ * message carries a cluster-unique id ({@code nodeId-sequence}); a bounded set
+ * of recently seen ids drops duplicates (duplicate seeds, a node listing
+ * itself, resends after a reconnect).
+ * </p>
+ * <p>
+ * Links are authenticated with a secret shared by every node: the accepting
+ * node answers {@code !cluster.hello} with a random challenge, and the link
+ * proves it knows the secret with an HMAC-SHA256 of the challenge and its node
+ * id ({@code !cluster.auth}). The secret itself never goes over the wire; the
+ * traffic is not encrypted.
+ * </p>
+ */
+final class ClusterRelay implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterRelay.class);
+
+    private static final int SEEN_IDS_CAPACITY = 65_536;
+    private static final int LINK_QUEUE_CAPACITY = 65_536;
+    private static final long MAX_BACKOFF_MS = 5_000;
+    private static final int CHALLENGE_BYTES = 16;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final String nodeId;
+    private final byte[] secret;
+    private final AtomicLong sequence;
+    private final Map<String, Boolean> seenIds;
+    private final CopyOnWriteArrayList<PeerLink> links;
+    private final AtomicBoolean running;
+
+    ClusterRelay(String nodeId, String secret, List<InetSocketAddress> seeds) {
+        this.nodeId = nodeId;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.sequence = new AtomicLong();
+        this.seenIds = new LinkedHashMap<>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > SEEN_IDS_CAPACITY;
+            }
+        };
+        this.links = new CopyOnWriteArrayList<>();
+        this.running = new AtomicBoolean(true);
+
+        for (final var seed : seeds) {
+            final var link = new PeerLink(seed);
+            links.add(link);
+            link.start();
+        }
+    }
+
+    int connectedLinks() {
+        int up = 0;
+        for (final var link : links) {
+            if (link.connected) {
+                up++;
+            }
+        }
+        return up;
+    }
+
+    void forwardBroadcast(String senderId, String message) {
+        forward(String.format("!cluster.relay %s B %s %s", nextId(), senderId, message));
+    }
+
+    void forwardPublish(String topic, String senderId, String message) {
+        forward(String.format("!cluster.relay %s P %s %s %s", nextId(), topic, senderId, message));
+    }
+
+    /**
+     * Records a message id.
+     *
+     * @return true if the id was not seen before (the message must be delivered)
+     */
+    boolean markSeen(String messageId) {
+        synchronized (seenIds) {
+            return seenIds.put(messageId, Boolean.TRUE) == null;
+        }
+    }
+
+    /**
+     * @return a fresh challenge for a node asking to link to this one
+     */
+    static String newChallenge() {
+        final byte[] bytes = new byte[CHALLENGE_BYTES];
+        RANDOM.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * Checks the answer of a linking node to a challenge.
+     *
+     * @return true if the node knows the cluster secret
+     */
+    boolean verify(String peerId, String challenge, String proof) {
+        final byte[] expected = proof(peerId, challenge).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, proof.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String proof(String peerId, String challenge) {
+        try {
+            final var mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal((challenge + " " + peerId).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException ex) {
+            // Every JDK provides HmacSHA256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private String nextId() {
+        final String id = nodeId + "-" + sequence.incrementAndGet();
+        markSeen(id);
+        return id;
+    }
+
+    private void forward(String line) {
+        for (final var link : links) {
+            if (!link.queue.offer(line)) {
+                LOGGER.warn("⚠️ Cluster link {} backlog full, dropping relay", link.address);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        links.forEach(PeerLink::close);
+    }
+
+    private final class PeerLink {
+        private final InetSocketAddress address;
+        private final BlockingQueue<String> queue;
+        private final Thread thread;
+
+        private volatile Socket socket;
+        private volatile boolean connected;
+
+        private PeerLink(InetSocketAddress address) {
+            this.address = address;
+            this.queue = new LinkedBlockingQueue<>(LINK_QUEUE_CAPACITY);
+            this.thread = new Thread(this::run, "TcpServer-ClusterLink-" + address);
+            this.thread.setDaemon(true);
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void run() {
+            long backoffMs = 100;
+            String pending = null;
+
+            while (running.get()) {
+                try (final var s = new Socket()) {
+                    s.connect(address, 2_000);
+                    s.setTcpNoDelay(true);
+                    socket = s;
+
+                    final var out = s.getOutputStream();
+                    authenticate(s, out);
+
+                    startResponseDrain(s);
+                    connected = true;
+                    backoffMs = 100;
+                    LOGGER.info("🔗 Cluster link up: {}", address);
+
+                    while (running.get()) {
+                        if (pending == null) {
+                            pending = queue.poll(500, TimeUnit.MILLISECONDS);
+                            if (pending == null) {
+                                continue;
+                            }
+                        }
+                        out.write((pending + "\n").getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                        pending = null;
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException ex) {
+                    if (running.get()) {
+                        LOGGER.debug("Cluster link {} unavailable: {}", address, ex.getMessage());
+                    }
+                } finally {
+                    connected = false;
+                    socket = null;
+                }
+
+                // The failed line (if any) is resent after reconnecting; peers
+                // drop it if it had already arrived.
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+
+        // Hello, challenge, proof. A peer that has been started but has not
+        // joined the cluster yet refuses the hello, and would then reject every
+        // relay on this link: only count the link as up once the peer accepted
+        // it, otherwise retry later.
+        private void authenticate(Socket s, OutputStream out) throws IOException {
+            s.setSoTimeout(2_000);
+            final InputStream in = s.getInputStream();
+
+            out.write(("!cluster.hello " + nodeId + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            final String hello = awaitReply(in);
+            if (!hello.startsWith("OK CHALLENGE ")) {
+                throw new IOException("Peer refused the link: " + hello);
+            }
+
+            final String challenge = hello.substring("OK CHALLENGE ".length()).trim();
+            out.write(("!cluster.auth " + proof(nodeId, challenge) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            final String auth = awaitReply(in);
+            if (!auth.startsWith("OK")) {
+                throw new IOException("Peer refused the link: " + auth);
+            }
+            s.setSoTimeout(0);
+        }
+
+        // Next OK/ERROR line; anything pushed before it (e.g. history replay) is skipped
+        private static String awaitReply(InputStream in) throws IOException {
+            final var line = new ByteArrayOutputStream();
+
+            while (true) {
+                final int b = in.read();
+                if (b == -1) {
+                    throw new IOException("Peer closed the link during hello");
+                }
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                final String reply = line.toString(StandardCharsets.UTF_8).trim();
+                line.reset();
+                if (reply.startsWith("OK") || reply.startsWith("ERROR")) {
+                    return reply;
+                }
+            }
+        }
+
+        // Peers answer every relay line; read and discard so the socket never
+        // stalls, and close it on EOF so the writer notices a dead peer quickly.
+        private void startResponseDrain(Socket s) {
+            final var drain = new Thread(() -> {
+                final byte[] buf = new byte[4096];
+                try (final InputStream in = s.getInputStream()) {
+                    while (in.read(buf) != -1) {
+                        // discard
+                    }
+                } catch (IOException ignored) {
+                } finally {
+                    try {
+                        s.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }, "TcpServer-ClusterDrain-" + address);
+            drain.setDaemon(true);
+            drain.start();
+        }
+
+        private void close() {
+            thread.interrupt();
+            final var s = socket;
+            if (s != null) {
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -1,34 +1,55 @@
 package com.tonyguerra.net.tcpmaster.core;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.tonyguerra.net.tcpmaster.core.components.ChannelReader;
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+import com.tonyguerra.net.tcpmaster.core.components.FileDelta;
+import com.tonyguerra.net.tcpmaster.core.components.FileSignature;
 import com.tonyguerra.net.tcpmaster.core.components.ProgressCallback;
+import com.tonyguerra.net.tcpmaster.core.components.TransferCodec;
+import com.tonyguerra.net.tcpmaster.core.components.TransferCodecs;
 import com.tonyguerra.net.tcpmaster.di.Container;
 import com.tonyguerra.net.tcpmaster.enums.TcpType;
 import com.tonyguerra.net.tcpmaster.errors.TcpException;
@@ -39,6 +60,26 @@ import com.tonyguerra.net.tcpmaster.handlers.TcpHandlerScanner;
 public final class TcpClient implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TcpClient.class);
 
+    // Pause before reconnect attempt n is n times this
+    private static final long UPLOAD_RESUME_BACKOFF_MS = 250;
+
+    // Chunk size bounds for parallel uploads (several chunks per stream, so
+    // faster streams pick up more of the file)
+    private static final long MIN_UPLOAD_CHUNK = 1024 * 1024;
+    private static final long MAX_UPLOAD_CHUNK = 64L * 1024 * 1024;
+
+    // Pipelined directory upload: files in flight before waiting for a reply,
+    // the largest file sent inline with its header, and the write batch size
+    private static final int PUSH_WINDOW = 256;
+    private static final int PUSH_INLINE_LIMIT = 64 * 1024;
+    private static final int PUSH_BATCH_SIZE = 256 * 1024;
+
+    // Longest request id the server accepts in a "#<id> " prefix
+    private static final int MAX_REQUEST_ID_DIGITS = 18;
+
+    // Read buffer of the socket reader (also carries downloaded file bytes)
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
     private final String ip;
     private final int port;
 
@@ -54,6 +95,14 @@ public final class TcpClient implements Closeable {
     // Responses (request/response serial model)
     private final BlockingQueue<String> responses;
 
+    // Multiplexed requests waiting for the reply carrying their id
+    private final ConcurrentHashMap<Long, CompletableFuture<String>> inFlight;
+    private final AtomicLong nextRequestId;
+
+    // Id of the tagged request each thread sent last: a payload the thread
+    // sends next is confirmed with that id
+    private final ThreadLocal<Long> lastRequestId;
+
     // Listeners
     private final CopyOnWriteArrayList<ConnectionListener> connectionListeners;
     private final CopyOnWriteArrayList<MessageListener> messageListeners;
@@ -67,15 +116,22 @@ public final class TcpClient implements Closeable {
     private final ExecutorService asyncExecutor;
 
     private Socket socket;
-    private BufferedReader in;
+    private ChannelReader in;
     private PrintWriter out;
     private Thread readerThread;
 
+    // Download waiting for its "OK SIZE" header (consumed by the reader thread)
+    private volatile PendingDownload pendingDownload;
+
     // Config
     private volatile long responseTimeoutMs;
     private volatile boolean logNonBroadcastMessages;
 
     private volatile ClientCommandPolicy commandPolicy;
+    private volatile int uploadResumeAttempts;
+    private volatile FileChecksum.Algorithm uploadChecksum;
+    private volatile TransferCodec uploadCodec;
+    private volatile boolean requestMultiplexing;
 
     /**
      * Creates a TCP client for communication with a server.
@@ -88,17 +144,29 @@ public final class TcpClient implements Closeable {
      * @throws IllegalArgumentException if port is out of valid range
      */
     public TcpClient(String ip, int port) {
+        this(ip, port, scanHandlers(), new Container());
+
+        // Allow handlers to request the client instance via DI
+        this.container.registerInstance(TcpClient.class, this);
+    }
+
+    // Client of a TcpClientPool: handlers and their instances are shared with
+    // the other clients of the pool
+    TcpClient(String ip, int port, HandlerRegistry registry, Container container) {
         this.ip = Objects.requireNonNull(ip, "ip");
         if (port <= 0 || port > 65535) {
             throw new IllegalArgumentException(
                     String.format("port must be between 1 and 65535, got: %d", port));
         }
         this.port = port;
-        this.container = new Container();
+        this.container = container;
         this.connected = new AtomicBoolean(false);
         this.lifecycleLock = new Object();
         this.responses = new LinkedBlockingQueue<>();
-        this.registry = new HandlerRegistry();
+        this.inFlight = new ConcurrentHashMap<>();
+        this.nextRequestId = new AtomicLong();
+        this.lastRequestId = new ThreadLocal<>();
+        this.registry = registry;
         this.connectionListeners = new CopyOnWriteArrayList<>();
         this.messageListeners = new CopyOnWriteArrayList<>();
         this.broadcastListeners = new CopyOnWriteArrayList<>();
@@ -107,15 +175,18 @@ public final class TcpClient implements Closeable {
         this.responseTimeoutMs = 10_000;
         this.logNonBroadcastMessages = true;
         this.commandPolicy = ClientCommandPolicy.LOCAL_ONLY;
+        this.uploadResumeAttempts = 3;
+    }
+
+    static HandlerRegistry scanHandlers() {
+        final var registry = new HandlerRegistry();
 
         // Register defaults shipped with the lib
         registry.registerDefault(TcpHandlerScanner.scanDefaults(TcpType.CLIENT));
 
         // Register user-defined handlers (application code)
         registry.registerUser(TcpHandlerScanner.scanUserHandlers(TcpType.CLIENT));
-
-        // Allow handlers to request the client instance via DI
-        this.container.registerInstance(TcpClient.class, this);
+        return registry;
     }
 
     public boolean isConnected() {
@@ -139,6 +210,76 @@ public final class TcpClient implements Closeable {
         return this;
     }
 
+    /**
+     * Sets how many times {@code uploadFile} reconnects and resumes after the
+     * connection drops mid-upload (from the bytes the server already holds).
+     * Default is 3; 0 disables resuming.
+     */
+    public TcpClient setUploadResumeAttempts(int attempts) {
+        if (attempts < 0)
+            throw new IllegalArgumentException("attempts must be >= 0");
+        this.uploadResumeAttempts = attempts;
+        return this;
+    }
+
+    /**
+     * Makes {@code uploadFile} send a checksum of the whole file with
+     * {@code !file.put}; the server verifies it while storing the bytes and
+     * answers "ERROR CHECKSUM" on a mismatch. Computing it costs one local pass
+     * over the file before sending. Null (the default) disables it.
+     * <p>
+     * With SHA-256, a server using content-addressed storage skips the
+     * transfer of content it already holds ({@code uploadFile} then returns
+     * "OK EXISTS ...").
+     * </p>
+     */
+    public TcpClient setUploadChecksum(FileChecksum.Algorithm algorithm) {
+        this.uploadChecksum = algorithm;
+        return this;
+    }
+
+    /**
+     * Makes {@code uploadFile} compress the bytes it sends with the named codec
+     * ("deflate" is built in, see {@link TransferCodecs}). Before each upload
+     * the first block of the file is trial-compressed, and files that do not
+     * shrink (media, archives) are sent uncompressed. Null (the default)
+     * disables compression.
+     *
+     * @throws IllegalArgumentException if the codec is unknown
+     */
+    public TcpClient setUploadCompression(String codec) {
+        if (codec == null) {
+            this.uploadCodec = null;
+            return this;
+        }
+
+        final var resolved = TransferCodecs.get(codec);
+        if (resolved == null)
+            throw new IllegalArgumentException("Unknown codec: " + codec);
+        this.uploadCodec = resolved;
+        return this;
+    }
+
+    /**
+     * Makes {@code sendMessage} prefix each request with {@code #<id> }; the
+     * server echoes the prefix on its reply, and the reader thread hands the
+     * reply to the request with that id. Any number of threads can then share
+     * one connection without receiving each other's replies, and pushed
+     * messages never take the place of a reply. Off by default.
+     * <p>
+     * Transfers ({@code uploadFile}, {@code downloadFile}, ...) are not
+     * multiplexed. The confirmation of a payload sent with {@code sendBinary}
+     * after a request from the same thread goes to {@link #readNextResponse()}
+     * without its prefix. A tagged reply nobody waits for any more (after a
+     * timeout) is logged and dropped, so it never passes for the reply to
+     * another request.
+     * </p>
+     */
+    public TcpClient setRequestMultiplexing(boolean enabled) {
+        this.requestMultiplexing = enabled;
+        return this;
+    }
+
     public TcpClient setLogNonBroadcastMessages(boolean enabled) {
         this.logNonBroadcastMessages = enabled;
         return this;
@@ -198,8 +339,12 @@ public final class TcpClient implements Closeable {
                 throw new TcpException("Client is already connected.");
 
             try {
-                socket = new Socket(ip, port);
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                // Drop leftovers of a previous connection (e.g. the disconnect marker)
+                responses.clear();
+
+                final var channel = SocketChannel.open(new InetSocketAddress(ip, port));
+                socket = channel.socket();
+                in = new ChannelReader(channel, READ_BUFFER_SIZE);
                 out = new PrintWriter(socket.getOutputStream(), true);
 
                 connected.set(true);
@@ -261,47 +406,156 @@ public final class TcpClient implements Closeable {
             throw new IllegalArgumentException("message must not be null");
 
         try {
-            final String trimmed = message.trim();
-            if (trimmed.isEmpty())
-                return "OK";
+            final var routed = route(message, readCommand);
+            if (routed.localResponse() != null)
+                return routed.localResponse();
 
-            final String commandKey = extractCommandKey(trimmed);
+            return sendRawToServer(routed.toSend());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TcpException("⚠️ Interrupted while waiting response.");
+        }
+    }
 
-            var outcome = new LocalCommandOutcome(false, null);
+    /**
+     * Sends several messages in one write and returns their responses in
+     * order, so the whole batch costs about one round-trip instead of one per
+     * message. Each message goes through the local handlers and
+     * {@link #setCommandPolicy(ClientCommandPolicy)} exactly like
+     * {@link #sendMessage(String)}; messages handled locally are answered
+     * without being sent.
+     * <p>
+     * Requests carry a {@code #<id>} prefix (see
+     * {@link #setRequestMultiplexing(boolean)}), so the batch can run while
+     * other threads use the connection. Every response must arrive within the
+     * response timeout of the write.
+     * </p>
+     *
+     * @param messages the messages to send (none may be null)
+     * @return one response per message, in the same order
+     * @throws TcpException if not connected, a handler fails, or a response
+     *                      does not arrive in time
+     */
+    public List<String> sendBatch(List<String> messages) throws TcpException {
+        final var replies = sendBatchAsync(messages);
+        final List<String> responses = new ArrayList<>(replies.size());
 
-            if (readCommand && commandPolicy != ClientCommandPolicy.REMOTE_ONLY) {
-                outcome = handleCommandIfExists(commandKey, trimmed);
+        try {
+            for (final var reply : replies) {
+                responses.add(reply.get());
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TcpException("⚠️ Interrupted while waiting response.");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof TimeoutException) {
+                throw new TcpException("Timeout waiting server response");
+            }
+            throw new TcpException(ex.getCause());
+        }
+        return responses;
+    }
 
-            // 1) If handler returned explicit decision, obey it
-            if (outcome.decision() != null) {
-                if (outcome.decision() instanceof ClientCommandResult.DontSend d) {
-                    return d.localResponse().orElse("OK (handled locally)");
-                }
-                if (outcome.decision() instanceof ClientCommandResult.Send s) {
-                    return sendRawToServer(s.messageToSend());
-                }
+    /**
+     * Streaming form of {@link #sendBatch(List)}: returns once the messages are
+     * written, with one future per message that completes when its response
+     * arrives (or fails with a {@link TimeoutException} after the response
+     * timeout).
+     */
+    public List<CompletableFuture<String>> sendBatchAsync(List<String> messages) throws TcpException {
+        if (!connected.get())
+            throw new TcpException("No Server Connected");
+        if (messages == null)
+            throw new IllegalArgumentException("messages must not be null");
+
+        final List<CompletableFuture<String>> replies = new ArrayList<>(messages.size());
+        final Map<Long, CompletableFuture<String>> sent = new LinkedHashMap<>();
+        final var batch = new StringBuilder();
+
+        for (final String message : messages) {
+            if (message == null)
+                throw new IllegalArgumentException("messages must not contain null");
+
+            final var routed = route(message, true);
+            if (routed.localResponse() != null) {
+                replies.add(CompletableFuture.completedFuture(routed.localResponse()));
+                continue;
             }
 
-            // 2) No explicit decision: apply policy
-            if (outcome.handled()) {
-                if (commandPolicy == ClientCommandPolicy.LOCAL_ONLY) {
-                    return "OK (handled locally)";
-                }
-                // LOCAL_AND_REMOTE -> send original
-                // REMOTE_ONLY doesn't reach here
+            final long id = nextRequestId.incrementAndGet();
+            final var reply = new CompletableFuture<String>();
+            sent.put(id, reply);
+            replies.add(reply);
+            batch.append('#').append(id).append(' ').append(routed.toSend()).append('\n');
+        }
+
+        if (sent.isEmpty()) {
+            return replies;
+        }
+
+        inFlight.putAll(sent);
+        synchronized (lifecycleLock) {
+            if (!connected.get() || out == null) {
+                sent.keySet().forEach(inFlight::remove);
+                throw new TcpException("No Server Connected");
             }
+            // One flush for the whole batch
+            out.print(batch);
+            out.flush();
+        }
 
-            return sendRawToServer(trimmed);
-        } catch (InterruptedException ex) {
-            Thread.currentThread().interrupt();
-            throw new TcpException("⚠️ Interrupted while waiting response.");
+        // The reader removes answered ids; timed out ones are removed here
+        sent.forEach((id, reply) -> reply.orTimeout(responseTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((response, ex) -> inFlight.remove(id, reply)));
+        return replies;
+    }
+
+    // Applies the local handlers and the command policy to a message: either
+    // a local response or the line to send is set
+    private Routing route(String message, boolean readCommand) throws TcpException {
+        final String trimmed = message.trim();
+        if (trimmed.isEmpty())
+            return new Routing("OK", null);
+
+        final String commandKey = extractCommandKey(trimmed);
+
+        var outcome = new LocalCommandOutcome(false, null);
+
+        try {
+            if (readCommand && commandPolicy != ClientCommandPolicy.REMOTE_ONLY) {
+                outcome = handleCommandIfExists(commandKey, trimmed);
+            }
         } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
             throw new TcpException(ex);
         }
+
+        // 1) If handler returned explicit decision, obey it
+        if (outcome.decision() != null) {
+            if (outcome.decision() instanceof ClientCommandResult.DontSend d) {
+                return new Routing(d.localResponse().orElse("OK (handled locally)"), null);
+            }
+            if (outcome.decision() instanceof ClientCommandResult.Send s) {
+                return new Routing(null, s.messageToSend());
+            }
+        }
+
+        // 2) No explicit decision: apply policy
+        if (outcome.handled()) {
+            if (commandPolicy == ClientCommandPolicy.LOCAL_ONLY) {
+                return new Routing("OK (handled locally)", null);
+            }
+            // LOCAL_AND_REMOTE -> send original
+            // REMOTE_ONLY doesn't reach here
+        }
+
+        return new Routing(null, trimmed);
     }
 
     private String sendRawToServer(String msg) throws TcpException, InterruptedException {
+        if (requestMultiplexing) {
+            return sendTagged(msg);
+        }
+
         // Entire send + wait must be atomic to prevent race conditions
         synchronized (lifecycleLock) {
             if (!connected.get() || out == null)
@@ -317,6 +571,50 @@ public final class TcpClient implements Closeable {
         return response;
     }
 
+    // The reply is routed by id, so only the write needs the lock
+    private String sendTagged(String msg) throws TcpException, InterruptedException {
+        final long id = nextRequestId.incrementAndGet();
+        final var reply = new CompletableFuture<String>();
+        inFlight.put(id, reply);
+
+        try {
+            synchronized (lifecycleLock) {
+                if (!connected.get() || out == null)
+                    throw new TcpException("No Server Connected");
+                out.println("#" + id + " " + msg);
+                out.flush();
+            }
+            final String response = reply.get(responseTimeoutMs, TimeUnit.MILLISECONDS);
+            lastRequestId.set(id);
+            return response;
+        } catch (TimeoutException ex) {
+            throw new TcpException("Timeout waiting server response");
+        } catch (ExecutionException ex) {
+            throw new TcpException(ex.getCause());
+        } finally {
+            inFlight.remove(id);
+        }
+    }
+
+    // With request multiplexing, the server confirms a payload with the id of
+    // the request that announced it: wait for that id, and hand the reply to
+    // readNextResponse like an untagged one. Run the result once the payload
+    // is written, to start the timeout.
+    private Runnable expectPayloadConfirmation() {
+        final Long id = lastRequestId.get();
+        lastRequestId.remove();
+        if (!requestMultiplexing || id == null) {
+            return () -> {
+            };
+        }
+
+        final var confirmation = new CompletableFuture<String>();
+        confirmation.thenAccept(responses::offer);
+        inFlight.put(id, confirmation);
+        return () -> confirmation.orTimeout(responseTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((response, ex) -> inFlight.remove(id, confirmation));
+    }
+
     public void sendBinary(InputStream data, long size, ProgressCallback progress) throws IOException {
         if (data == null)
             throw new IllegalArgumentException("data must not be null");
@@ -325,6 +623,15 @@ public final class TcpClient implements Closeable {
         if (!connected.get())
             throw new IOException("Client not connected");
 
+        final var confirmation = expectPayloadConfirmation();
+        try {
+            writeBinary(data, size, progress);
+        } finally {
+            confirmation.run();
+        }
+    }
+
+    private void writeBinary(InputStream data, long size, ProgressCallback progress) throws IOException {
         synchronized (lifecycleLock) {
             if (socket == null || socket.isClosed())
                 throw new IOException("Socket is closed");
@@ -398,22 +705,308 @@ public final class TcpClient implements Closeable {
             throw new IOException("File is empty or size is invalid: " + localFile);
         }
 
-        // 1) Tell server what is coming (NO extra "size" token)
-        final String initResp = sendMessage(String.format("!file.put %s %d",
-                remotePath, size), false);
+        final var algorithm = uploadChecksum;
+        final String checksum = algorithm != null ? FileChecksum.compute(algorithm, localFile) : null;
+
+        long offset = 0;
+        int resumes = 0;
+
+        while (true) {
+            try {
+                return uploadFrom(localFile, remotePath, size, offset, checksum, progress);
+            } catch (IOException ex) {
+                // A refusal on a live connection is final; a lost connection is resumed
+                if ((ex instanceof TcpException && connected.get()) || resumes >= uploadResumeAttempts) {
+                    throw ex;
+                }
+
+                resumes++;
+                LOGGER.warn("🔁 Upload of {} interrupted ({}), resuming ({}/{})", remotePath, ex.getMessage(),
+                        resumes, uploadResumeAttempts);
+                offset = reconnectForResume(remotePath, size, resumes);
+            }
+        }
+    }
+
+    private String uploadFrom(Path localFile, String remotePath, long size, long offset, String checksum,
+            ProgressCallback progress) throws TcpException, IOException {
+        // 1) Tell server what is coming (the offset resumes a partial upload)
+        final var header = new StringBuilder("!file.put ").append(remotePath).append(' ').append(size);
+        if (offset > 0) {
+            header.append(' ').append(offset);
+        }
+        if (checksum != null) {
+            header.append(' ').append(checksum);
+        }
+        final var codec = offset < size ? compressionFor(localFile, offset) : null;
+        if (codec != null) {
+            header.append(" codec=").append(codec.name());
+        }
+        final String initResp = sendMessage(header.toString(), false);
 
         // Only keep this check if your server actually returns "OK ..."
         if (!initResp.startsWith("OK")) {
             throw new TcpException("Server refused upload: " + initResp);
         }
 
+        // Content-addressed server that already holds these bytes: nothing to send
+        if (initResp.startsWith("OK EXISTS")) {
+            if (progress != null) {
+                progress.onProgress(size, size);
+            }
+            return initResp;
+        }
+
         // 2) Send bytes
-        try (final var is = Files.newInputStream(localFile)) {
-            sendBinary(is, size, progress);
+        if (codec != null) {
+            final var confirmation = expectPayloadConfirmation();
+            try {
+                sendCompressed(localFile, offset, size - offset, codec, progress == null
+                        ? null
+                        : (sent, total) -> progress.onProgress(offset + sent, size));
+            } finally {
+                confirmation.run();
+            }
+        } else if (offset < size) {
+            try (final var is = Files.newInputStream(localFile)) {
+                is.skipNBytes(offset);
+                sendBinary(is, size - offset, progress == null
+                        ? null
+                        : (sent, total) -> progress.onProgress(offset + sent, size));
+            }
         }
 
         // 3) Read confirmation (OK STORED ...)
-        return readNextResponse();
+        final String confirm = readNextResponse();
+        if (!confirm.startsWith("OK") && !connected.get()) {
+            throw new TcpException("Connection lost before upload confirmation");
+        }
+        return confirm;
+    }
+
+    // The configured codec, unless the file's first block does not compress
+    private TransferCodec compressionFor(Path localFile, long offset) throws IOException {
+        final var codec = uploadCodec;
+        if (codec == null) {
+            return null;
+        }
+
+        final var sample = ByteBuffer.allocate(TransferCodecs.FRAME_SIZE);
+        try (final var file = FileChannel.open(localFile, StandardOpenOption.READ)) {
+            file.read(sample, offset);
+        }
+        return TransferCodecs.isWorthCompressing(codec, sample.flip()) ? codec : null;
+    }
+
+    // Sends `count` bytes from `offset` as codec frames (see TransferCodec)
+    private void sendCompressed(Path localFile, long offset, long count, TransferCodec codec,
+            ProgressCallback progress) throws IOException {
+        if (!connected.get())
+            throw new IOException("Client not connected");
+
+        final var raw = ByteBuffer.allocate(TransferCodecs.FRAME_SIZE);
+        final var frame = ByteBuffer.allocate(8 + TransferCodecs.MAX_ENCODED_FRAME);
+
+        synchronized (lifecycleLock) {
+            if (socket == null || socket.isClosed())
+                throw new IOException("Socket is closed");
+
+            final var outStream = socket.getOutputStream();
+
+            try (final var file = FileChannel.open(localFile, StandardOpenOption.READ);
+                    final var encoder = codec.newEncoder()) {
+                long sent = 0;
+                while (sent < count) {
+                    raw.clear().limit((int) Math.min(raw.capacity(), count - sent));
+                    while (raw.hasRemaining()) {
+                        if (file.read(raw, offset + sent + raw.position()) == -1) {
+                            throw new IOException("Local file shrank during upload: " + localFile);
+                        }
+                    }
+
+                    final int rawLength = raw.flip().remaining();
+                    encoder.encode(raw, frame.clear().position(8));
+                    frame.putInt(0, rawLength).putInt(4, frame.position() - 8);
+                    outStream.write(frame.array(), 0, frame.position());
+
+                    sent += rawLength;
+                    if (progress != null) {
+                        progress.onProgress(sent, count);
+                    }
+                }
+            }
+
+            outStream.flush();
+        }
+    }
+
+    // Returns the offset to resume from (what the server already holds)
+    private long reconnectForResume(String remotePath, long size, int attempt) throws TcpException {
+        try {
+            disconnect();
+        } catch (TcpException ignored) {
+        }
+
+        try {
+            Thread.sleep(UPLOAD_RESUME_BACKOFF_MS * attempt);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TcpException("Interrupted while resuming upload");
+        }
+
+        try {
+            connect();
+        } catch (TcpException ex) {
+            LOGGER.warn("⚠️ Reconnect failed: {}", ex.getMessage());
+            return 0;
+        }
+
+        // "OK STAT <bytes> PARTIAL" -> continue after the bytes the server has
+        final String[] stat = sendMessage("!file.stat " + remotePath, false).split("\\s+");
+        if (stat.length == 4 && "STAT".equals(stat[1]) && "PARTIAL".equals(stat[3])) {
+            try {
+                final long received = Long.parseLong(stat[2]);
+                if (received >= 0 && received <= size) {
+                    return received;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Uploads a file over {@code streams} extra connections in parallel.
+     * <p>
+     * The file is split into chunks that the connections take in turn and send
+     * with {@code !file.chunk}; the server writes each chunk in place and
+     * stores the file once every chunk has arrived. Chunks are sent with
+     * {@link FileChannel#transferTo}, so the bytes are not copied through the
+     * Java heap. This client's own connection is not used.
+     * </p>
+     *
+     * @param localFile  the file to upload
+     * @param remotePath path relative to the server's upload directory
+     * @param streams    number of parallel connections (1 to 64)
+     * @param progress   optional callback (bytes sent, file size), may be
+     *                   called from several threads
+     * @return the server confirmation ("OK STORED ...")
+     */
+    public String uploadFileParallel(Path localFile, String remotePath, int streams, ProgressCallback progress)
+            throws TcpException, IOException {
+        if (localFile == null) {
+            throw new IllegalArgumentException("localFile must not be null");
+        }
+        if (remotePath == null || remotePath.isBlank() || remotePath.contains(" ")) {
+            throw new IllegalArgumentException("remotePath must not be null/blank or contain spaces");
+        }
+        if (streams < 1 || streams > 64) {
+            throw new IllegalArgumentException("streams must be between 1 and 64");
+        }
+        if (!Files.isRegularFile(localFile)) {
+            throw new IOException("Local file not found or not a regular file: " + localFile);
+        }
+
+        final long size = Files.size(localFile);
+        if (size <= 0) {
+            throw new IOException("File is empty or size is invalid: " + localFile);
+        }
+
+        final long chunkSize = Math.max(MIN_UPLOAD_CHUNK,
+                Math.min(MAX_UPLOAD_CHUNK, (size + streams * 4L - 1) / (streams * 4L)));
+
+        // Tells the chunks of this upload from those of an earlier, aborted one
+        final String uploadId = UUID.randomUUID().toString();
+        final var nextOffset = new AtomicLong();
+        final var sent = new AtomicLong();
+        final var stored = new AtomicReference<String>();
+        final var failed = new AtomicBoolean();
+
+        final List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(streams, (size + chunkSize - 1) / chunkSize); i++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    uploadChunks(localFile, remotePath, uploadId, size, chunkSize, nextOffset, failed, stored, sent,
+                            progress);
+                } catch (IOException ex) {
+                    failed.set(true);
+                    throw new CompletionException(ex);
+                }
+            }, asyncExecutor));
+        }
+
+        try {
+            CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failed.set(true);
+            throw new TcpException("Interrupted while uploading");
+        } catch (ExecutionException ex) {
+            final var cause = ex.getCause() instanceof CompletionException ce ? ce.getCause() : ex.getCause();
+            if (cause instanceof IOException ioe)
+                throw ioe;
+            throw new TcpException(cause);
+        }
+
+        final String confirm = stored.get();
+        if (confirm == null) {
+            throw new TcpException("Server did not confirm the upload");
+        }
+        return confirm;
+    }
+
+    // One worker connection: takes chunks until the file is exhausted
+    private void uploadChunks(Path localFile, String remotePath, String uploadId, long size, long chunkSize,
+            AtomicLong nextOffset, AtomicBoolean failed, AtomicReference<String> stored, AtomicLong sent,
+            ProgressCallback progress) throws IOException {
+        try (final var channel = SocketChannel.open(new InetSocketAddress(ip, port));
+                final var file = FileChannel.open(localFile, StandardOpenOption.READ)) {
+            final var reader = new ChannelReader(channel, 4096);
+
+            long offset;
+            while (!failed.get() && (offset = nextOffset.getAndAdd(chunkSize)) < size) {
+                final long length = Math.min(chunkSize, size - offset);
+
+                channel.write(StandardCharsets.UTF_8.encode(
+                        String.format("!file.chunk %s %d %d %d %s%n", remotePath, size, offset, length, uploadId)));
+                final String ready = readReply(reader);
+                if (!ready.startsWith("OK")) {
+                    throw new TcpException("Server refused chunk: " + ready);
+                }
+
+                long position = offset;
+                while (position < offset + length) {
+                    final long n = file.transferTo(position, offset + length - position, channel);
+                    if (n <= 0 && file.size() <= position) {
+                        throw new IOException("Local file shrank during upload: " + localFile);
+                    }
+                    position += n;
+                }
+
+                final String reply = readReply(reader);
+                if (reply.startsWith("OK STORED")) {
+                    stored.set(reply);
+                } else if (!reply.startsWith("OK")) {
+                    throw new TcpException("Chunk rejected: " + reply);
+                }
+
+                final long total = sent.addAndGet(length);
+                if (progress != null) {
+                    progress.onProgress(total, size);
+                }
+            }
+        }
+    }
+
+    // Next reply on a worker connection (pushed broadcasts are skipped)
+    private static String readReply(ChannelReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLineUtf8()) != null) {
+            if (!isPush(line)) {
+                return line;
+            }
+        }
+        throw new IOException("Connection closed by the server");
     }
 
     public CompletableFuture<String> uploadFileAsync(Path localFile, String remotePath, ProgressCallback progress) {
@@ -468,6 +1061,378 @@ public final class TcpClient implements Closeable {
         return uploadFile(localFile, localFile.getFileName().toString(), null);
     }
 
+    /**
+     * Uploads every regular file below {@code localDir}, keeping the relative
+     * layout under {@code remoteRoot}.
+     * <p>
+     * Files are sent with {@code !file.push}: each header is followed by its
+     * payload without waiting for the server, and replies are collected while
+     * later files are still being sent (up to a window of files in flight).
+     * Small files are coalesced with their headers into large socket writes;
+     * larger ones are sent with {@link FileChannel#transferTo}. This saves the
+     * two round-trips per file of {@link #uploadFile(Path, String)}, which
+     * matters when syncing many small files. The checksum set with
+     * {@link #setUploadChecksum(FileChecksum.Algorithm)} is sent for each file;
+     * compression and resume are not used. Like {@code uploadFile}, this must
+     * not run concurrently with other requests on the same client.
+     * </p>
+     *
+     * @param localDir   the directory to upload
+     * @param remoteRoot directory relative to the server's upload directory
+     *                   ("" for the upload directory itself)
+     * @param progress   optional callback (files acknowledged, files total)
+     * @return the server reply for each remote path, in upload order
+     *         ("OK STORED ...", "OK EXISTS ..." or "ERROR ...")
+     */
+    public Map<String, String> uploadDirectory(Path localDir, String remoteRoot, ProgressCallback progress)
+            throws TcpException, IOException {
+        if (localDir == null || !Files.isDirectory(localDir)) {
+            throw new IOException("Local directory not found: " + localDir);
+        }
+        if (remoteRoot == null || remoteRoot.contains(" ")) {
+            throw new IllegalArgumentException("remoteRoot must not be null or contain spaces");
+        }
+        if (!connected.get()) {
+            throw new TcpException("No Server Connected");
+        }
+
+        final List<Path> files;
+        try (final var walk = Files.walk(localDir)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        final String root = remoteRoot.replace('\\', '/').replaceAll("/+$", "");
+        final var results = new LinkedHashMap<String, String>();
+        final var inFlight = new ArrayDeque<String>();
+        final var batch = ByteBuffer.allocateDirect(PUSH_BATCH_SIZE);
+        final var algorithm = uploadChecksum;
+
+        for (final var file : files) {
+            final var relative = localDir.relativize(file).toString().replace('\\', '/');
+            final String remote = root.isEmpty() ? relative : root + "/" + relative;
+            if (remote.contains(" ")) {
+                results.put(remote, "ERROR Name contains spaces");
+                continue;
+            }
+
+            if (Files.size(file) <= PUSH_INLINE_LIMIT) {
+                pushInline(batch, file, remote, algorithm);
+            } else {
+                pushLarge(batch, file, remote, algorithm);
+            }
+            inFlight.add(remote);
+
+            if (inFlight.size() >= PUSH_WINDOW) {
+                writeBatch(batch);
+                collectPushReply(inFlight, results, files.size(), progress);
+            }
+        }
+
+        writeBatch(batch);
+        while (!inFlight.isEmpty()) {
+            collectPushReply(inFlight, results, files.size(), progress);
+        }
+        return results;
+    }
+
+    public Map<String, String> uploadDirectory(Path localDir, String remoteRoot) throws TcpException, IOException {
+        return uploadDirectory(localDir, remoteRoot, null);
+    }
+
+    /**
+     * Uploads a new version of a file the server already holds by sending only
+     * what changed (rsync-style delta transfer).
+     * <p>
+     * The server sends the block signatures of its copy ({@code !file.sig});
+     * this client finds those blocks anywhere in the local file, even after
+     * insertions, and sends a delta of block references and new bytes
+     * ({@code !file.delta}). The server rebuilds the file from its old copy and
+     * the delta and replaces it once the SHA-256 of the result matches the
+     * local file. Falls back to {@link #uploadFile(Path, String, ProgressCallback)}
+     * when the server has no complete copy, when the delta would not be
+     * smaller, or when the server copy changed in between. The delta is
+     * staged in a temporary file.
+     * </p>
+     *
+     * @param localFile  the new version
+     * @param remotePath path relative to the server's upload directory
+     * @param progress   optional callback (bytes sent, bytes to send); counts
+     *                   delta bytes unless the full file is uploaded
+     * @return the server confirmation ("OK STORED ...")
+     */
+    public String syncFile(Path localFile, String remotePath, ProgressCallback progress)
+            throws TcpException, IOException {
+        if (localFile == null || !Files.isRegularFile(localFile)) {
+            throw new IOException("Local file not found or not a regular file: " + localFile);
+        }
+        if (remotePath == null || remotePath.isBlank() || remotePath.contains(" ")) {
+            throw new IllegalArgumentException("remotePath must not be null/blank or contain spaces");
+        }
+
+        // "OK STAT <bytes> COMPLETE": there is a copy to diff against
+        final String[] stat = sendMessage("!file.stat " + remotePath, false).split("\\s+");
+        if (stat.length != 4 || !"STAT".equals(stat[1]) || !"COMPLETE".equals(stat[3])) {
+            return uploadFile(localFile, remotePath, progress);
+        }
+
+        final long remoteSize;
+        try {
+            remoteSize = Long.parseLong(stat[2]);
+        } catch (NumberFormatException ex) {
+            return uploadFile(localFile, remotePath, progress);
+        }
+
+        final var signatureFile = Files.createTempFile("tcp-master-sig-", ".bin");
+        final var deltaFile = Files.createTempFile("tcp-master-delta-", ".bin");
+        try {
+            try (final var file = FileChannel.open(signatureFile, StandardOpenOption.WRITE)) {
+                receivePayload("!file.sig " + remotePath + " " + FileSignature.blockSizeFor(remoteSize), file, 0,
+                        null);
+            }
+            final var signature = FileSignature.parse(ByteBuffer.wrap(Files.readAllBytes(signatureFile)));
+
+            final String checksum = FileChecksum.compute(FileChecksum.Algorithm.SHA256, localFile);
+            final FileDelta.Stats delta;
+            try (final var source = FileChannel.open(localFile, StandardOpenOption.READ);
+                    final var out = new BufferedOutputStream(Files.newOutputStream(deltaFile), 256 * 1024)) {
+                delta = FileDelta.encode(source, signature, out);
+            }
+
+            if (delta.fileSize() == 0 || delta.encodedBytes() >= delta.fileSize()) {
+                return uploadFile(localFile, remotePath, progress);
+            }
+            LOGGER.info("🔀 Delta for {}: {} bytes reused, {} bytes new, {} bytes to send", remotePath,
+                    delta.copied(), delta.literal(), delta.encodedBytes());
+
+            final String ready = sendMessage(String.format("!file.delta %s %d %d %s", remotePath,
+                    delta.encodedBytes(), delta.fileSize(), checksum), false);
+            if (!ready.startsWith("OK")) {
+                throw new TcpException("Server refused delta: " + ready);
+            }
+
+            try (final var is = Files.newInputStream(deltaFile)) {
+                sendBinary(is, delta.encodedBytes(), progress);
+            }
+
+            final String confirm = readNextResponse();
+            if ("ERROR CHECKSUM".equals(confirm)) {
+                // The server copy changed after its signature was sent
+                return uploadFile(localFile, remotePath, progress);
+            }
+            return confirm;
+        } finally {
+            Files.deleteIfExists(signatureFile);
+            Files.deleteIfExists(deltaFile);
+        }
+    }
+
+    public String syncFile(Path localFile, String remotePath) throws TcpException, IOException {
+        return syncFile(localFile, remotePath, null);
+    }
+
+    // Header and content go into the batch, written once it is full
+    private void pushInline(ByteBuffer batch, Path file, String remote, FileChecksum.Algorithm algorithm)
+            throws IOException {
+        final byte[] content = Files.readAllBytes(file);
+        String checksum = null;
+        if (algorithm != null) {
+            final var sum = FileChecksum.of(algorithm);
+            sum.update(ByteBuffer.wrap(content));
+            checksum = algorithm.key() + "=" + sum.hex();
+        }
+
+        final byte[] header = pushHeader(remote, content.length, checksum);
+        if (batch.remaining() < header.length + content.length) {
+            writeBatch(batch);
+        }
+        if (batch.remaining() < header.length + content.length) {
+            // Grew past the batch size since it was listed
+            writeFully(ByteBuffer.wrap(header), ByteBuffer.wrap(content));
+            return;
+        }
+        batch.put(header).put(content);
+    }
+
+    // The header goes out with the pending batch, then the file by transferTo
+    private void pushLarge(ByteBuffer batch, Path file, String remote, FileChecksum.Algorithm algorithm)
+            throws IOException {
+        final String checksum = algorithm != null ? FileChecksum.compute(algorithm, file) : null;
+
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final byte[] header = pushHeader(remote, size, checksum);
+            if (batch.remaining() < header.length) {
+                writeBatch(batch);
+            }
+            batch.put(header);
+
+            synchronized (lifecycleLock) {
+                writeBatch(batch);
+                final var target = openChannel();
+
+                long position = 0;
+                while (position < size) {
+                    final long n = channel.transferTo(position, size - position, target);
+                    if (n <= 0 && channel.size() <= position) {
+                        // The server still expects the announced bytes: the
+                        // connection cannot be used any more
+                        disconnect();
+                        throw new IOException("Local file shrank during upload: " + file);
+                    }
+                    position += n;
+                }
+            }
+        }
+    }
+
+    private static byte[] pushHeader(String remote, long size, String checksum) {
+        final var header = new StringBuilder("!file.push ").append(remote).append(' ').append(size);
+        if (checksum != null) {
+            header.append(' ').append(checksum);
+        }
+        return header.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        if (batch.position() == 0) {
+            return;
+        }
+
+        writeFully(batch.flip());
+        batch.clear();
+    }
+
+    private void writeFully(ByteBuffer... buffers) throws IOException {
+        synchronized (lifecycleLock) {
+            final var target = openChannel();
+            for (final var buf : buffers) {
+                while (buf.hasRemaining()) {
+                    target.write(buf);
+                }
+            }
+        }
+    }
+
+    // Callers hold lifecycleLock
+    private SocketChannel openChannel() throws IOException {
+        if (!connected.get() || socket == null || socket.isClosed()) {
+            throw new IOException("Socket is closed");
+        }
+        out.flush();
+        return socket.getChannel();
+    }
+
+    // Replies arrive in push order: the oldest file in flight gets this one
+    private void collectPushReply(ArrayDeque<String> inFlight, Map<String, String> results, int total,
+            ProgressCallback progress) throws TcpException {
+        final String reply = readNextResponse();
+        results.put(inFlight.poll(), reply);
+        if (progress != null) {
+            progress.onProgress(results.size(), total);
+        }
+    }
+
+    /**
+     * Downloads a file (or a byte range of it) stored on the server with
+     * {@code !file.get}.
+     * <p>
+     * Bytes are written at the same offset in {@code localFile}, so a range can
+     * complete a partial local copy. The local file is truncated only when the
+     * whole file is requested ({@code offset == 0} and {@code length < 0}).
+     * Like {@link #uploadFile(Path, String, ProgressCallback)}, this must not run
+     * concurrently with other requests on the same client.
+     * </p>
+     *
+     * @param remotePath path relative to the server's upload directory
+     * @param localFile  where to write the bytes
+     * @param offset     first byte to fetch (must be >= 0)
+     * @param length     number of bytes to fetch, or -1 for everything after
+     *                   {@code offset}
+     * @param progress   optional callback (bytes received, bytes expected)
+     * @return the number of bytes received
+     */
+    public long downloadFile(String remotePath, Path localFile, long offset, long length, ProgressCallback progress)
+            throws TcpException, IOException {
+        if (remotePath == null || remotePath.isBlank() || remotePath.contains(" ")) {
+            throw new IllegalArgumentException("remotePath must not be null/blank or contain spaces");
+        }
+        if (localFile == null) {
+            throw new IllegalArgumentException("localFile must not be null");
+        }
+        if (offset < 0 || length < -1) {
+            throw new IllegalArgumentException("Invalid range: offset=" + offset + " length=" + length);
+        }
+
+        final var parent = localFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        final boolean whole = offset == 0 && length < 0;
+        try (final var file = whole
+                ? FileChannel.open(localFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(localFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            return receivePayload(length < 0
+                    ? String.format("!file.get %s %d", remotePath, offset)
+                    : String.format("!file.get %s %d %d", remotePath, offset, length), file, offset, progress);
+        }
+    }
+
+    // Sends a request answered with "OK SIZE <n>" + n bytes; the bytes are
+    // written to `file` from `position` on by the reader thread
+    private long receivePayload(String request, FileChannel file, long position, ProgressCallback progress)
+            throws TcpException, IOException {
+        final var download = new PendingDownload(file, position, progress);
+
+        synchronized (lifecycleLock) {
+            if (!connected.get() || out == null)
+                throw new TcpException("No Server Connected");
+            pendingDownload = download;
+            out.println(request);
+            out.flush();
+        }
+
+        // The header must arrive within the response timeout; the body may take longer
+        try {
+            download.header.get(responseTimeoutMs, TimeUnit.MILLISECONDS);
+            return download.done.get();
+        } catch (TimeoutException ex) {
+            // The request is still in flight: a late header and its bytes would
+            // be read as the replies to later requests, so drop the connection
+            disconnect();
+            throw new TcpException("Timeout waiting server response");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TcpException("Interrupted while downloading");
+        } catch (ExecutionException ex) {
+            final var cause = ex.getCause();
+            if (cause instanceof IOException ioe)
+                throw ioe;
+            throw new TcpException(cause);
+        }
+    }
+
+    public long downloadFile(String remotePath, Path localFile, ProgressCallback progress)
+            throws TcpException, IOException {
+        return downloadFile(remotePath, localFile, 0, -1, progress);
+    }
+
+    public long downloadFile(String remotePath, Path localFile) throws TcpException, IOException {
+        return downloadFile(remotePath, localFile, 0, -1, null);
+    }
+
+    public CompletableFuture<Long> downloadFileAsync(String remotePath, Path localFile, ProgressCallback progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return downloadFile(remotePath, localFile, progress);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, asyncExecutor);
+    }
+
     public String readNextResponse(long timeoutMs) throws TcpException {
         if (timeoutMs <= 0) {
             throw new IllegalArgumentException("timeoutMs must be > 0");
@@ -515,6 +1480,7 @@ public final class TcpClient implements Closeable {
             } finally {
                 // Unblock any waiting sendMessage()
                 responses.offer("🔌 Client disconnected.");
+                inFlight.values().forEach(reply -> reply.complete("🔌 Client disconnected."));
                 LOGGER.info("🔌 Client disconnected.");
                 fireDisconnected();
             }
@@ -610,14 +1576,41 @@ public final class TcpClient implements Closeable {
     /**
      * The ONLY place that reads from the socket.
      * Routes:
-     * - broadcast -> broadcastListeners
+     * - broadcast / topic publish / whisper -> broadcastListeners
+     * - "#<id> " reply -> the multiplexed request with that id
+     * - !file.get header + payload -> pending download
      * - normal -> messageListeners + responses queue
      */
     private void readLoop() {
+        final var reader = in;
         try {
             String line;
-            while (connected.get() && (line = in.readLine()) != null) {
-                if (line.contains("[BROADCAST]")) {
+            while (connected.get() && (line = reader.readLineUtf8()) != null) {
+                final boolean push = isPush(line);
+
+                final int tagEnd = push ? -1 : requestTagEnd(line);
+                if (tagEnd > 0) {
+                    final long id = Long.parseLong(line, 1, tagEnd, 10);
+                    final var reply = inFlight.remove(id);
+                    line = line.substring(tagEnd + 1);
+                    if (logNonBroadcastMessages)
+                        LOGGER.info("📩 Server Message: {}", line);
+                    fireMessage(line);
+                    // Late (the request timed out): never hand it to another reader
+                    if (reply == null || !reply.complete(line)) {
+                        LOGGER.warn("⚠️ Dropping reply to request #{} nobody waits for: {}", id, line);
+                    }
+                    continue;
+                }
+
+                final var download = pendingDownload;
+                if (download != null && !push) {
+                    pendingDownload = null;
+                    receiveDownload(reader, download, line);
+                    continue;
+                }
+
+                if (push) {
                     LOGGER.info("📢 {}", line);
                     fireBroadcast(line);
                 } else {
@@ -640,6 +1633,12 @@ public final class TcpClient implements Closeable {
                 fireError(ex);
             }
         } finally {
+            final var download = pendingDownload;
+            if (download != null) {
+                pendingDownload = null;
+                download.fail(new TcpException("Connection closed during download"));
+            }
+
             try {
                 disconnect();
             } catch (TcpException ex) {
@@ -648,6 +1647,55 @@ public final class TcpClient implements Closeable {
         }
     }
 
+    // Reader thread: the response to !file.get is either "OK SIZE <n>" followed
+    // by exactly n raw bytes, or an error line.
+    private static void receiveDownload(ChannelReader reader, PendingDownload download, String header)
+            throws IOException {
+        if (!header.startsWith("OK SIZE ")) {
+            download.fail(new TcpException("Server refused download: " + header));
+            return;
+        }
+
+        final long size;
+        try {
+            size = Long.parseLong(header.substring("OK SIZE ".length()).trim());
+        } catch (NumberFormatException ex) {
+            download.fail(new TcpException("Invalid download header: " + header));
+            return;
+        }
+
+        download.header.complete(size);
+        try {
+            reader.readToFile(download.file, download.position, size, download.progress);
+        } catch (IOException ex) {
+            download.fail(ex);
+            throw ex;
+        }
+        download.done.complete(size);
+    }
+
+    // Index of the space ending a "#<id> " prefix, or -1
+    private static int requestTagEnd(String line) {
+        if (line.isEmpty() || line.charAt(0) != '#') {
+            return -1;
+        }
+
+        int i = 1;
+        while (i < line.length() && i <= MAX_REQUEST_ID_DIGITS && isAsciiDigit(line.charAt(i))) {
+            i++;
+        }
+        return i > 1 && i < line.length() && line.charAt(i) == ' ' ? i : -1;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Lines the server pushes on its own (not replies to a request)
+    private static boolean isPush(String line) {
+        return line.contains("[BROADCAST]") || line.startsWith("[PUBLISH]") || line.startsWith("[WHISPER]");
+    }
+
     private static String extractCommandKey(String raw) {
         if (raw == null)
             return "";
@@ -661,11 +1709,6 @@ public final class TcpClient implements Closeable {
     }
 
     private void safeCloseQuietly() {
-        try {
-            if (in != null)
-                in.close();
-        } catch (Exception ignored) {
-        }
         try {
             if (out != null)
                 out.close();
@@ -754,6 +1797,27 @@ public final class TcpClient implements Closeable {
         }
     }
 
+    private static final class PendingDownload {
+        private final FileChannel file;
+        private final long position;
+        private final ProgressCallback progress;
+        private final CompletableFuture<Long> header;
+        private final CompletableFuture<Long> done;
+
+        private PendingDownload(FileChannel file, long position, ProgressCallback progress) {
+            this.file = file;
+            this.position = position;
+            this.progress = progress;
+            this.header = new CompletableFuture<>();
+            this.done = new CompletableFuture<>();
+        }
+
+        private void fail(Throwable cause) {
+            header.completeExceptionally(cause);
+            done.completeExceptionally(cause);
+        }
+    }
+
     // -------------------------
     // Listener interfaces
     // -------------------------
@@ -778,4 +1842,7 @@ public final class TcpClient implements Closeable {
 
     private record LocalCommandOutcome(boolean handled, ClientCommandResult decision) {
     }
+
+    private record Routing(String localResponse, String toSend) {
+    }
 }
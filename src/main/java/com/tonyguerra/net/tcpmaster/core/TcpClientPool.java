@@ -0,0 +1,539 @@
+package com.tonyguerra.net.tcpmaster.core;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tonyguerra.net.tcpmaster.di.Container;
+import com.tonyguerra.net.tcpmaster.errors.TcpException;
+import com.tonyguerra.net.tcpmaster.handlers.HandlerRegistry;
+
+/**
+ * Pool of {@link TcpClient} connections to one server.
+ * <p>
+ * {@link #acquire()} leases the least-loaded connection. Pooled clients
+ * multiplex their requests ({@link TcpClient#setRequestMultiplexing(boolean)}),
+ * so several leases may share a connection; a new one is only opened while
+ * every connection is in use and the pool is below its maximum size.
+ * {@link #acquireExclusive()} leases a connection nobody else uses, as needed
+ * for file transfers. Closing a lease returns it, so leases fit
+ * try-with-resources.
+ * </p>
+ * <p>
+ * A background thread closes connections idle for longer than the idle
+ * timeout (down to the minimum size), sends {@code !ping} on idle connections
+ * and replaces those that do not answer. The handlers are scanned once per
+ * pool and every client shares the same registry and DI container, so handler
+ * classes are instantiated once per pool; they receive the client as a method
+ * argument, not by injection.
+ * </p>
+ */
+public final class TcpClientPool implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TcpClientPool.class);
+
+    private final String ip;
+    private final int port;
+
+    // Shared by every client of the pool
+    private final HandlerRegistry registry;
+    private final Container container;
+
+    private final ReentrantLock lock;
+    private final Condition released;
+
+    // Guarded by lock
+    private final List<PooledConnection> connections;
+    private int opening;
+
+    private final AtomicBoolean started;
+    private volatile boolean closed;
+    private volatile Thread maintenance;
+
+    private final AtomicLong healthCheckFailures;
+
+    // Config
+    private volatile int minSize;
+    private volatile int maxSize;
+    private volatile long idleTimeoutMs;
+    private volatile long healthCheckIntervalMs;
+    private volatile long checkoutTimeoutMs;
+    private volatile Consumer<TcpClient> clientCustomizer;
+
+    /**
+     * @param ip   the server IP address (must not be null)
+     * @param port the server port (must be between 1 and 65535)
+     */
+    public TcpClientPool(String ip, int port) {
+        this.ip = Objects.requireNonNull(ip, "ip");
+        if (port <= 0 || port > 65535) {
+            throw new IllegalArgumentException(
+                    String.format("port must be between 1 and 65535, got: %d", port));
+        }
+        this.port = port;
+        this.registry = TcpClient.scanHandlers();
+        this.container = new Container();
+        this.lock = new ReentrantLock();
+        this.released = lock.newCondition();
+        this.connections = new ArrayList<>();
+        this.started = new AtomicBoolean(false);
+        this.healthCheckFailures = new AtomicLong();
+        this.minSize = 1;
+        this.maxSize = 8;
+        this.idleTimeoutMs = 60_000;
+        this.healthCheckIntervalMs = 30_000;
+        this.checkoutTimeoutMs = 10_000;
+        this.clientCustomizer = client -> {
+        };
+    }
+
+    /**
+     * Sets the number of connections opened by {@link #start()} and kept open
+     * while idle (default 1).
+     */
+    public TcpClientPool setMinSize(int minSize) {
+        if (minSize < 0)
+            throw new IllegalArgumentException("minSize must be >= 0");
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * Sets the largest number of open connections (default 8).
+     */
+    public TcpClientPool setMaxSize(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be > 0");
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Closes connections unused for this long, down to the minimum size
+     * (default 60 s). 0 keeps idle connections open.
+     */
+    public TcpClientPool setIdleTimeoutMs(long idleTimeoutMs) {
+        if (idleTimeoutMs < 0)
+            throw new IllegalArgumentException("idleTimeoutMs must be >= 0");
+        this.idleTimeoutMs = idleTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Sends {@code !ping} on each idle connection this often and replaces
+     * connections that do not answer within their response timeout
+     * (default 30 s). 0 disables health checks.
+     */
+    public TcpClientPool setHealthCheckIntervalMs(long intervalMs) {
+        if (intervalMs < 0)
+            throw new IllegalArgumentException("intervalMs must be >= 0");
+        this.healthCheckIntervalMs = intervalMs;
+        return this;
+    }
+
+    /**
+     * Sets how long {@link #acquire()} waits while the pool is full and no
+     * connection can be leased (default 10 s).
+     */
+    public TcpClientPool setCheckoutTimeoutMs(long timeoutMs) {
+        if (timeoutMs <= 0)
+            throw new IllegalArgumentException("timeoutMs must be > 0");
+        this.checkoutTimeoutMs = timeoutMs;
+        return this;
+    }
+
+    /**
+     * Configures each new client before it connects (timeouts, listeners,
+     * upload options...).
+     */
+    public TcpClientPool setClientCustomizer(Consumer<TcpClient> customizer) {
+        this.clientCustomizer = Objects.requireNonNull(customizer, "customizer");
+        return this;
+    }
+
+    /**
+     * Opens the minimum number of connections and starts the background
+     * eviction and health checks.
+     *
+     * @throws TcpException if a connection cannot be opened
+     */
+    public void start() throws TcpException {
+        if (minSize > maxSize)
+            throw new IllegalStateException("minSize must be <= maxSize");
+        if (closed)
+            throw new TcpException("Pool is closed.");
+        if (!started.compareAndSet(false, true))
+            throw new TcpException("Pool is already started.");
+
+        try {
+            for (int i = 0; i < minSize; i++) {
+                final var connection = open();
+                lock.lock();
+                try {
+                    connections.add(connection);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (TcpException ex) {
+            close();
+            throw ex;
+        }
+
+        final long period = maintenancePeriodMs();
+        if (period > 0) {
+            maintenance = new Thread(() -> maintain(period), "TcpClientPool-Maintenance");
+            maintenance.setDaemon(true);
+            maintenance.start();
+        }
+    }
+
+    /**
+     * Leases the least-loaded connection (shared with other leases).
+     *
+     * @throws TcpException if no connection can be opened, or none becomes
+     *                      available within the checkout timeout
+     */
+    public Lease acquire() throws TcpException {
+        return checkout(false);
+    }
+
+    /**
+     * Leases a connection no other lease uses until this one is closed, e.g.
+     * for uploads and downloads.
+     *
+     * @throws TcpException if no connection can be opened, or none becomes
+     *                      available within the checkout timeout
+     */
+    public Lease acquireExclusive() throws TcpException {
+        return checkout(true);
+    }
+
+    /**
+     * @return the number of open connections
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return connections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of connections closed because they failed a health
+     *         check or were found disconnected
+     */
+    public long getHealthCheckFailures() {
+        return healthCheckFailures.get();
+    }
+
+    @Override
+    public void close() {
+        final List<PooledConnection> open;
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            open = new ArrayList<>(connections);
+            connections.clear();
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (maintenance != null) {
+            maintenance.interrupt();
+        }
+        open.forEach(c -> c.client.close());
+        LOGGER.info("🔌 Client pool closed ({}:{})", ip, port);
+    }
+
+    private Lease checkout(boolean exclusive) throws TcpException {
+        if (!started.get())
+            throw new TcpException("Pool is not started.");
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(checkoutTimeoutMs);
+        lock.lock();
+        try {
+            while (true) {
+                if (closed)
+                    throw new TcpException("Pool is closed.");
+
+                final var best = leastLoaded(exclusive);
+                final boolean full = connections.size() + opening >= maxSize;
+                if (best != null && (best.leases == 0 || full)) {
+                    return lease(best, exclusive);
+                }
+
+                if (!full) {
+                    // Connect without holding the lock; the slot is reserved
+                    opening++;
+                    final PooledConnection created;
+                    lock.unlock();
+                    try {
+                        created = open();
+                    } finally {
+                        lock.lock();
+                        opening--;
+                    }
+                    if (closed) {
+                        created.client.close();
+                        throw new TcpException("Pool is closed.");
+                    }
+                    connections.add(created);
+                    return lease(created, exclusive);
+                }
+
+                final long left = deadline - System.nanoTime();
+                if (left <= 0)
+                    throw new TcpException("Timeout waiting for a pooled connection");
+                released.awaitNanos(left);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TcpException("Interrupted while waiting for a pooled connection");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller must hold lock. Drops disconnected clients; exclusive requests
+    // only take unused connections.
+    private PooledConnection leastLoaded(boolean exclusive) {
+        PooledConnection best = null;
+        final var it = connections.iterator();
+        while (it.hasNext()) {
+            final var connection = it.next();
+            if (!connection.client.isConnected()) {
+                it.remove();
+                healthCheckFailures.incrementAndGet();
+                connection.client.close();
+                continue;
+            }
+            if (connection.exclusive || connection.checking || (exclusive && connection.leases > 0)) {
+                continue;
+            }
+            if (best == null || connection.leases < best.leases) {
+                best = connection;
+            }
+        }
+        return best;
+    }
+
+    // Caller must hold lock
+    private Lease lease(PooledConnection connection, boolean exclusive) {
+        connection.leases++;
+        connection.exclusive = exclusive;
+        return new Lease(connection);
+    }
+
+    private void release(PooledConnection connection) {
+        lock.lock();
+        try {
+            connection.leases--;
+            if (connection.leases == 0) {
+                connection.exclusive = false;
+                connection.idleSinceNanos = System.nanoTime();
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledConnection open() throws TcpException {
+        final var client = new TcpClient(ip, port, registry, container);
+        clientCustomizer.accept(client);
+        client.setRequestMultiplexing(true);
+        client.connect();
+        return new PooledConnection(client);
+    }
+
+    private long maintenancePeriodMs() {
+        final long idle = idleTimeoutMs;
+        final long health = healthCheckIntervalMs;
+        if (idle == 0 || health == 0) {
+            return Math.max(idle, health);
+        }
+        return Math.min(idle, health);
+    }
+
+    private void maintain(long periodMs) {
+        while (!closed) {
+            try {
+                Thread.sleep(periodMs);
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            evictIdle();
+            checkHealth();
+            fillToMinimum();
+        }
+    }
+
+    private void evictIdle() {
+        final long timeoutMs = idleTimeoutMs;
+        if (timeoutMs == 0) {
+            return;
+        }
+
+        final List<PooledConnection> evicted = new ArrayList<>();
+        final long now = System.nanoTime();
+        lock.lock();
+        try {
+            final var it = connections.iterator();
+            while (it.hasNext() && connections.size() > minSize) {
+                final var connection = it.next();
+                if (connection.leases == 0 && !connection.checking
+                        && now - connection.idleSinceNanos > TimeUnit.MILLISECONDS.toNanos(timeoutMs)) {
+                    it.remove();
+                    evicted.add(connection);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(c -> c.client.close());
+    }
+
+    private void checkHealth() {
+        final long intervalMs = healthCheckIntervalMs;
+        if (intervalMs == 0) {
+            return;
+        }
+
+        // Idle connections due for a check are held back from checkout meanwhile
+        final List<PooledConnection> due = new ArrayList<>();
+        final long now = System.nanoTime();
+        lock.lock();
+        try {
+            for (final var connection : connections) {
+                if (connection.leases == 0
+                        && now - connection.checkedNanos >= TimeUnit.MILLISECONDS.toNanos(intervalMs)) {
+                    connection.checking = true;
+                    due.add(connection);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (final var connection : due) {
+            boolean healthy;
+            try {
+                connection.client.sendMessage("!ping", false);
+                healthy = connection.client.isConnected();
+            } catch (TcpException ex) {
+                healthy = false;
+            }
+
+            lock.lock();
+            try {
+                connection.checking = false;
+                connection.checkedNanos = System.nanoTime();
+                if (!healthy && connections.remove(connection)) {
+                    healthCheckFailures.incrementAndGet();
+                    LOGGER.warn("⚠️ Pooled connection to {}:{} failed its health check", ip, port);
+                }
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (!healthy) {
+                connection.client.close();
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed) {
+            lock.lock();
+            try {
+                if (connections.size() + opening >= minSize) {
+                    return;
+                }
+                opening++;
+            } finally {
+                lock.unlock();
+            }
+
+            PooledConnection created = null;
+            try {
+                created = open();
+            } catch (TcpException ex) {
+                LOGGER.warn("⚠️ Could not reopen pooled connection to {}:{}: {}", ip, port, ex.getMessage());
+            } finally {
+                lock.lock();
+                try {
+                    opening--;
+                    if (created != null && !closed) {
+                        connections.add(created);
+                        released.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            if (created == null) {
+                return;
+            }
+            if (closed) {
+                created.client.close();
+            }
+        }
+    }
+
+    /**
+     * A connection leased from the pool; closing the lease returns it.
+     */
+    public final class Lease implements AutoCloseable {
+        private final PooledConnection connection;
+        private final AtomicBoolean returned;
+
+        private Lease(PooledConnection connection) {
+            this.connection = connection;
+            this.returned = new AtomicBoolean(false);
+        }
+
+        public TcpClient client() {
+            return connection.client;
+        }
+
+        @Override
+        public void close() {
+            if (returned.compareAndSet(false, true)) {
+                release(connection);
+            }
+        }
+    }
+
+    // Fields other than client are guarded by the pool's lock
+    private static final class PooledConnection {
+        private final TcpClient client;
+        private int leases;
+        private boolean exclusive;
+        private boolean checking;
+        private long idleSinceNanos;
+        private long checkedNanos;
+
+        private PooledConnection(TcpClient client) {
+            this.client = client;
+            this.idleSinceNanos = System.nanoTime();
+            this.checkedNanos = idleSinceNanos;
+        }
+    }
+}
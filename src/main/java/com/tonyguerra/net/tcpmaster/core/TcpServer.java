@@ -4,25 +4,69 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.tonyguerra.net.tcpmaster.configurations.Globals;
+import com.tonyguerra.net.tcpmaster.core.components.ChunkTracker;
+import com.tonyguerra.net.tcpmaster.core.components.ContentStore;
+import com.tonyguerra.net.tcpmaster.core.components.DirectoryCache;
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+import com.tonyguerra.net.tcpmaster.core.components.FileDelta;
+import com.tonyguerra.net.tcpmaster.core.components.GroupCommitter;
 import com.tonyguerra.net.tcpmaster.core.components.LineReader;
+import com.tonyguerra.net.tcpmaster.core.components.MappedFileCache;
+import com.tonyguerra.net.tcpmaster.core.components.MessageHistory;
+import com.tonyguerra.net.tcpmaster.core.components.SessionTable;
+import com.tonyguerra.net.tcpmaster.core.components.TokenBucket;
+import com.tonyguerra.net.tcpmaster.core.components.TopicIndex;
+import com.tonyguerra.net.tcpmaster.core.components.TransferCodec;
+import com.tonyguerra.net.tcpmaster.core.components.TransferCodecs;
+import com.tonyguerra.net.tcpmaster.core.components.UploadFiles;
 import com.tonyguerra.net.tcpmaster.di.Container;
+import com.tonyguerra.net.tcpmaster.enums.Durability;
+import com.tonyguerra.net.tcpmaster.enums.SlowConsumerPolicy;
 import com.tonyguerra.net.tcpmaster.enums.TcpType;
 import com.tonyguerra.net.tcpmaster.errors.TcpException;
 import com.tonyguerra.net.tcpmaster.handlers.HandlerRegistry;
@@ -31,6 +75,30 @@ import com.tonyguerra.net.tcpmaster.handlers.TcpHandlerScanner;
 public final class TcpServer implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TcpServer.class);
 
+    // Conflation key of the global broadcast stream (topics use their own name)
+    private static final String BROADCAST_STREAM = "";
+
+    // Per-connection direct buffer for binary payloads (uploads and drains)
+    private static final int TRANSFER_BUFFER_SIZE = 1024 * 1024;
+
+    // How long a resumed upload waits for the previous writer of the same file
+    private static final long UPLOAD_TAKEOVER_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // A parallel upload no chunk arrived for in this long is dropped
+    private static final long CHUNKED_UPLOAD_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    // Conflation key of targeted messages (sendTo / !whisper)
+    private static final String DIRECT_STREAM = "#direct";
+
+    // Upload whose payload follows its header without waiting for OK READY
+    private static final String PUSH_COMMAND = "!file.push";
+
+    // Longest request id accepted in a "#<id> " prefix (fits in a long)
+    private static final int MAX_REQUEST_ID_DIGITS = 18;
+
+    // Upper bound of buffers handed to a single gathering write (IOV_MAX on Linux)
+    private static final int MAX_GATHER = 1024;
+
     private final int port;
 
     // command -> handler container (class + method + annotation)
@@ -39,12 +107,74 @@ public final class TcpServer implements Closeable {
     // Dependency Injection container (used to instantiate handler classes)
     private final Container container;
 
-    // Store connections (not only sockets)
-    private final ConcurrentHashMap<Socket, ClientConnection> clients;
+    // Store connections (not only sockets), keyed by their numeric session id
+    private final SessionTable<ClientConnection> clients;
+    private final AtomicLong nextSessionId;
+
+    // topic (or wildcard pattern) -> subscribed connections
+    private final TopicIndex<ClientConnection> topics;
+
+    // Slow-consumer handling (backlog limit is per recipient, in messages)
+    private volatile int maxOutboundBacklog;
+    private volatile SlowConsumerPolicy slowConsumerPolicy;
+    private final ConcurrentHashMap<String, SlowConsumerPolicy> topicPolicies;
+    private final Map<SlowConsumerPolicy, LongAdder> slowConsumerEvents;
+
+    // Late-joiner replay (null = history disabled for the broadcast stream)
+    private volatile MessageHistory broadcastHistory;
+    private final ConcurrentHashMap<String, MessageHistory> topicHistories;
+    private volatile int replayOnConnect;
+
+    // Cluster mode (null = standalone)
+    private volatile ClusterRelay cluster;
+
+    // Micro-batching of queued messages (0 = write as soon as possible)
+    private volatile long coalesceWindowNanos;
+    private final LongAdder outboundBatches;
+    private final LongAdder outboundBatchedMessages;
+    private final AtomicLong maxOutboundBatch;
 
     private final AtomicBoolean started;
     private final ExecutorService clientPool;
 
+    // Drains per-connection outbound queues (virtual threads: a stalled client
+    // parks its own writer instead of a platform thread)
+    private final ExecutorService writerPool;
+
+    // Bounded pool for sharded fan-out of broadcasts to large audiences
+    private final ForkJoinPool fanoutPool;
+    private volatile int parallelBroadcastThreshold;
+
+    // Per-session inbound limits (null = unlimited), applied to new connections
+    private volatile RateLimit commandRateLimit;
+    private volatile RateLimit broadcastRateLimit;
+    private volatile RateLimit inboundByteRateLimit;
+    private final LongAdder rateLimitedCommands;
+
+    // File transfer shaping: per-session limit (applied on accept) and one
+    // bucket shared by every session (guarded by its own monitor)
+    private volatile RateLimit transferRateLimit;
+    private volatile TokenBucket globalTransferBucket;
+    private final LongAdder transferThrottleNanos;
+
+    private volatile MappedFileCache downloadCache;
+
+    // Upload directories already created: skips a mkdir walk per file
+    private final DirectoryCache uploadDirectories;
+
+    // Partial file -> connection (or parallel upload) currently writing it
+    private final ConcurrentHashMap<Path, UploadOwner> activeUploads;
+
+    // Target -> parallel (chunked) upload in progress
+    private final ConcurrentHashMap<Path, ChunkedUpload> chunkedUploads;
+
+    // Deduplicating store for uploads that carry a SHA-256 (null = disabled)
+    private volatile ContentStore contentStore;
+
+    // What "OK STORED" guarantees; the committer exists in GROUP_COMMIT mode
+    private volatile Durability durability;
+    private volatile GroupCommitter groupCommitter;
+
     private final Object lifecycleLock;
     private ServerSocket serverSocket;
     private Thread acceptThread;
@@ -61,9 +191,33 @@ public final class TcpServer implements Closeable {
         this.port = port;
         this.registry = new HandlerRegistry();
         this.container = new Container();
-        this.clients = new ConcurrentHashMap<>();
+        this.clients = new SessionTable<>();
+        this.nextSessionId = new AtomicLong();
+        this.topics = new TopicIndex<>();
+        this.maxOutboundBacklog = 8192;
+        this.slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+        this.topicPolicies = new ConcurrentHashMap<>();
+        this.slowConsumerEvents = new EnumMap<>(SlowConsumerPolicy.class);
+        for (final var policy : SlowConsumerPolicy.values()) {
+            this.slowConsumerEvents.put(policy, new LongAdder());
+        }
         this.started = new AtomicBoolean(false);
         this.clientPool = Executors.newCachedThreadPool();
+        this.writerPool = Executors.newVirtualThreadPerTaskExecutor();
+        this.topicHistories = new ConcurrentHashMap<>();
+        this.replayOnConnect = 0;
+        this.coalesceWindowNanos = 0;
+        this.outboundBatches = new LongAdder();
+        this.outboundBatchedMessages = new LongAdder();
+        this.maxOutboundBatch = new AtomicLong();
+        this.fanoutPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.parallelBroadcastThreshold = 1024;
+        this.rateLimitedCommands = new LongAdder();
+        this.transferThrottleNanos = new LongAdder();
+        this.uploadDirectories = new DirectoryCache();
+        this.activeUploads = new ConcurrentHashMap<>();
+        this.chunkedUploads = new ConcurrentHashMap<>();
+        this.durability = Durability.NONE;
         this.lifecycleLock = new Object();
 
         // Optional: allow handlers to request the server instance via DI
@@ -100,6 +254,350 @@ public final class TcpServer implements Closeable {
         return clients.size();
     }
 
+    /**
+     * Sets how many messages may wait in a single recipient's outbound queue
+     * before the slow-consumer policy kicks in. Default is 8192.
+     *
+     * @param messages the per-recipient backlog limit (must be > 0)
+     * @return this server
+     */
+    public TcpServer setMaxOutboundBacklog(int messages) {
+        if (messages <= 0)
+            throw new IllegalArgumentException("messages must be > 0");
+        this.maxOutboundBacklog = messages;
+        return this;
+    }
+
+    /**
+     * Sets the server-wide slow-consumer policy used for broadcasts and for
+     * topics without a policy of their own. Default is
+     * {@link SlowConsumerPolicy#DISCONNECT}.
+     *
+     * @param policy the policy (must not be null)
+     * @return this server
+     */
+    public TcpServer setSlowConsumerPolicy(SlowConsumerPolicy policy) {
+        if (policy == null)
+            throw new IllegalArgumentException("policy must not be null");
+        this.slowConsumerPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Overrides the slow-consumer policy for a single topic.
+     *
+     * @param topic  a concrete topic name
+     * @param policy the policy, or null to fall back to the server-wide policy
+     * @return this server
+     */
+    public TcpServer setTopicSlowConsumerPolicy(String topic, SlowConsumerPolicy policy) {
+        if (!TopicIndex.isValidTopic(topic))
+            throw new IllegalArgumentException("Invalid topic: " + topic);
+        if (policy == null) {
+            topicPolicies.remove(topic);
+        } else {
+            topicPolicies.put(topic, policy);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the audience size from which broadcasts are fanned out in parallel on
+     * the server's fan-out pool instead of the caller's thread. Default is 1024.
+     *
+     * @param clients the minimum number of connected clients (must be > 0)
+     * @return this server
+     */
+    public TcpServer setParallelBroadcastThreshold(int clients) {
+        if (clients <= 0)
+            throw new IllegalArgumentException("clients must be > 0");
+        this.parallelBroadcastThreshold = clients;
+        return this;
+    }
+
+    /**
+     * Sets the coalescing window for queued broadcasts and publishes.
+     * <p>
+     * When a recipient's idle queue receives a message, its writer waits for the
+     * window before draining, so messages produced in the meantime are written
+     * together with a single gathering write. A window of a few hundred
+     * microseconds trades that much latency for far fewer syscalls under bursts.
+     * Default is 0 (no waiting; whatever is already queued is still gathered).
+     * </p>
+     *
+     * @param micros the window in microseconds (0 to 100_000)
+     * @return this server
+     */
+    public TcpServer setBroadcastCoalesceWindowMicros(long micros) {
+        if (micros < 0 || micros > 100_000)
+            throw new IllegalArgumentException("micros must be between 0 and 100000");
+        this.coalesceWindowNanos = TimeUnit.MICROSECONDS.toNanos(micros);
+        return this;
+    }
+
+    /**
+     * Gets statistics about the gathering writes used to deliver queued
+     * messages.
+     *
+     * @return a snapshot of the batch counters
+     */
+    public BatchStats getBroadcastBatchStats() {
+        return new BatchStats(outboundBatches.sum(), outboundBatchedMessages.sum(), maxOutboundBatch.get());
+    }
+
+    /**
+     * Keeps the last broadcasts in an off-heap ring so late joiners can catch up
+     * with {@code !replay <n>} (or automatically, see
+     * {@link #setReplayOnConnect(int)}).
+     *
+     * @param maxMessages   messages to retain (must be > 0)
+     * @param capacityBytes preallocated off-heap bytes (must be > 0)
+     * @return this server
+     */
+    public TcpServer setBroadcastHistory(int maxMessages, int capacityBytes) {
+        this.broadcastHistory = new MessageHistory(maxMessages, capacityBytes);
+        return this;
+    }
+
+    /**
+     * Keeps the last publishes of a topic in an off-heap ring, replayable with
+     * {@code !replay <n> <topic>}.
+     *
+     * @param topic         a concrete topic name
+     * @param maxMessages   messages to retain (must be > 0)
+     * @param capacityBytes preallocated off-heap bytes (must be > 0)
+     * @return this server
+     */
+    public TcpServer setTopicHistory(String topic, int maxMessages, int capacityBytes) {
+        if (!TopicIndex.isValidTopic(topic))
+            throw new IllegalArgumentException("Invalid topic: " + topic);
+        topicHistories.put(topic, new MessageHistory(maxMessages, capacityBytes));
+        return this;
+    }
+
+    /**
+     * Replays the last {@code messages} broadcasts to every new connection before
+     * it starts reading commands. Requires
+     * {@link #setBroadcastHistory(int, int)}. Default is 0 (disabled).
+     *
+     * @param messages number of broadcasts to replay (must be >= 0)
+     * @return this server
+     */
+    public TcpServer setReplayOnConnect(int messages) {
+        if (messages < 0)
+            throw new IllegalArgumentException("messages must be >= 0");
+        this.replayOnConnect = messages;
+        return this;
+    }
+
+    /**
+     * Limits how many lines (commands or plain messages) each client may send.
+     * Lines over the limit are answered with {@code ERROR RATE LIMITED} and not
+     * dispatched. Applies to connections accepted after the call.
+     *
+     * @param perSecond sustained lines per second (must be > 0)
+     * @param burst     lines allowed in a burst (must be > 0)
+     * @return this server
+     */
+    public TcpServer setCommandRateLimit(double perSecond, int burst) {
+        this.commandRateLimit = new RateLimit(perSecond, burst);
+        return this;
+    }
+
+    /**
+     * Limits how many broadcasts and publishes each client may originate, on top
+     * of the command limit (fan-out makes them the expensive commands). Applies
+     * to connections accepted after the call.
+     *
+     * @param perSecond sustained messages per second (must be > 0)
+     * @param burst     messages allowed in a burst (must be > 0)
+     * @return this server
+     */
+    public TcpServer setBroadcastRateLimit(double perSecond, int burst) {
+        this.broadcastRateLimit = new RateLimit(perSecond, burst);
+        return this;
+    }
+
+    /**
+     * Limits the command bytes (line payload plus terminator) each client may
+     * send. Applies to connections accepted after the call.
+     *
+     * @param bytesPerSecond sustained bytes per second (must be > 0)
+     * @param burst          bytes allowed in a burst (must be > 0)
+     * @return this server
+     */
+    public TcpServer setInboundByteRateLimit(long bytesPerSecond, long burst) {
+        this.inboundByteRateLimit = new RateLimit(bytesPerSecond, burst);
+        return this;
+    }
+
+    /**
+     * Removes every per-client rate limit (for connections accepted after the
+     * call).
+     *
+     * @return this server
+     */
+    public TcpServer clearRateLimits() {
+        this.commandRateLimit = null;
+        this.broadcastRateLimit = null;
+        this.inboundByteRateLimit = null;
+        this.transferRateLimit = null;
+        this.globalTransferBucket = null;
+        return this;
+    }
+
+    /**
+     * Limits the file transfer bandwidth of each client (uploads, downloads and
+     * discarded payloads). Applies to connections accepted after the call.
+     * Transfers are read and written in pieces no larger than the burst, so a
+     * small burst gives smoother shaping.
+     *
+     * @param bytesPerSecond sustained bytes per second (must be > 0)
+     * @param burst          bytes allowed in a burst (must be > 0)
+     * @return this server
+     */
+    public TcpServer setTransferRateLimit(long bytesPerSecond, long burst) {
+        this.transferRateLimit = new RateLimit(bytesPerSecond, burst);
+        return this;
+    }
+
+    /**
+     * Limits the file transfer bandwidth of all clients together, so bulk
+     * transfers leave room for interactive traffic. Takes effect immediately.
+     *
+     * @param bytesPerSecond sustained bytes per second (must be > 0)
+     * @param burst          bytes allowed in a burst (must be > 0)
+     * @return this server
+     */
+    public TcpServer setGlobalTransferRateLimit(long bytesPerSecond, long burst) {
+        final var limit = new RateLimit(bytesPerSecond, burst);
+        this.globalTransferBucket = newBucket(limit);
+        return this;
+    }
+
+    /**
+     * Gets how long transfers have been paused by bandwidth limits, summed over
+     * all sessions.
+     *
+     * @return the total pause time in nanoseconds
+     */
+    public long getTransferThrottleNanos() {
+        return transferThrottleNanos.sum();
+    }
+
+    /**
+     * Enables content-addressed storage: uploads that carry a {@code sha256=}
+     * checksum are stored once per distinct content under
+     * {@code <uploads>/.objects} and every file name is a hard link to it. An
+     * upload of content the server already holds is answered "OK EXISTS" and
+     * no bytes are transferred.
+     *
+     * @param enabled true to enable, false to store every upload separately
+     * @return this server
+     */
+    public TcpServer setContentAddressedStorage(boolean enabled) {
+        this.contentStore = enabled
+                ? new ContentStore(Globals.getBaseDirUploads().resolve(ContentStore.OBJECTS_DIR))
+                : null;
+        return this;
+    }
+
+    /**
+     * Keeps memory mappings of frequently downloaded files, so serving the
+     * same files to many clients writes them to the sockets straight from the
+     * mapping instead of opening and reading each file per request (see
+     * {@link MappedFileCache}). Files this server stores are invalidated.
+     *
+     * @param maxBytes     total size of the mapped files, or 0 to disable
+     * @param maxFileBytes largest file to cache
+     * @return this server
+     */
+    public TcpServer setDownloadCache(long maxBytes, long maxFileBytes) {
+        this.downloadCache = maxBytes > 0 ? new MappedFileCache(maxBytes, maxFileBytes) : null;
+        return this;
+    }
+
+    /**
+     * @return the download cache, or null if disabled
+     */
+    public MappedFileCache getDownloadCache() {
+        return downloadCache;
+    }
+
+    /**
+     * Sets what {@code OK STORED} guarantees after a crash or power loss (see
+     * {@link Durability}). Group commit gathers flushes over a 2 ms window.
+     *
+     * @param durability the durability mode (default {@link Durability#NONE})
+     * @return this server
+     */
+    public TcpServer setDurability(Durability durability) {
+        return setDurability(durability, 2_000);
+    }
+
+    /**
+     * Sets the durability mode.
+     *
+     * @param durability   the durability mode
+     * @param windowMicros for {@link Durability#GROUP_COMMIT}: how long the
+     *                     committer gathers flush requests before issuing them
+     * @return this server
+     */
+    public TcpServer setDurability(Durability durability, long windowMicros) {
+        if (durability == null)
+            throw new IllegalArgumentException("durability must not be null");
+
+        synchronized (lifecycleLock) {
+            final var previous = groupCommitter;
+            groupCommitter = durability == Durability.GROUP_COMMIT ? new GroupCommitter(windowMicros) : null;
+            this.durability = durability;
+            if (previous != null) {
+                previous.close();
+            }
+        }
+        return this;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return the group committer, or null unless the durability mode is
+     *         {@link Durability#GROUP_COMMIT}
+     */
+    public GroupCommitter getGroupCommitter() {
+        return groupCommitter;
+    }
+
+    /**
+     * @return the content store, or null when content-addressed storage is
+     *         disabled
+     */
+    public ContentStore getContentStore() {
+        return contentStore;
+    }
+
+    /**
+     * Gets how many lines were rejected by a rate limit.
+     *
+     * @return the number of rejected lines
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCommands.sum();
+    }
+
+    /**
+     * Gets how many times a policy was applied because a recipient's backlog was
+     * full.
+     *
+     * @param policy the policy to read the counter for
+     * @return the number of dropped/conflated messages, or disconnects
+     */
+    public long getSlowConsumerEvents(SlowConsumerPolicy policy) {
+        return slowConsumerEvents.get(policy).sum();
+    }
+
     /**
      * Starts the TCP server in a background thread.
      * The server will listen for incoming client connections on the configured
@@ -122,7 +620,9 @@ public final class TcpServer implements Closeable {
             }
 
             try {
-                serverSocket = new ServerSocket(port);
+                // Channel-backed so every accepted Socket exposes a SocketChannel
+                serverSocket = ServerSocketChannel.open().socket();
+                serverSocket.bind(new InetSocketAddress(port));
                 serverSocket.setSoTimeout(30_000); // 30-second timeout for graceful shutdown
                 started.set(true);
 
@@ -144,10 +644,14 @@ public final class TcpServer implements Closeable {
             try {
                 final var client = serverSocket.accept();
 
-                final var conn = new ClientConnection(client);
-                clients.put(client, conn);
+                final var conn = new ClientConnection(nextSessionId.incrementAndGet(), client);
+                conn.commandBucket = newBucket(commandRateLimit);
+                conn.broadcastBucket = newBucket(broadcastRateLimit);
+                conn.byteBucket = newBucket(inboundByteRateLimit);
+                conn.transferBucket = newBucket(transferRateLimit);
+                clients.put(conn.sessionId, conn);
 
-                LOGGER.info("👤 New client connected: {}:{}", client.getInetAddress(), client.getPort());
+                LOGGER.info("👤 New client connected: {}", conn.id());
 
                 clientPool.submit(() -> handleClient(conn));
             } catch (SocketTimeoutException ex) {
@@ -165,6 +669,10 @@ public final class TcpServer implements Closeable {
 
     private void handleClient(ClientConnection conn) {
         try {
+            if (replayOnConnect > 0 && broadcastHistory != null) {
+                replay(conn, null, replayOnConnect);
+            }
+
             while (true) {
 
                 if (conn.binaryMode) {
@@ -173,39 +681,100 @@ public final class TcpServer implements Closeable {
                     conn.binaryRemaining = 0;
 
                     final var target = conn.getPendingBinaryTarget();
+                    final long offset = conn.getPendingBinaryOffset();
+                    final long chunkOf = conn.getPendingChunkFileSize();
+                    final String uploadId = conn.getPendingChunkUploadId();
+                    final long deltaOf = conn.getPendingDeltaFileSize();
+                    final var checksum = conn.getPendingChecksum();
+                    final var codec = conn.getPendingCodec();
+                    final String tag = conn.pendingTag;
+                    conn.pendingTag = null;
                     conn.setPendingBinaryTarget(null);
+                    conn.setPendingBinaryOffset(0);
+                    conn.setPendingChunkFileSize(0);
+                    conn.setPendingChunkUploadId(null);
+                    conn.setPendingDeltaFileSize(0);
+                    conn.setPendingChecksum(null);
+                    conn.setPendingCodec(null);
 
                     if (target == null) {
                         // No target defined -> just drain to keep protocol consistent
-                        drain(conn, bytes);
-                        conn.out.println("ERROR No pending file target");
-                        conn.out.flush();
+                        drain(conn, bytes, codec);
+                        conn.sendLine(tagged(tag, "ERROR No pending file target"));
                         continue;
                     }
 
-                    receiveToFile(conn, bytes, target);
-
-                    conn.out.println("OK STORED " + target.getFileName());
-                    conn.out.flush();
+                    if (chunkOf > 0) {
+                        conn.sendLine(tagged(tag, receiveChunk(conn, bytes, target, offset, chunkOf, uploadId)));
+                    } else if (deltaOf > 0) {
+                        conn.sendLine(tagged(tag, receiveDelta(conn, bytes, target, deltaOf, checksum)));
+                    } else {
+                        conn.sendLine(tagged(tag, receiveToFile(conn, bytes, target, offset, checksum, codec)));
+                    }
                     continue;
                 }
 
-                final String message = conn.lineReader.readLineUtf8();
-                if (message == null)
+                final String line = conn.lineReader.readLineUtf8();
+                if (line == null)
                     break;
 
-                LOGGER.info("📨 Received from {}: {}", conn.id(), message);
+                LOGGER.info("📨 Received from {}: {}", conn.id(), line);
+
+                // "#<id> <request>": every reply to the request carries the same prefix
+                final String tag = requestTag(line);
+                final String message = tag == null ? line : line.substring(tag.length() + 1);
 
-                if (message.startsWith("!")) {
-                    final String commandKey = extractCommandKey(message);
+                final String commandKey = message.startsWith("!") ? extractCommandKey(message) : null;
+
+                if (!admit(conn, commandKey)) {
+                    rateLimitedCommands.increment();
+                    if (PUSH_COMMAND.equals(commandKey)) {
+                        skipPushPayload(conn, message);
+                    }
+                    conn.sendLine(tagged(tag, "ERROR RATE LIMITED"));
+                    continue;
+                }
+
+                if (PUSH_COMMAND.equals(commandKey)) {
+                    // Pipelined upload: the payload follows the header without
+                    // waiting, and the only reply is sent once it is consumed
                     final String response = handleCommand(commandKey, message, conn);
-                    conn.out.println(response);
-                    conn.out.flush();
+                    if (conn.binaryMode) {
+                        conn.pendingTag = tag;
+                    } else {
+                        skipPushPayload(conn, message);
+                        conn.sendLine(tagged(tag, response));
+                    }
+                    continue;
+                }
+
+                if (commandKey != null) {
+                    conn.pendingDownload = null;
+                    conn.pendingPayload = null;
+                    final String response = tagged(tag, handleCommand(commandKey, message, conn));
+                    if (conn.binaryMode) {
+                        conn.pendingTag = tag;
+                    }
+
+                    final var download = conn.pendingDownload;
+                    if (download != null) {
+                        conn.pendingDownload = null;
+                        sendFile(conn, response, download);
+                        continue;
+                    }
+
+                    final var payload = conn.pendingPayload;
+                    if (payload != null) {
+                        conn.pendingPayload = null;
+                        sendPayload(conn, response, payload);
+                        continue;
+                    }
+
+                    conn.sendLine(response);
                     continue;
                 }
 
-                conn.out.println("OK");
-                conn.out.flush();
+                conn.sendLine(tagged(tag, "OK"));
             }
         } catch (IOException ex) {
             LOGGER.warn("⚠️ Client communication error {}: {}", conn.id(), ex.getMessage());
@@ -213,144 +782,1300 @@ public final class TcpServer implements Closeable {
             LOGGER.error("❌ Unexpected error handling client {}", conn.id(), ex);
         } finally {
             try {
-                removeClient(conn.socket);
+                removeClient(conn);
             } catch (Exception ex) {
                 LOGGER.error("❌ Error during cleanup for client {}", conn.id(), ex);
             }
         }
     }
 
-    private static void receiveToFile(ClientConnection conn, long bytes, Path target) throws IOException {
-        Files.createDirectories(target.getParent());
+    // Bytes go to <target>.part from `offset` on; the part file is renamed to
+    // the target once complete, and kept for a resume if the transfer breaks.
+    // With a checksum, the received bytes are hashed as they are written and a
+    // mismatch deletes the part file. With a codec, `bytes` counts decoded
+    // bytes and the payload arrives as frames. Returns the response line.
+    private String receiveToFile(ClientConnection conn, long bytes, Path target, long offset, FileChecksum checksum,
+            TransferCodec codec) throws IOException {
+        final var part = UploadFiles.partOf(target);
+
+        if (!acquireUpload(part, conn)) {
+            drain(conn, bytes, codec);
+            return "ERROR Upload in progress";
+        }
 
-        try (final var fileOut = Files.newOutputStream(target)) {
-            final byte[] buf = new byte[8192];
-            long remaining = bytes;
+        try {
+            // Socket channel -> large direct buffer -> file channel: no heap copies.
+            // (FileChannel.transferFrom is not used: for socket sources the JDK
+            // copies through an internal 8 KB buffer, which halves throughput.)
+            final boolean verified;
+            try (final var file = openPart(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.READ)) {
+                if (file.size() < offset) {
+                    drain(conn, bytes, codec);
+                    return "ERROR Invalid offset " + file.size();
+                }
 
-            while (remaining > 0) {
-                int toRead = (int) Math.min(buf.length, remaining);
-                int read = conn.rawIn.read(buf, 0, toRead);
-                if (read == -1)
-                    throw new IOException("Stream closed while receiving file");
-                fileOut.write(buf, 0, read);
-                remaining -= read;
-            }
-            fileOut.flush();
-        }
-    }
+                // Anything past the offset is re-sent by the client
+                file.truncate(offset);
 
-    private static void drain(ClientConnection conn, long bytes) throws IOException {
-        final byte[] buf = new byte[8192];
-        long remaining = bytes;
+                if (checksum != null && offset > 0) {
+                    // Resumed: the bytes from the earlier connection are only on disk
+                    checksum.update(file, 0, offset, conn.transferBuffer());
+                }
 
-        while (remaining > 0) {
-            final int toRead = (int) Math.min(buf.length, remaining);
-            final int read = conn.rawIn.read(buf, 0, toRead);
-            if (read == -1) {
-                throw new IOException("Stream closed while reading binary payload");
+                if (codec != null) {
+                    receiveFrames(conn, file, offset, bytes, checksum, codec);
+                } else {
+                    long position = 0;
+                    while (position < bytes) {
+                        position += readIntoFile(conn, file, offset + position, bytes - position, checksum);
+                    }
+                }
+
+                verified = checksum == null || checksum.matches();
+                if (verified) {
+                    forceData(file);
+                }
             }
-            remaining -= read;
+
+            if (!verified) {
+                LOGGER.warn("⚠️ Checksum mismatch for {} from {}", target.getFileName(), conn.id());
+                Files.deleteIfExists(part);
+                return "ERROR CHECKSUM";
+            }
+
+            commitUpload(part, target, checksum);
+            return "OK STORED " + target.getFileName();
+        } finally {
+            activeUploads.remove(part, conn);
         }
     }
 
-    private static String extractCommandKey(String raw) {
-        if (raw == null)
-            return "";
-        String s = raw.trim();
-        if (s.isEmpty())
-            return "";
-        int space = s.indexOf(' ');
-        return (space >= 0) ? s.substring(0, space) : s;
+    // A verified part file becomes the target (through the content store when
+    // enabled and the upload carried a SHA-256)
+    private void commitUpload(Path part, Path target, FileChecksum checksum) throws IOException {
+        final var store = contentStore;
+        if (store != null && checksum != null && checksum.algorithm() == FileChecksum.Algorithm.SHA256) {
+            store.commit(part, checksum.expected(), target);
+            forceDirectory(store.objectOf(checksum.expected()).getParent());
+        } else {
+            UploadFiles.commit(part, target);
+        }
+        // After the rename: a download in between would map the old file again
+        invalidateDownload(target);
+        forceDirectory(target.getParent());
     }
 
-    private String handleCommand(String commandKey, String fullLine, ClientConnection conn) {
-        final var def = registry.resolve(commandKey);
-        if (def == null) {
-            return "Unknown command: " + commandKey;
+    // Rebuilds the target from its current content and a delta (see FileDelta)
+    // into the part file, hashing what is written. The result replaces the
+    // target only if it matches the checksum of the client's copy; otherwise
+    // the client falls back to a full upload. A malformed delta leaves the
+    // stream unusable and closes the connection.
+    private String receiveDelta(ClientConnection conn, long bytes, Path target, long fileSize,
+            FileChecksum checksum) throws IOException {
+        final var part = UploadFiles.partOf(target);
+
+        if (!acquireUpload(part, conn)) {
+            drain(conn, bytes, null);
+            return "ERROR Upload in progress";
         }
 
-        final var method = def.method();
-
         try {
-            final var target = Modifier.isStatic(method.getModifiers())
-                    ? null
-                    : container.get(def.ownerClass());
-
-            final var args = resolveArguments(method, conn, fullLine);
+            final FileChannel base;
+            try {
+                base = FileChannel.open(target, StandardOpenOption.READ);
+            } catch (NoSuchFileException ex) {
+                drain(conn, bytes, null);
+                return "ERROR Not found";
+            }
 
-            // ✅ capture handler return value
-            final var result = method.invoke(target, args);
+            final boolean rebuilt;
+            try (base; final var file = openPart(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                final long baseSize = base.size();
+                final var op = ByteBuffer.allocate(FileDelta.COPY_LENGTH);
+                long consumed = 0;
+                long written = 0;
+
+                while (consumed < bytes) {
+                    readFully(conn, op.clear().limit(1));
+                    final byte type = op.get(0);
+
+                    if (type == FileDelta.OP_COPY) {
+                        readFully(conn, op.limit(FileDelta.COPY_LENGTH));
+                        final long from = op.getLong(1);
+                        final int length = op.getInt(9);
+                        consumed += FileDelta.COPY_LENGTH;
+                        if (from < 0 || length <= 0 || from + length > baseSize || written + length > fileSize
+                                || consumed > bytes) {
+                            throw new IOException("Invalid delta copy " + from + "+" + length);
+                        }
+                        copyFromBase(conn, base, from, length, file, written, checksum);
+                        written += length;
+                    } else if (type == FileDelta.OP_LITERAL) {
+                        readFully(conn, op.limit(FileDelta.LITERAL_HEADER_LENGTH));
+                        final int length = op.getInt(1);
+                        consumed += FileDelta.LITERAL_HEADER_LENGTH + (long) length;
+                        if (length <= 0 || written + length > fileSize || consumed > bytes) {
+                            throw new IOException("Invalid delta literal of " + length + " bytes");
+                        }
+                        long done = 0;
+                        while (done < length) {
+                            done += readIntoFile(conn, file, written + done, length - done, checksum);
+                        }
+                        written += length;
+                    } else {
+                        throw new IOException("Invalid delta operation " + type);
+                    }
+                }
 
-            if (conn.socket.isClosed()) {
-                return "Connection closed by handler";
+                rebuilt = written == fileSize && checksum.matches();
+                if (rebuilt) {
+                    forceData(file);
+                }
+            } catch (IOException ex) {
+                // Not resumable: the part holds a rebuild, not a received prefix
+                Files.deleteIfExists(part);
+                throw ex;
             }
 
-            // ✅ if handler returns a String, use it as the server response
-            if (result instanceof String s) {
-                final String trimmed = s.trim();
-                if (!trimmed.isEmpty()) {
-                    return trimmed;
-                }
+            if (!rebuilt) {
+                LOGGER.warn("⚠️ Delta for {} from {} did not rebuild the client's copy", target.getFileName(),
+                        conn.id());
+                Files.deleteIfExists(part);
+                return "ERROR CHECKSUM";
             }
 
-            // fallback (void or non-string return)
-            return "Handler executed successfully: " + method.getName();
+            commitUpload(part, target, checksum);
+            return "OK STORED " + target.getFileName();
+        } finally {
+            activeUploads.remove(part, conn);
+        }
+    }
 
-        } catch (IllegalArgumentException ex) {
-            LOGGER.warn("⚠️ Invalid handler parameters for {}#{}: {}",
-                    def.ownerClass().getName(), method.getName(), ex.getMessage());
-            return "Invalid handler parameters: " + ex.getMessage();
+    // Bytes the delta reuses: read from the old copy, hashed and written
+    private static void copyFromBase(ClientConnection conn, FileChannel base, long from, int length, FileChannel file,
+            long position, FileChecksum checksum) throws IOException {
+        final var buf = conn.transferBuffer();
+        long done = 0;
+        while (done < length) {
+            buf.clear().limit((int) Math.min(buf.capacity(), length - done));
+            final int read = base.read(buf, from + done);
+            if (read <= 0) {
+                throw new IOException("File shrank while applying delta");
+            }
 
-        } catch (IllegalAccessException | InvocationTargetException ex) {
-            LOGGER.error("❌ Error executing handler {}", method.getName(), ex);
-            // If InvocationTargetException wraps a real exception, you can show its cause
-            // message:
-            final var cause = ex instanceof InvocationTargetException ite ? ite.getCause() : ex;
-            return "Error executing handler: " + (cause != null ? cause.getMessage() : ex.getMessage());
+            buf.flip();
+            checksum.update(buf);
+            buf.rewind();
+            long at = position + done;
+            while (buf.hasRemaining()) {
+                at += file.write(buf, at);
+            }
+            done += read;
         }
     }
 
-    /**
-     * Broadcasts a message to all connected clients except the sender.
-     * <p>
-     * The message is prefixed with sender information:
+    // One chunk of a parallel upload: written in place into the preallocated
+    // part file; whichever connection completes the file commits it. Chunks
+    // with another upload id start the file over. An upload whose transfer
+    // breaks, or that stays idle, is dropped with its part file.
+    private String receiveChunk(ClientConnection conn, long bytes, Path target, long offset, long fileSize,
+            String uploadId) throws IOException {
+        final var part = UploadFiles.partOf(target);
+        expireChunkedUploads();
+
+        final var upload = chunkedUploads.compute(target,
+                (k, current) -> current != null && current.matches(uploadId, fileSize) ? current
+                        : new ChunkedUpload(uploadId, part, fileSize));
+
+        // The upload's own connections share the part; any other writer is taken over
+        if (!acquireUpload(part, upload) || !upload.join(conn)) {
+            drain(conn, bytes, null);
+            return "ERROR Upload in progress";
+        }
+
+        boolean failed = true;
+        try {
+            synchronized (upload) {
+                try (final var file = openPart(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    if (file.size() > fileSize) {
+                        file.truncate(fileSize);
+                    } else if (file.size() < fileSize) {
+                        // Extends the file sparsely, like RandomAccessFile.setLength
+                        file.write(ByteBuffer.allocate(1), fileSize - 1);
+                    }
+                }
+            }
+
+            try (final var file = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                long position = 0;
+                while (position < bytes) {
+                    position += readIntoFile(conn, file, offset + position, bytes - position, null);
+                }
+            }
+
+            final var tracker = upload.tracker();
+            if (!tracker.add(offset, bytes)) {
+                failed = false;
+                return "OK CHUNK " + tracker.received();
+            }
+
+            upload.finish();
+            chunkedUploads.remove(target, upload);
+            if (durability != Durability.NONE) {
+                // Flushes the chunks written through every connection (same inode)
+                try (final var file = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                    forceData(file);
+                }
+            }
+            UploadFiles.commit(part, target);
+            upload.stored();
+            invalidateDownload(target);
+            forceDirectory(target.getParent());
+            failed = false;
+            return "OK STORED " + target.getFileName();
+        } finally {
+            if (failed) {
+                chunkedUploads.remove(target, upload);
+                upload.abort();
+            }
+            if (upload.leave(conn)) {
+                releaseChunkedUpload(upload);
+            }
+        }
+    }
+
+    // Drops the parallel uploads no chunk arrived for in a while
+    private void expireChunkedUploads() {
+        final long now = System.nanoTime();
+        for (final var entry : chunkedUploads.entrySet()) {
+            final var upload = entry.getValue();
+            if (upload.idleNanos(now) > CHUNKED_UPLOAD_IDLE_TIMEOUT_NANOS
+                    && chunkedUploads.remove(entry.getKey(), upload)) {
+                LOGGER.info("🧹 Dropping idle {} of {}", upload.id(), entry.getKey().getFileName());
+                if (upload.abort()) {
+                    releaseChunkedUpload(upload);
+                }
+            }
+        }
+    }
+
+    // Frees the part file of a parallel upload nobody writes any more. Unless
+    // it was stored, the part only holds scattered chunks: it is deleted, so a
+    // resume never mistakes it for the prefix of an interrupted upload.
+    private void releaseChunkedUpload(ChunkedUpload upload) {
+        final var part = upload.part();
+        if (activeUploads.get(part) != upload) {
+            return;
+        }
+
+        try {
+            if (!upload.isStored()) {
+                Files.deleteIfExists(part);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("⚠️ Could not delete {}: {}", part.getFileName(), ex.getMessage());
+        } finally {
+            activeUploads.remove(part, upload);
+        }
+    }
+
+    /**
+     * Drops a stored file from the download cache. Uploads handled by this
+     * server do it themselves; handlers that replace files call it.
+     *
+     * @param file the replaced file
+     */
+    public void invalidateDownload(Path file) {
+        final var cache = downloadCache;
+        if (cache != null) {
+            cache.invalidate(file);
+        }
+    }
+
+    // Opens a part file in a directory created at most once per server. A
+    // cached directory removed since then is created again.
+    private FileChannel openPart(Path part, OpenOption... options) throws IOException {
+        final var dir = part.getParent();
+        uploadDirectories.ensure(dir);
+        try {
+            return FileChannel.open(part, options);
+        } catch (NoSuchFileException ex) {
+            uploadDirectories.forget(dir);
+            uploadDirectories.ensure(dir);
+            return FileChannel.open(part, options);
+        }
+    }
+
+    // The committer is read once: the mode may change while uploads run
+    private void forceData(FileChannel file) throws IOException {
+        if (durability == Durability.NONE) {
+            return;
+        }
+
+        final var committer = groupCommitter;
+        if (committer != null) {
+            committer.force(file);
+        } else {
+            file.force(false);
+        }
+    }
+
+    // Makes a rename into `dir` durable
+    private void forceDirectory(Path dir) throws IOException {
+        if (durability == Durability.NONE) {
+            return;
+        }
+
+        final var committer = groupCommitter;
+        if (committer != null) {
+            committer.forceDirectory(dir);
+        } else {
+            UploadFiles.syncDirectory(dir);
+        }
+    }
+
+    // A resume usually arrives before the server noticed that the previous
+    // connection died. Close that connection and wait until its handler has
+    // stopped writing the part file (last writer wins). A parallel upload
+    // holds its part for all of its connections.
+    private boolean acquireUpload(Path part, UploadOwner writer) {
+        final long deadline = System.nanoTime() + UPLOAD_TAKEOVER_TIMEOUT_NANOS;
+
+        UploadOwner owner;
+        while ((owner = activeUploads.putIfAbsent(part, writer)) != null && owner != writer) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+
+            LOGGER.info("♻️ {} takes over upload {} from {}", writer.id(), part.getFileName(), owner.id());
+            if (owner.abort() && owner instanceof ChunkedUpload idle) {
+                // No chunk is being written: nobody else will free the part
+                releaseChunkedUpload(idle);
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return true;
+    }
+
+    private int readIntoFile(ClientConnection conn, FileChannel file, long position, long remaining,
+            FileChecksum checksum) throws IOException {
+        final var buf = conn.transferBuffer();
+        buf.clear().limit(transferChunk(conn, remaining));
+
+        final int read = conn.inChannel.read(buf);
+        if (read == -1)
+            throw new IOException("Stream closed while receiving file");
+        throttle(conn, read);
+
+        buf.flip();
+        if (checksum != null) {
+            // Hash while the bytes are still in the buffer, then write the same bytes
+            checksum.update(buf);
+            buf.rewind();
+        }
+        long at = position;
+        while (buf.hasRemaining()) {
+            at += file.write(buf, at);
+        }
+        return read;
+    }
+
+    // Compressed payload: each frame is read into one half of the transfer
+    // buffer and decoded into the other, then written like a raw read.
+    private void receiveFrames(ClientConnection conn, FileChannel file, long offset, long bytes,
+            FileChecksum checksum, TransferCodec codec) throws IOException {
+        final var buf = conn.transferBuffer();
+        final var encoded = buf.slice(0, TransferCodecs.MAX_ENCODED_FRAME);
+        final var decoded = buf.slice(TransferCodecs.MAX_ENCODED_FRAME, TransferCodecs.FRAME_SIZE);
+
+        try (final var decoder = codec.newDecoder()) {
+            long position = 0;
+            while (position < bytes) {
+                final int rawLength = readFrameHeader(conn, encoded, bytes - position);
+                final int encodedLength = encoded.getInt(4);
+
+                readFully(conn, encoded.clear().limit(encodedLength));
+                decoder.decode(encoded.flip(), decoded.clear().limit(rawLength));
+
+                decoded.flip();
+                if (checksum != null) {
+                    checksum.update(decoded);
+                    decoded.rewind();
+                }
+                long at = offset + position;
+                while (decoded.hasRemaining()) {
+                    at += file.write(decoded, at);
+                }
+                position += rawLength;
+            }
+        }
+    }
+
+    // Reads and validates a frame header into the first 8 bytes of `header`;
+    // returns the raw length
+    private int readFrameHeader(ClientConnection conn, ByteBuffer header, long remaining) throws IOException {
+        readFully(conn, header.clear().limit(8));
+        final int rawLength = header.getInt(0);
+        final int encodedLength = header.getInt(4);
+
+        if (rawLength <= 0 || rawLength > TransferCodecs.FRAME_SIZE || rawLength > remaining
+                || encodedLength <= 0 || encodedLength > TransferCodecs.MAX_ENCODED_FRAME) {
+            throw new IOException("Invalid frame header (" + rawLength + ", " + encodedLength + ")");
+        }
+        return rawLength;
+    }
+
+    private void readFully(ClientConnection conn, ByteBuffer buf) throws IOException {
+        final int length = buf.remaining();
+        while (buf.hasRemaining()) {
+            if (conn.inChannel.read(buf) == -1) {
+                throw new IOException("Stream closed while receiving file");
+            }
+        }
+        throttle(conn, length);
+    }
+
+    // Header line + file region under one writeLock hold, so queued broadcasts
+    // can never land inside the payload
+    private void sendFile(ClientConnection conn, String header, FileRegion region) throws IOException {
+        final var cache = downloadCache;
+        final var mapped = cache != null ? cache.get(region.file()) : null;
+        if (mapped != null && mapped.capacity() >= region.offset() + region.length()) {
+            sendMapped(conn, header, mapped.slice((int) region.offset(), (int) region.length()));
+            return;
+        }
+
+        try (final var file = FileChannel.open(region.file(), StandardOpenOption.READ)) {
+            final WritableByteChannel target = conn.channel != null ? conn.channel : Channels.newChannel(conn.rawOut);
+
+            conn.writeLock.lock();
+            try {
+                conn.writeFully(encodeLine(header));
+
+                // File -> socket inside the kernel (sendfile) where supported
+                long position = region.offset();
+                final long end = region.offset() + region.length();
+                while (position < end) {
+                    final int chunk = transferChunk(conn, end - position);
+                    long sent = file.transferTo(position, chunk, target);
+                    if (sent <= 0) {
+                        // 0 also means the socket was not ready: once a virtual-thread
+                        // writer used it, the fd is non-blocking and sendfile may
+                        // report EAGAIN. A buffered copy blocks properly.
+                        sent = copyRegion(conn, file, position, chunk);
+                    }
+                    position += sent;
+                    throttle(conn, sent);
+                }
+            } finally {
+                conn.writeLock.unlock();
+            }
+        }
+    }
+
+    // Cached download: the socket is written straight from the mapping
+    private void sendMapped(ClientConnection conn, String header, ByteBuffer mapped) throws IOException {
+        conn.writeLock.lock();
+        try {
+            conn.writeFully(encodeLine(header));
+
+            while (mapped.hasRemaining()) {
+                final int chunk = transferChunk(conn, mapped.remaining());
+                final var piece = mapped.slice(mapped.position(), chunk);
+                conn.writeFully(piece);
+                mapped.position(mapped.position() + chunk);
+                throttle(conn, chunk);
+            }
+        } finally {
+            conn.writeLock.unlock();
+        }
+    }
+
+    // Header line + in-memory payload, written back to back like sendFile
+    private void sendPayload(ClientConnection conn, String header, ByteBuffer payload) throws IOException {
+        final int length = payload.remaining();
+        conn.writeLock.lock();
+        try {
+            conn.writeFully(encodeLine(header));
+            conn.writeFully(payload);
+        } finally {
+            conn.writeLock.unlock();
+        }
+        throttle(conn, length);
+    }
+
+    // Caller must hold writeLock
+    private static int copyRegion(ClientConnection conn, FileChannel file, long position, long remaining)
+            throws IOException {
+        final var buf = conn.transferBuffer();
+        buf.clear().limit((int) Math.min(buf.capacity(), remaining));
+
+        final int read = file.read(buf, position);
+        if (read <= 0) {
+            throw new IOException("File shrank while sending (offset " + position + ")");
+        }
+
+        conn.writeFully(buf.flip());
+        return read;
+    }
+
+    // Skips a payload of `bytes` (decoded) bytes, framed if a codec is given
+    private void drain(ClientConnection conn, long bytes, TransferCodec codec) throws IOException {
+        if (codec != null) {
+            final var header = conn.transferBuffer();
+            long remaining = bytes;
+            while (remaining > 0) {
+                remaining -= readFrameHeader(conn, header, remaining);
+                drain(conn, header.getInt(4), null);
+            }
+            return;
+        }
+
+        final var buf = conn.transferBuffer();
+        long remaining = bytes;
+
+        while (remaining > 0) {
+            buf.clear().limit(transferChunk(conn, remaining));
+            final int read = conn.inChannel.read(buf);
+            if (read == -1) {
+                throw new IOException("Stream closed while reading binary payload");
+            }
+            remaining -= read;
+            throttle(conn, read);
+        }
+    }
+
+    // Discards the payload of a refused !file.push (its size is the third
+    // token). Without a readable size the stream cannot be resynchronized.
+    private void skipPushPayload(ClientConnection conn, String header) throws IOException {
+        final String[] parts = header.trim().split("\\s+");
+        long size = -1;
+        if (parts.length >= 3) {
+            try {
+                size = Long.parseLong(parts[2]);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        if (size < 0) {
+            conn.sendLine("ERROR Malformed push header");
+            throw new IOException("Malformed push header: " + header);
+        }
+        drain(conn, size, null);
+    }
+
+    // Largest piece to move at once: shaped transfers stay within one burst
+    private int transferChunk(ClientConnection conn, long remaining) {
+        long chunk = Math.min(TRANSFER_BUFFER_SIZE, remaining);
+
+        final var session = conn.transferBucket;
+        if (session != null) {
+            chunk = Math.min(chunk, session.burst());
+        }
+        final var global = globalTransferBucket;
+        if (global != null) {
+            chunk = Math.min(chunk, global.burst());
+        }
+        return (int) chunk;
+    }
+
+    // Charges bytes already moved to the session's and the server's transfer
+    // buckets, pausing until neither is in debt. Buckets refill lazily from
+    // nanoTime, so an unthrottled transfer costs a couple of arithmetic ops.
+    private void throttle(ClientConnection conn, long bytes) {
+        final var session = conn.transferBucket;
+        final var global = globalTransferBucket;
+        if (session == null && global == null) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+
+        if (session != null) {
+            long wait;
+            while ((wait = session.nanosUntilAvailable(bytes)) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            session.tryAcquire(bytes);
+        }
+
+        if (global != null) {
+            while (true) {
+                final long wait;
+                synchronized (global) {
+                    wait = global.nanosUntilAvailable(bytes);
+                    if (wait == 0) {
+                        global.tryAcquire(bytes);
+                        break;
+                    }
+                }
+                LockSupport.parkNanos(wait);
+            }
+        }
+
+        final long paused = System.nanoTime() - start;
+        if (paused > 0) {
+            transferThrottleNanos.add(paused);
+        }
+    }
+
+    // Checks the session's buckets before dispatch (handler thread only)
+    private boolean admit(ClientConnection conn, String commandKey) {
+        // Cluster links carry other nodes' traffic, already limited at the
+        // origin. Only set once the link proved it knows the cluster secret: a
+        // client that merely sent !cluster.hello stays limited.
+        if (conn.clusterPeer != null) {
+            return true;
+        }
+
+        if (conn.byteBucket != null && !conn.byteBucket.tryAcquire(conn.lineReader.lastLineBytes())) {
+            return false;
+        }
+
+        if (conn.commandBucket != null && !conn.commandBucket.tryAcquire(1)) {
+            return false;
+        }
+
+        if (conn.broadcastBucket != null
+                && ("!broadcast".equals(commandKey) || "!publish".equals(commandKey))) {
+            return conn.broadcastBucket.tryAcquire(1);
+        }
+
+        return true;
+    }
+
+    private static TokenBucket newBucket(RateLimit limit) {
+        return limit == null ? null : new TokenBucket(limit.perSecond(), limit.burst());
+    }
+
+    private static String extractCommandKey(String raw) {
+        if (raw == null)
+            return "";
+        String s = raw.trim();
+        if (s.isEmpty())
+            return "";
+        int space = s.indexOf(' ');
+        return (space >= 0) ? s.substring(0, space) : s;
+    }
+
+    // "#<digits>" if the line starts with a request id followed by a space
+    private static String requestTag(String line) {
+        if (line.length() < 3 || line.charAt(0) != '#') {
+            return null;
+        }
+
+        int i = 1;
+        while (i < line.length() && i <= MAX_REQUEST_ID_DIGITS && isAsciiDigit(line.charAt(i))) {
+            i++;
+        }
+        return i > 1 && i < line.length() && line.charAt(i) == ' ' ? line.substring(0, i) : null;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static String tagged(String tag, String response) {
+        return tag == null ? response : tag + " " + response;
+    }
+
+    private String handleCommand(String commandKey, String fullLine, ClientConnection conn) {
+        final var def = registry.resolve(commandKey);
+        if (def == null) {
+            return "Unknown command: " + commandKey;
+        }
+
+        final var method = def.method();
+
+        try {
+            final var target = Modifier.isStatic(method.getModifiers())
+                    ? null
+                    : container.get(def.ownerClass());
+
+            final var args = resolveArguments(method, conn, fullLine);
+
+            // ✅ capture handler return value
+            final var result = method.invoke(target, args);
+
+            if (conn.socket.isClosed()) {
+                return "Connection closed by handler";
+            }
+
+            // ✅ if handler returns a String, use it as the server response
+            if (result instanceof String s) {
+                final String trimmed = s.trim();
+                if (!trimmed.isEmpty()) {
+                    return trimmed;
+                }
+            }
+
+            // fallback (void or non-string return)
+            return "Handler executed successfully: " + method.getName();
+
+        } catch (IllegalArgumentException ex) {
+            LOGGER.warn("⚠️ Invalid handler parameters for {}#{}: {}",
+                    def.ownerClass().getName(), method.getName(), ex.getMessage());
+            return "Invalid handler parameters: " + ex.getMessage();
+
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            LOGGER.error("❌ Error executing handler {}", method.getName(), ex);
+            // If InvocationTargetException wraps a real exception, you can show its cause
+            // message:
+            final var cause = ex instanceof InvocationTargetException ite ? ite.getCause() : ex;
+            return "Error executing handler: " + (cause != null ? cause.getMessage() : ex.getMessage());
+        }
+    }
+
+    /**
+     * Broadcasts a message to all connected clients except the sender.
+     * <p>
+     * The message is prefixed with sender information:
      * {@code [BROADCAST] ip:port -> message}
+     * The payload is encoded once; each recipient gets a read-only view of the
+     * same buffer appended to its outbound queue, so the caller never blocks on
+     * a slow socket. Recipients whose queue is full are handled according to
+     * {@link #setSlowConsumerPolicy(SlowConsumerPolicy)}.
      * If a client is disconnected during broadcast, it is automatically removed.
      * </p>
+     * <p>
+     * Audiences smaller than {@link #setParallelBroadcastThreshold(int)} are
+     * served on the caller's thread and the returned future is already complete.
+     * Larger audiences are split into shards (the session table's stripes) and
+     * queued in parallel on a bounded pool, so the calling handler returns
+     * immediately.
+     * </p>
+     *
+     * @param sender  the socket of the sending client (must not be null)
+     * @param message the message to broadcast (must not be null)
+     * @return a future completed with the number of recipients the message was
+     *         queued for
+     */
+    public CompletableFuture<Integer> broadcast(Socket sender, String message) {
+        final String senderId = sender.getInetAddress() + ":" + sender.getPort();
+
+        final var relay = cluster;
+        if (relay != null) {
+            relay.forwardBroadcast(senderId, message);
+        }
+
+        return broadcastLocal(sender, senderId, message);
+    }
+
+    private CompletableFuture<Integer> broadcastLocal(Socket sender, String senderId, String message) {
+        final var payload = encodeLine(String.format("[BROADCAST] %s -> %s", senderId, message));
+        final var policy = slowConsumerPolicy;
+
+        final var history = broadcastHistory;
+        if (history != null) {
+            history.append(payload.duplicate());
+        }
+
+        if (clients.size() < parallelBroadcastThreshold) {
+            int delivered = 0;
+            for (int stripe = 0; stripe < clients.stripeCount(); stripe++) {
+                delivered += fanOut(stripe, sender, payload, policy);
+            }
+            return CompletableFuture.completedFuture(delivered);
+        }
+
+        // Each session-table stripe is a shard. A parallel stream started from a
+        // ForkJoinPool worker runs its tasks in that same pool, so the traversal
+        // stays on the bounded fanoutPool.
+        return CompletableFuture.supplyAsync(() -> IntStream.range(0, clients.stripeCount())
+                .parallel()
+                .map(stripe -> fanOut(stripe, sender, payload, policy))
+                .sum(), fanoutPool);
+    }
+
+    private int fanOut(int stripe, Socket sender, ByteBuffer payload, SlowConsumerPolicy policy) {
+        return clients.sumInStripe(stripe, conn -> {
+            if (conn.socket.isClosed()) {
+                removeClient(conn);
+                return 0;
+            }
+
+            // Same session (the accepted socket instance itself); cluster links
+            // get broadcasts through the relay instead
+            if (conn.socket == sender || conn.clusterPeer != null) {
+                return 0;
+            }
+
+            return enqueue(conn, BROADCAST_STREAM, payload.duplicate(), policy) ? 1 : 0;
+        });
+    }
+
+    /**
+     * Checks whether a session is still connected.
+     *
+     * @param sessionId the session id (see {@link TcpSession#sessionId()})
+     * @return true if the session is registered and its socket is open
+     */
+    public boolean isConnected(long sessionId) {
+        final var conn = clients.get(sessionId);
+        return conn != null && !conn.socket.isClosed();
+    }
+
+    /**
+     * Sends a line to a single session, looked up by its numeric id in O(1).
+     * <p>
+     * The line is queued like a broadcast (encode once, non-blocking) and
+     * written verbatim. Direct messages are never conflated and never evict
+     * queued messages from other senders, whatever the slow-consumer policy:
+     * when the recipient's backlog is full the line is refused instead.
+     * </p>
+     *
+     * @param sessionId the target session id (see {@link TcpSession#sessionId()})
+     * @param message   the line to send (must not be null)
+     * @return true if the session exists and the line was queued, false if the
+     *         session is unknown or its backlog is full
+     */
+    public boolean sendTo(long sessionId, String message) {
+        final var conn = clients.get(sessionId);
+        if (conn == null) {
+            return false;
+        }
+
+        if (conn.socket.isClosed()) {
+            removeClient(conn);
+            return false;
+        }
+
+        // Point-to-point: a full backlog refuses the new line rather than
+        // conflating or dropping someone else's private message
+        return enqueue(conn, DIRECT_STREAM, encodeLine(message), SlowConsumerPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Subscribes a session to a topic or wildcard pattern.
+     * <p>
+     * Topics are dot-separated ({@code prices.eu.btc}); {@code *} matches one
+     * segment and {@code >} matches the remaining segments.
+     * </p>
+     *
+     * @param session the subscribing session (must belong to this server)
+     * @param pattern the topic or wildcard pattern
+     * @return true if the subscription is new
+     * @throws IllegalArgumentException if the pattern is malformed or the session
+     *                                  is not a connection of this server
+     */
+    public boolean subscribe(TcpSession session, String pattern) {
+        final var conn = connectionOf(session);
+        final boolean added = topics.subscribe(pattern, conn);
+        if (added) {
+            conn.subscriptions.add(pattern);
+            // removeClient may have run unsubscribeAll before the line above:
+            // undo, or the closed session would stay in the index
+            if (clients.get(conn.sessionId) != conn) {
+                conn.subscriptions.remove(pattern);
+                topics.unsubscribe(pattern, conn);
+                return false;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Removes a subscription previously created with
+     * {@link #subscribe(TcpSession, String)}.
+     *
+     * @return true if the subscription existed
+     */
+    public boolean unsubscribe(TcpSession session, String pattern) {
+        final var conn = connectionOf(session);
+        conn.subscriptions.remove(pattern);
+        return topics.unsubscribe(pattern, conn);
+    }
+
+    /**
+     * Publishes a message to every session subscribed to the topic (including the
+     * sender, if it is subscribed).
+     * <p>
+     * Subscribers receive {@code [PUBLISH] topic ip:port -> message}. Only the
+     * matching subscribers are visited, so the cost does not depend on the total
+     * number of connections.
+     * </p>
      *
-     * @param sender  the socket of the sending client (must not be null)
-     * @param message the message to broadcast (must not be null)
+     * @param sender  the publishing session (must not be null)
+     * @param topic   a concrete topic (no wildcards)
+     * @param message the message to publish (must not be null)
+     * @return the number of local subscribers the message was queued for (slow
+     *         consumers that dropped it are not counted; in cluster mode the
+     *         message is also forwarded to the other nodes)
+     * @throws IllegalArgumentException if the topic is malformed or contains
+     *                                  wildcards
      */
-    public void broadcast(Socket sender, String message) {
-        final String senderId = sender.getInetAddress() + ":" + sender.getPort();
-        final String payload = String.format("[BROADCAST] %s -> %s", senderId, message);
+    public int publish(TcpSession sender, String topic, String message) {
+        if (!TopicIndex.isValidTopic(topic)) {
+            throw new IllegalArgumentException("Invalid topic: " + topic);
+        }
 
-        clients.forEach((sock, conn) -> {
-            if (sock.isClosed()) {
-                removeClient(sock);
-                return;
+        final var socket = sender.socket();
+        final String senderId = socket.getInetAddress() + ":" + socket.getPort();
+
+        final var relay = cluster;
+        if (relay != null) {
+            relay.forwardPublish(topic, senderId, message);
+        }
+
+        return publishLocal(topic, senderId, message);
+    }
+
+    private int publishLocal(String topic, String senderId, String message) {
+        final var history = topicHistories.get(topic);
+        final Set<ClientConnection> subscribers = topics.subscribers(topic);
+        if (subscribers.isEmpty() && history == null) {
+            return 0;
+        }
+
+        final var payload = encodeLine(String.format("[PUBLISH] %s %s -> %s", topic, senderId, message));
+
+        if (history != null) {
+            history.append(payload.duplicate());
+        }
+        final var policy = topicPolicies.getOrDefault(topic, slowConsumerPolicy);
+
+        int delivered = 0;
+        for (final var conn : subscribers) {
+            if (conn.socket.isClosed()) {
+                removeClient(conn);
+                continue;
             }
 
-            if (sock.getPort() == sender.getPort() && sock.getInetAddress().equals(sender.getInetAddress())) {
-                return;
+            if (enqueue(conn, topic, payload.duplicate(), policy)) {
+                delivered++;
             }
+        }
+
+        return delivered;
+    }
+
+    /**
+     * Streams the newest retained messages of a topic (or of the broadcast
+     * stream) to a session in a single write.
+     *
+     * @param session  the receiving session (must belong to this server)
+     * @param topic    the topic, or null for the broadcast stream
+     * @param messages how many of the newest messages to replay
+     * @return the number of replayed messages (0 if no history is kept)
+     * @throws IOException if writing to the session fails
+     */
+    public int replay(TcpSession session, String topic, int messages) throws IOException {
+        final var conn = connectionOf(session);
+        final var history = topic == null ? broadcastHistory : topicHistories.get(topic);
+        if (history == null || messages <= 0) {
+            return 0;
+        }
 
+        final var snapshot = history.snapshot(messages);
+        if (snapshot.messages() > 0) {
+            conn.writeLock.lock();
             try {
-                conn.out.println(payload);
-                conn.out.flush();
-            } catch (Exception ex) {
+                conn.writeFully(snapshot.data());
+            } finally {
+                conn.writeLock.unlock();
+            }
+        }
+        return snapshot.messages();
+    }
+
+    /**
+     * Streams a region of a file to a session right after the response line of
+     * the command currently being handled (e.g. {@code OK SIZE <n>}). Meant for
+     * command handlers: the header and the bytes are written back to back, with
+     * nothing interleaved.
+     *
+     * @param session the session running the command
+     * @param file    the file to send (must be a regular file)
+     * @param offset  first byte to send (must be >= 0)
+     * @param length  number of bytes to send (must be >= 0 and within the file)
+     * @throws IOException if the file cannot be read
+     */
+    public void sendFileAfterResponse(TcpSession session, Path file, long offset, long length) throws IOException {
+        final var conn = connectionOf(session);
+        final long size = Files.size(file);
+        if (offset < 0 || length < 0 || offset + length > size)
+            throw new IllegalArgumentException("Range outside of file: " + offset + "+" + length + " > " + size);
+
+        conn.pendingDownload = new FileRegion(file, offset, length);
+    }
+
+    /**
+     * Sends bytes to a session right after the response line of the command
+     * currently being handled, like
+     * {@link #sendFileAfterResponse(TcpSession, Path, long, long)} for data
+     * built in memory.
+     *
+     * @param session the session running the command
+     * @param payload the bytes to send (from its position to its limit)
+     */
+    public void sendBytesAfterResponse(TcpSession session, ByteBuffer payload) {
+        connectionOf(session).pendingPayload = Objects.requireNonNull(payload, "payload");
+    }
+
+    /**
+     * Links this server to the other nodes of a cluster.
+     * <p>
+     * One TCP link is opened (and kept open, reconnecting with backoff) to every
+     * seed. Broadcasts and publishes originating on this node are forwarded
+     * over these links and delivered to the local clients of each peer; message
+     * ids make delivery idempotent. Every node must list every other node (full
+     * mesh): relayed messages are not forwarded a second time.
+     * </p>
+     * <p>
+     * Only nodes that know {@code secret} are accepted as peers (see
+     * {@link ClusterRelay}); every node must be given the same one.
+     * </p>
+     *
+     * @param nodeId unique name of this node (no whitespace)
+     * @param secret secret shared by the nodes of the cluster (non-blank)
+     * @param seeds  client addresses of the other nodes
+     * @return this server
+     * @throws IllegalStateException if cluster mode is already enabled
+     */
+    public TcpServer joinCluster(String nodeId, String secret, List<InetSocketAddress> seeds) {
+        if (nodeId == null || nodeId.isBlank() || nodeId.chars().anyMatch(Character::isWhitespace))
+            throw new IllegalArgumentException("nodeId must be non-blank without whitespace");
+        if (secret == null || secret.isBlank())
+            throw new IllegalArgumentException("secret must not be null/blank");
+        if (seeds == null)
+            throw new IllegalArgumentException("seeds must not be null");
+
+        synchronized (lifecycleLock) {
+            if (cluster != null)
+                throw new IllegalStateException("Cluster mode already enabled");
+            cluster = new ClusterRelay(nodeId, secret, List.copyOf(seeds));
+        }
+        return this;
+    }
+
+    /**
+     * Gets the number of outgoing cluster links that are currently connected.
+     *
+     * @return connected links (0 when not in cluster mode)
+     */
+    public int getConnectedClusterLinks() {
+        final var relay = cluster;
+        return relay == null ? 0 : relay.connectedLinks();
+    }
+
+    /**
+     * Starts accepting a session as the incoming link of another cluster node.
+     * Used by the built-in {@code !cluster.hello} command.
+     *
+     * @return the challenge the node must answer with
+     *         {@link #authenticateClusterPeer(TcpSession, String)}, or null if
+     *         this server is not in cluster mode
+     */
+    public String challengeClusterPeer(TcpSession session, String nodeId) {
+        final var conn = connectionOf(session);
+        if (cluster == null) {
+            return null;
+        }
+
+        final String challenge = ClusterRelay.newChallenge();
+        conn.clusterHello = nodeId + " " + challenge;
+        return challenge;
+    }
+
+    /**
+     * Marks a session as the incoming link of another cluster node once it
+     * answered the challenge of its hello. Used by the built-in
+     * {@code !cluster.auth} command. A hello allows one attempt.
+     *
+     * @param proof the node's answer to the challenge
+     * @return false if there was no hello or the node does not know the secret
+     */
+    public boolean authenticateClusterPeer(TcpSession session, String proof) {
+        final var conn = connectionOf(session);
+        final var relay = cluster;
+        final String hello = conn.clusterHello;
+        conn.clusterHello = null;
+        if (relay == null || hello == null) {
+            return false;
+        }
+
+        final String[] parts = hello.split(" ", 2);
+        if (!relay.verify(parts[0], parts[1], proof)) {
+            LOGGER.warn("⚠️ Cluster peer {} from {} failed authentication", parts[0], conn.id());
+            return false;
+        }
+
+        conn.clusterPeer = parts[0];
+        LOGGER.info("🔗 Cluster peer {} connected from {}", parts[0], conn.id());
+        return true;
+    }
+
+    /**
+     * Delivers a message relayed by another node to the local clients. Used by
+     * the built-in {@code !cluster.relay} command.
+     *
+     * @param session   the peer link it arrived on
+     * @param messageId cluster-unique message id
+     * @param topic     the topic, or null for a broadcast
+     * @param senderId  the original sender label
+     * @param message   the message
+     * @return true if delivered, false if it was a duplicate
+     * @throws IllegalStateException if the session is not a cluster peer
+     */
+    public boolean deliverClusterRelay(TcpSession session, String messageId, String topic, String senderId,
+            String message) {
+        final var conn = connectionOf(session);
+        final var relay = cluster;
+        if (relay == null || conn.clusterPeer == null) {
+            throw new IllegalStateException("Not a cluster peer");
+        }
+
+        if (!relay.markSeen(messageId)) {
+            return false;
+        }
+
+        if (topic == null) {
+            broadcastLocal(null, senderId, message);
+        } else {
+            publishLocal(topic, senderId, message);
+        }
+        return true;
+    }
+
+    private static ClientConnection connectionOf(TcpSession session) {
+        if (session instanceof ClientConnection conn) {
+            return conn;
+        }
+        throw new IllegalArgumentException("Session does not belong to this server");
+    }
+
+    /**
+     * Queues a payload for a recipient, applying the slow-consumer policy when
+     * its backlog is full.
+     *
+     * @return true if the payload was queued
+     */
+    private boolean enqueue(ClientConnection conn, String stream, ByteBuffer payload, SlowConsumerPolicy policy) {
+        boolean disconnect = false;
+
+        synchronized (conn.outbound) {
+            if (conn.outbound.size() >= maxOutboundBacklog) {
+                slowConsumerEvents.get(policy).increment();
+
+                switch (policy) {
+                    case DROP_NEWEST:
+                        return false;
+                    case DROP_OLDEST:
+                        conn.outbound.pollFirst();
+                        break;
+                    case CONFLATE:
+                        if (!conn.outbound.removeIf(o -> stream.equals(o.stream()))) {
+                            conn.outbound.pollFirst();
+                        }
+                        break;
+                    case DISCONNECT:
+                        conn.outbound.clear();
+                        disconnect = true;
+                        break;
+                }
+            }
+
+            if (!disconnect) {
+                conn.outbound.addLast(new Outbound(stream, payload));
+            }
+        }
+
+        if (disconnect) {
+            LOGGER.warn("🐢 Disconnecting slow consumer {}", conn.id());
+            removeClient(conn);
+            return false;
+        }
+
+        if (conn.flushScheduled.compareAndSet(false, true)) {
+            try {
+                writerPool.execute(() -> flushOutbound(conn));
+            } catch (RejectedExecutionException ex) {
+                // Server is shutting down; nothing left to deliver to
+                conn.flushScheduled.set(false);
+            }
+        }
+
+        return true;
+    }
+
+    private void flushOutbound(ClientConnection conn) {
+        final long window = coalesceWindowNanos;
+        if (window > 0) {
+            // Let the burst accumulate; writers run on virtual threads, so this
+            // only parks the writer of this connection.
+            LockSupport.parkNanos(window);
+        }
+
+        while (true) {
+            conn.writeLock.lock();
+            try {
+                ByteBuffer[] batch;
+                while ((batch = drainOutbound(conn)) != null) {
+                    recordBatch(batch.length);
+                    conn.writeFully(batch);
+                }
+            } catch (IOException ex) {
                 LOGGER.warn("⚠️ Broadcast failed to {}: {}", conn.id(), ex.getMessage());
-                removeClient(sock);
+                conn.flushScheduled.set(false);
+                removeClient(conn);
+                return;
+            } finally {
+                conn.writeLock.unlock();
             }
-        });
 
+            conn.flushScheduled.set(false);
+
+            // A producer may have enqueued after our last poll but before the flag
+            // was cleared; reclaim the flag and keep draining in that case.
+            synchronized (conn.outbound) {
+                if (conn.outbound.isEmpty()) {
+                    return;
+                }
+            }
+            if (!conn.flushScheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private static ByteBuffer[] drainOutbound(ClientConnection conn) {
+        synchronized (conn.outbound) {
+            final int count = Math.min(conn.outbound.size(), MAX_GATHER);
+            if (count == 0) {
+                return null;
+            }
+
+            final var batch = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                batch[i] = conn.outbound.pollFirst().payload();
+            }
+            return batch;
+        }
+    }
+
+    private void recordBatch(int size) {
+        outboundBatches.increment();
+        outboundBatchedMessages.add(size);
+        maxOutboundBatch.accumulateAndGet(size, Math::max);
+    }
+
+    private static ByteBuffer encodeLine(String line) {
+        final byte[] text = line.getBytes(StandardCharsets.UTF_8);
+        final byte[] framed = new byte[text.length + 1];
+        System.arraycopy(text, 0, framed, 0, text.length);
+        framed[text.length] = '\n';
+        return ByteBuffer.wrap(framed).asReadOnlyBuffer();
     }
 
-    private void removeClient(Socket client) {
-        final var conn = clients.remove(client);
+    private void removeClient(ClientConnection client) {
+        final var conn = clients.remove(client.sessionId);
         if (conn == null)
             return;
 
+        topics.unsubscribeAll(conn, conn.subscriptions);
+
         try {
             conn.close();
         } catch (IOException ex) {
@@ -361,7 +2086,7 @@ public final class TcpServer implements Closeable {
     }
 
     private void removeAllClients() {
-        clients.keySet().forEach(this::removeClient);
+        clients.forEach(this::removeClient);
     }
 
     private void safeCloseServerSocket() {
@@ -383,8 +2108,16 @@ public final class TcpServer implements Closeable {
             }
 
             safeCloseServerSocket();
+            if (cluster != null) {
+                cluster.close();
+            }
             removeAllClients();
             clientPool.shutdownNow();
+            writerPool.shutdownNow();
+            fanoutPool.shutdownNow();
+            if (groupCommitter != null) {
+                groupCommitter.close();
+            }
             LOGGER.info("🔌 Server stopped.");
         }
     }
@@ -417,33 +2150,271 @@ public final class TcpServer implements Closeable {
     public record ServerCommandContext(TcpServer server, Socket socket, String rawLine, TcpSession session) {
     }
 
-    private static final class ClientConnection implements Closeable, TcpSession {
+    /**
+     * Counters of the gathering writes that deliver queued messages.
+     *
+     * @param batches      number of gathering writes
+     * @param messages     total messages written through them
+     * @param maxBatchSize largest number of messages in a single write
+     */
+    public record BatchStats(long batches, long messages, long maxBatchSize) {
+        public double averageBatchSize() {
+            return batches == 0 ? 0 : (double) messages / batches;
+        }
+    }
+
+    // Part of a file sent straight from disk after a response line (downloads)
+    private record FileRegion(Path file, long offset, long length) {
+    }
+
+    private record RateLimit(double perSecond, long burst) {
+        private RateLimit {
+            if (!(perSecond > 0))
+                throw new IllegalArgumentException("perSecond must be > 0");
+            if (burst <= 0)
+                throw new IllegalArgumentException("burst must be > 0");
+        }
+    }
+
+    // Queued payload + the stream it belongs to (used for conflation)
+    private record Outbound(String stream, ByteBuffer payload) {
+    }
+
+    // Whatever writes a part file (see acquireUpload)
+    private interface UploadOwner {
+        String id();
+
+        // Stops writing; true if nothing writes the part any more
+        boolean abort();
+    }
+
+    // A parallel upload: the ranges received so far and the connections
+    // writing chunks right now. Owns its part file from the first chunk until
+    // it is stored or dropped and its last chunk is written.
+    private static final class ChunkedUpload implements UploadOwner {
+        private final String uploadId;
+        private final Path part;
+        private final ChunkTracker tracker;
+        private final Set<ClientConnection> writers;
+        private long lastActive;
+        private boolean closed;
+        private boolean released;
+        private boolean stored;
+
+        private ChunkedUpload(String uploadId, Path part, long size) {
+            this.uploadId = uploadId;
+            this.part = part;
+            this.tracker = new ChunkTracker(size);
+            this.writers = new HashSet<>();
+            this.lastActive = System.nanoTime();
+        }
+
+        private Path part() {
+            return part;
+        }
+
+        private ChunkTracker tracker() {
+            return tracker;
+        }
+
+        private boolean matches(String uploadId, long size) {
+            return Objects.equals(this.uploadId, uploadId) && tracker.size() == size;
+        }
+
+        // False once the upload is complete or dropped
+        private synchronized boolean join(ClientConnection conn) {
+            if (closed) {
+                return false;
+            }
+            writers.add(conn);
+            return true;
+        }
+
+        // True if the caller was the last writer of a finished upload and
+        // must release it
+        private synchronized boolean leave(ClientConnection conn) {
+            writers.remove(conn);
+            lastActive = System.nanoTime();
+            return releasable();
+        }
+
+        // Every byte arrived: no further chunks are accepted
+        private synchronized void finish() {
+            closed = true;
+        }
+
+        private synchronized void stored() {
+            stored = true;
+        }
+
+        private synchronized boolean isStored() {
+            return stored;
+        }
+
+        private synchronized long idleNanos(long now) {
+            return writers.isEmpty() ? now - lastActive : 0;
+        }
+
+        @Override
+        public String id() {
+            return "parallel upload " + uploadId;
+        }
+
+        // Refuses further chunks and closes the connections writing one
+        @Override
+        public synchronized boolean abort() {
+            closed = true;
+            for (final var writer : writers) {
+                writer.abort();
+            }
+            return releasable();
+        }
+
+        private boolean releasable() {
+            if (!closed || released || !writers.isEmpty()) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+    }
+
+    private static final class ClientConnection implements Closeable, TcpSession, UploadOwner {
+        private final long sessionId;
+        private final String label;
         private final Socket socket;
+        private final SocketChannel channel;
 
         private final InputStream rawIn;
         private final OutputStream rawOut;
         private final LineReader lineReader;
 
-        private final PrintWriter out;
+        // Binary payloads are read straight from here (LineReader never reads
+        // ahead, so no bytes are buffered elsewhere)
+        private final ReadableByteChannel inChannel;
+        private ByteBuffer transferBuffer;
+
+        // All socket writes (responses + queued broadcasts) go through this lock
+        private final ReentrantLock writeLock;
+
+        // Pending broadcast payloads (guarded by itself)
+        private final ArrayDeque<Outbound> outbound;
+        private final AtomicBoolean flushScheduled;
+
+        // Inbound rate limits (null = unlimited); only the handler thread uses them
+        private TokenBucket commandBucket;
+        private TokenBucket broadcastBucket;
+        private TokenBucket byteBucket;
+        private TokenBucket transferBucket;
+
+        // Node id when this connection is another cluster node's
+        // (authenticated) link
+        private volatile String clusterPeer;
+
+        // "<nodeId> <challenge>" between !cluster.hello and !cluster.auth
+        private volatile String clusterHello;
+
+        // Patterns this connection is subscribed to (for cleanup on disconnect)
+        private final Set<String> subscriptions;
 
         // Future: binary mode state (for file transfer)
         private volatile boolean binaryMode;
         private volatile long binaryRemaining;
 
         private volatile Path pendingBinaryPath;
-
-        private ClientConnection(Socket socket) throws IOException {
+        private volatile long pendingBinaryOffset;
+        private volatile long pendingChunkFileSize;
+        private volatile String pendingChunkUploadId;
+        private volatile long pendingDeltaFileSize;
+        private volatile FileChecksum pendingChecksum;
+        private volatile TransferCodec pendingCodec;
+
+        // Request id of the command whose binary payload is pending
+        private volatile String pendingTag;
+
+        // File region or bytes to stream after the current command's response
+        private volatile FileRegion pendingDownload;
+        private volatile ByteBuffer pendingPayload;
+
+        private ClientConnection(long sessionId, Socket socket) throws IOException {
+            this.sessionId = sessionId;
+            this.label = "#" + sessionId + " " + socket.getInetAddress() + ":" + socket.getPort();
             this.socket = socket;
+            this.channel = socket.getChannel();
             this.rawIn = socket.getInputStream();
             this.rawOut = socket.getOutputStream();
             this.lineReader = new LineReader(rawIn);
-            this.out = new PrintWriter(rawOut, true);
+            this.inChannel = channel != null ? channel : Channels.newChannel(rawIn);
+            this.writeLock = new ReentrantLock();
+            this.outbound = new ArrayDeque<>();
+            this.flushScheduled = new AtomicBoolean(false);
+            this.subscriptions = ConcurrentHashMap.newKeySet();
             this.binaryMode = false;
             this.binaryRemaining = 0;
         }
 
-        private String id() {
-            return socket.getInetAddress() + ":" + socket.getPort();
+        // Allocated on first binary transfer that needs it (handler thread only)
+        private ByteBuffer transferBuffer() {
+            if (transferBuffer == null) {
+                transferBuffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+            }
+            return transferBuffer;
+        }
+
+        // Log label, built once per connection
+        @Override
+        public String id() {
+            return label;
+        }
+
+        // Closing the socket ends the handler writing the part
+        @Override
+        public boolean abort() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+
+        private void sendLine(String line) throws IOException {
+            final var buf = encodeLine(line);
+            writeLock.lock();
+            try {
+                writeFully(buf);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        // Caller must hold writeLock
+        private void writeFully(ByteBuffer[] bufs) throws IOException {
+            if (channel == null) {
+                for (final var buf : bufs) {
+                    writeFully(buf);
+                }
+                return;
+            }
+
+            final var last = bufs[bufs.length - 1];
+            while (last.hasRemaining()) {
+                channel.write(bufs);
+            }
+        }
+
+        // Caller must hold writeLock
+        private void writeFully(ByteBuffer buf) throws IOException {
+            if (channel == null) {
+                final byte[] copy = new byte[buf.remaining()];
+                buf.get(copy);
+                rawOut.write(copy);
+                rawOut.flush();
+                return;
+            }
+
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
         }
 
         @Override
@@ -462,6 +2433,11 @@ public final class TcpServer implements Closeable {
             }
         }
 
+        @Override
+        public long sessionId() {
+            return sessionId;
+        }
+
         @Override
         public Socket socket() {
             return socket;
@@ -497,5 +2473,65 @@ public final class TcpServer implements Closeable {
         public Path getPendingBinaryTarget() {
             return pendingBinaryPath;
         }
+
+        @Override
+        public void setPendingBinaryOffset(long offset) {
+            pendingBinaryOffset = offset;
+        }
+
+        @Override
+        public long getPendingBinaryOffset() {
+            return pendingBinaryOffset;
+        }
+
+        @Override
+        public void setPendingChunkFileSize(long fileSize) {
+            pendingChunkFileSize = fileSize;
+        }
+
+        @Override
+        public long getPendingChunkFileSize() {
+            return pendingChunkFileSize;
+        }
+
+        @Override
+        public void setPendingChunkUploadId(String uploadId) {
+            pendingChunkUploadId = uploadId;
+        }
+
+        @Override
+        public String getPendingChunkUploadId() {
+            return pendingChunkUploadId;
+        }
+
+        @Override
+        public void setPendingDeltaFileSize(long fileSize) {
+            pendingDeltaFileSize = fileSize;
+        }
+
+        @Override
+        public long getPendingDeltaFileSize() {
+            return pendingDeltaFileSize;
+        }
+
+        @Override
+        public void setPendingChecksum(FileChecksum checksum) {
+            pendingChecksum = checksum;
+        }
+
+        @Override
+        public FileChecksum getPendingChecksum() {
+            return pendingChecksum;
+        }
+
+        @Override
+        public void setPendingCodec(TransferCodec codec) {
+            pendingCodec = codec;
+        }
+
+        @Override
+        public TransferCodec getPendingCodec() {
+            return pendingCodec;
+        }
     }
 }
@@ -5,7 +5,20 @@ import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.file.Path;
 
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+import com.tonyguerra.net.tcpmaster.core.components.TransferCodec;
+
 public interface TcpSession {
+    /**
+     * Stable numeric id assigned by the server when the connection is accepted
+     * (monotonically increasing, never reused while the server runs).
+     *
+     * @return the session id, or -1 for sessions not managed by a TcpServer
+     */
+    default long sessionId() {
+        return -1;
+    }
+
     Socket socket();
 
     InputStream in();
@@ -20,4 +33,70 @@ public interface TcpSession {
     void setPendingBinaryTarget(Path target);
 
     Path getPendingBinaryTarget();
+
+    /**
+     * Sets where the pending binary payload starts in the target file: 0 for a
+     * new upload, the number of bytes already received when resuming.
+     */
+    default void setPendingBinaryOffset(long offset) {
+    }
+
+    default long getPendingBinaryOffset() {
+        return 0;
+    }
+
+    /**
+     * Marks the pending binary payload as one chunk of a file of the given size
+     * (parallel uploads). 0 means the payload is the rest of the file.
+     */
+    default void setPendingChunkFileSize(long fileSize) {
+    }
+
+    default long getPendingChunkFileSize() {
+        return 0;
+    }
+
+    /**
+     * Sets the parallel upload the pending chunk belongs to (null for chunks
+     * sent without an id).
+     */
+    default void setPendingChunkUploadId(String uploadId) {
+    }
+
+    default String getPendingChunkUploadId() {
+        return null;
+    }
+
+    /**
+     * Marks the pending binary payload as a delta rebuilding a file of the
+     * given size (0 for none).
+     */
+    default void setPendingDeltaFileSize(long fileSize) {
+    }
+
+    default long getPendingDeltaFileSize() {
+        return 0;
+    }
+
+    /**
+     * Sets the checksum the whole file must match once the pending binary
+     * payload has been stored (null for none).
+     */
+    default void setPendingChecksum(FileChecksum checksum) {
+    }
+
+    default FileChecksum getPendingChecksum() {
+        return null;
+    }
+
+    /**
+     * Sets the codec the pending binary payload is framed and compressed with
+     * (null for raw bytes).
+     */
+    default void setPendingCodec(TransferCodec codec) {
+    }
+
+    default TransferCodec getPendingCodec() {
+        return null;
+    }
 }
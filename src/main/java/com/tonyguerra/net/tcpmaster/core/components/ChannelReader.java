@@ -0,0 +1,117 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered reader over a byte channel that mixes UTF-8 lines and raw binary
+ * payloads.
+ * <p>
+ * Unlike a {@code BufferedReader}, bytes read ahead while looking for a line
+ * terminator are never lost: {@link #readToFile} consumes the buffered bytes
+ * first and then reads the rest of the payload straight from the channel.
+ * The buffer is direct, so binary payloads go channel -> buffer -> file without
+ * heap copies.
+ * </p>
+ * <p>
+ * Not thread-safe: meant to be used by a single reader thread.
+ * </p>
+ */
+public final class ChannelReader {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * @param channel    the source channel (blocking)
+     * @param bufferSize read buffer size in bytes (must be > 0)
+     */
+    public ChannelReader(ReadableByteChannel channel, int bufferSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize must be > 0");
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).flip(); // empty, ready to read from
+    }
+
+    /**
+     * Reads a UTF-8 line terminated by '\n'
+     * '\r' characters are ignored
+     *
+     * @return the line without line-breaks, or null if the channel is closed
+     */
+    public String readLineUtf8() throws IOException {
+        final var line = new ByteArrayOutputStream(128);
+
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+            }
+
+            while (buffer.hasRemaining()) {
+                final byte b = buffer.get();
+                if (b == '\n') {
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies exactly {@code count} payload bytes into a file, starting at
+     * {@code position}.
+     *
+     * @param file     the target file
+     * @param position file offset of the first byte
+     * @param count    number of payload bytes
+     * @param progress optional callback (bytes written so far, count)
+     * @throws IOException if the channel closes before {@code count} bytes
+     */
+    public void readToFile(FileChannel file, long position, long count, ProgressCallback progress)
+            throws IOException {
+        long done = 0;
+        int lastPercent = -1;
+
+        while (done < count) {
+            if (!buffer.hasRemaining() && !fill()) {
+                throw new IOException("Stream closed while receiving file");
+            }
+
+            // Only hand the payload's own bytes to the file; what follows stays buffered
+            final int take = (int) Math.min(buffer.remaining(), count - done);
+            final int limit = buffer.limit();
+            buffer.limit(buffer.position() + take);
+            while (buffer.hasRemaining()) {
+                done += file.write(buffer, position + done);
+            }
+            buffer.limit(limit);
+
+            if (progress != null) {
+                final int percent = (int) ((done * 100) / count);
+                if (percent != lastPercent) {
+                    lastPercent = percent;
+                    progress.onProgress(done, count);
+                }
+            }
+        }
+
+        if (progress != null && lastPercent != 100) {
+            progress.onProgress(count, count);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        return read > 0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tracks which byte ranges of a file arrived as independent chunks.
+ * <p>
+ * Ranges are kept merged (start -> end), so re-sent or overlapping chunks are
+ * only counted once and the state stays small however many chunks arrive.
+ * Thread-safe: chunks of the same file are received by several connections.
+ * </p>
+ */
+public final class ChunkTracker {
+    private final long size;
+    private final TreeMap<Long, Long> ranges;
+    private long received;
+
+    /**
+     * @param size total file size in bytes (must be > 0)
+     */
+    public ChunkTracker(long size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0");
+        this.size = size;
+        this.ranges = new TreeMap<>();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Records a received range.
+     *
+     * @return true if this range completed the file (returned only once)
+     * @throws IllegalArgumentException if the range is outside the file
+     */
+    public synchronized boolean add(long offset, long length) {
+        if (offset < 0 || length <= 0 || offset + length > size)
+            throw new IllegalArgumentException("Chunk outside of file: " + offset + "+" + length + " > " + size);
+
+        final boolean wasComplete = received == size;
+
+        long start = offset;
+        long end = offset + length;
+        long covered = 0;
+
+        // Absorb every range that overlaps or touches [start, end)
+        final var before = ranges.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+        }
+
+        final var merged = ranges.subMap(start, true, end, true);
+        for (final Map.Entry<Long, Long> r : merged.entrySet()) {
+            covered += Math.max(0, Math.min(r.getValue(), offset + length) - Math.max(r.getKey(), offset));
+            end = Math.max(end, r.getValue());
+        }
+        merged.clear();
+        ranges.put(start, end);
+
+        received += length - covered;
+        return !wasComplete && received == size;
+    }
+
+    /**
+     * @return number of distinct bytes received so far
+     */
+    public synchronized long received() {
+        return received;
+    }
+}
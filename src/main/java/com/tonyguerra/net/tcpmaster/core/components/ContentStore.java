@@ -0,0 +1,117 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed object store for uploads.
+ * <p>
+ * Each distinct content is kept once, as {@code <root>/<aa>/<sha256>}, and
+ * every upload name is a hard link to its object. An upload whose SHA-256 is
+ * already known is satisfied by adding a link, without receiving any bytes.
+ * Objects are never modified in place: uploads always write a separate part
+ * file and then replace the name, so other names linked to the same object are
+ * unaffected. Falls back to copying where hard links are not supported.
+ * </p>
+ */
+public final class ContentStore {
+    /**
+     * Name of the object directory inside the upload directory.
+     */
+    public static final String OBJECTS_DIR = ".objects";
+
+    private final Path root;
+    private final AtomicLong tmpCounter;
+    private final DirectoryCache shards;
+
+    /**
+     * @param root directory holding the objects (created on demand)
+     */
+    public ContentStore(Path root) {
+        this.root = root;
+        this.tmpCounter = new AtomicLong();
+        this.shards = new DirectoryCache();
+    }
+
+    /**
+     * @param sha256 lowercase hex digest
+     * @return the path of the object with that content
+     */
+    public Path objectOf(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * Links {@code target} to an existing object.
+     *
+     * @return false if no object with this digest and size exists
+     */
+    public boolean linkExisting(String sha256, long size, Path target) throws IOException {
+        final var object = objectOf(sha256);
+        if (!Files.isRegularFile(object) || Files.size(object) != size) {
+            return false;
+        }
+
+        link(object, target);
+        return true;
+    }
+
+    /**
+     * Stores a verified file as the object for its digest (unless the content
+     * is already known, in which case the file is dropped) and links
+     * {@code target} to the object.
+     *
+     * @param file   the received file, moved or deleted by this call
+     * @param sha256 the verified digest of {@code file}
+     */
+    public void commit(Path file, String sha256, Path target) throws IOException {
+        final var object = objectOf(sha256);
+        shards.ensure(object.getParent());
+
+        try {
+            moveObject(file, object);
+        } catch (NoSuchFileException ex) {
+            // Shard directory removed since it was cached
+            shards.forget(object.getParent());
+            shards.ensure(object.getParent());
+            moveObject(file, object);
+        }
+
+        link(object, target);
+    }
+
+    private static void moveObject(Path file, Path object) throws IOException {
+        try {
+            Files.move(file, object);
+        } catch (FileAlreadyExistsException ex) {
+            Files.delete(file);
+        }
+    }
+
+    // Link under a temporary name, then rename over the target (atomic replace)
+    private void link(Path object, Path target) throws IOException {
+        if (Files.exists(target) && Files.isSameFile(object, target)) {
+            return;
+        }
+
+        Files.createDirectories(target.getParent());
+        final var tmp = target.resolveSibling(target.getFileName() + ".link-" + tmpCounter.incrementAndGet());
+        try {
+            Files.createLink(tmp, object);
+        } catch (UnsupportedOperationException | FileSystemException ex) {
+            Files.copy(object, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        try {
+            UploadFiles.commit(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
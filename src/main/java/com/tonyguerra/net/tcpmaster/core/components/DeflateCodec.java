@@ -0,0 +1,90 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Built-in {@code deflate} codec ({@link java.util.zip}, raw deflate without
+ * zlib header, fastest level: transfers favor throughput over ratio).
+ */
+public final class DeflateCodec implements TransferCodec {
+    public static final String NAME = "deflate";
+
+    private final int level;
+
+    public DeflateCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level compression level (0-9)
+     */
+    public DeflateCodec(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("level must be between 0 and 9");
+        this.level = level;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Encoder newEncoder() {
+        final var deflater = new Deflater(level, true);
+
+        return new Encoder() {
+            @Override
+            public void encode(ByteBuffer src, ByteBuffer dst) throws IOException {
+                deflater.reset();
+                deflater.setInput(src);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (!dst.hasRemaining()) {
+                        throw new IOException("Encoded frame exceeds the buffer");
+                    }
+                    deflater.deflate(dst);
+                }
+            }
+
+            @Override
+            public void close() {
+                deflater.end();
+            }
+        };
+    }
+
+    @Override
+    public Decoder newDecoder() {
+        final var inflater = new Inflater(true);
+
+        return new Decoder() {
+            @Override
+            public void decode(ByteBuffer src, ByteBuffer dst) throws IOException {
+                inflater.reset();
+                inflater.setInput(src);
+                try {
+                    while (!inflater.finished()) {
+                        if (inflater.inflate(dst) == 0 && (inflater.needsInput() || !dst.hasRemaining())) {
+                            throw new IOException("Corrupt deflate frame");
+                        }
+                    }
+                } catch (DataFormatException ex) {
+                    throw new IOException("Corrupt deflate frame", ex);
+                }
+                if (dst.hasRemaining()) {
+                    throw new IOException("Deflate frame shorter than announced");
+                }
+            }
+
+            @Override
+            public void close() {
+                inflater.end();
+            }
+        };
+    }
+}
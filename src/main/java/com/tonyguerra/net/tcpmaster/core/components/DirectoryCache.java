@@ -0,0 +1,65 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers directories already known to exist, so many uploads into the same
+ * tree create it once instead of checking every path component per file.
+ * <p>
+ * A directory removed behind the cache's back is not noticed by
+ * {@link #ensure(Path)}; callers that fail to create a file in a cached
+ * directory call {@link #forget(Path)} and retry. Thread-safe.
+ * </p>
+ */
+public final class DirectoryCache {
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final Set<Path> known;
+    private final int maxEntries;
+
+    public DirectoryCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries entries kept before the cache starts over
+     */
+    public DirectoryCache(int maxEntries) {
+        this.known = ConcurrentHashMap.newKeySet();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Creates {@code dir} and its parents unless already known to exist.
+     */
+    public void ensure(Path dir) throws IOException {
+        if (known.contains(dir)) {
+            return;
+        }
+
+        Files.createDirectories(dir);
+        if (known.size() >= maxEntries) {
+            known.clear();
+        }
+        known.add(dir);
+    }
+
+    /**
+     * Drops {@code dir} (and cached directories below it) so the next
+     * {@link #ensure(Path)} checks the filesystem again.
+     */
+    public void forget(Path dir) {
+        known.removeIf(path -> path.startsWith(dir));
+    }
+
+    /**
+     * @return the number of directories currently cached
+     */
+    public int size() {
+        return known.size();
+    }
+}
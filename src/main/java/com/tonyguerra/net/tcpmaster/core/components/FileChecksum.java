@@ -0,0 +1,176 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.zip.CRC32C;
+
+/**
+ * Incremental checksum of a file's content, fed with the same buffers that are
+ * written to disk so verifying an upload never reads the file back.
+ * <p>
+ * Upload commands carry the expected value as an option token such as
+ * {@code crc32c=1a2b3c4d} or {@code sha256=<64 hex digits>}. CRC32C catches
+ * transmission and storage corruption at memory speed; SHA-256 also protects
+ * against deliberate tampering.
+ * </p>
+ * <p>
+ * Not thread-safe: one instance per transfer.
+ * </p>
+ */
+public final class FileChecksum {
+    private static final HexFormat HEX = HexFormat.of();
+
+    public enum Algorithm {
+        CRC32C("crc32c", 8),
+        SHA256("sha256", 64);
+
+        private final String key;
+        private final int hexLength;
+
+        Algorithm(String key, int hexLength) {
+            this.key = key;
+            this.hexLength = hexLength;
+        }
+
+        /**
+         * @return the option name used on the wire ("crc32c", "sha256")
+         */
+        public String key() {
+            return key;
+        }
+    }
+
+    private final Algorithm algorithm;
+    private final String expected;
+    private final CRC32C crc;
+    private final MessageDigest sha;
+
+    private FileChecksum(Algorithm algorithm, String expected) {
+        this.algorithm = algorithm;
+        this.expected = expected;
+        this.crc = algorithm == Algorithm.CRC32C ? new CRC32C() : null;
+        this.sha = algorithm == Algorithm.SHA256 ? sha256() : null;
+    }
+
+    /**
+     * Parses an option token such as {@code crc32c=1a2b3c4d}.
+     *
+     * @return a checksum expecting the given value
+     * @throws IllegalArgumentException if the algorithm or value is invalid
+     */
+    public static FileChecksum parse(String option) {
+        final int eq = option.indexOf('=');
+        if (eq <= 0) {
+            throw new IllegalArgumentException("Expected <algorithm>=<hex>: " + option);
+        }
+
+        final String key = option.substring(0, eq).toLowerCase(Locale.ROOT);
+        final String value = option.substring(eq + 1).toLowerCase(Locale.ROOT);
+
+        for (final var algorithm : Algorithm.values()) {
+            if (algorithm.key.equals(key)) {
+                if (value.length() != algorithm.hexLength || !value.chars().allMatch(HexFormat::isHexDigit)) {
+                    throw new IllegalArgumentException("Invalid " + key + " value: " + value);
+                }
+                return new FileChecksum(algorithm, value);
+            }
+        }
+        throw new IllegalArgumentException("Unknown checksum algorithm: " + key);
+    }
+
+    /**
+     * @return a checksum without an expected value (for computing one)
+     */
+    public static FileChecksum of(Algorithm algorithm) {
+        return new FileChecksum(algorithm, null);
+    }
+
+    /**
+     * Computes the checksum of a whole file.
+     *
+     * @return the option token ({@code <algorithm>=<hex>})
+     */
+    public static String compute(Algorithm algorithm, Path file) throws IOException {
+        final var checksum = of(algorithm);
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            checksum.update(channel, 0, channel.size(), ByteBuffer.allocateDirect(256 * 1024));
+        }
+        return algorithm.key + "=" + checksum.hex();
+    }
+
+    public Algorithm algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the expected value as lowercase hex, or null
+     */
+    public String expected() {
+        return expected;
+    }
+
+    /**
+     * Consumes the buffer's remaining bytes (position ends at the limit).
+     */
+    public void update(ByteBuffer buf) {
+        if (crc != null) {
+            crc.update(buf);
+        } else {
+            sha.update(buf);
+        }
+    }
+
+    /**
+     * Feeds {@code count} bytes of a file starting at {@code position}, e.g.
+     * the part already on disk when an upload resumes.
+     *
+     * @param scratch buffer used for reading (its content is overwritten)
+     */
+    public void update(FileChannel file, long position, long count, ByteBuffer scratch) throws IOException {
+        long done = 0;
+        while (done < count) {
+            scratch.clear().limit((int) Math.min(scratch.capacity(), count - done));
+            final int read = file.read(scratch, position + done);
+            if (read <= 0) {
+                throw new IOException("File shorter than " + (position + count) + " bytes");
+            }
+            update(scratch.flip());
+            done += read;
+        }
+    }
+
+    /**
+     * @return the checksum of the bytes fed so far, as lowercase hex
+     */
+    public String hex() {
+        if (crc != null) {
+            return HEX.toHexDigits((int) crc.getValue());
+        }
+        return HEX.formatHex(sha.digest());
+    }
+
+    /**
+     * Finishes the computation and compares with the expected value.
+     */
+    public boolean matches() {
+        if (expected == null) {
+            throw new IllegalStateException("No expected value");
+        }
+        return expected.equals(hex());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
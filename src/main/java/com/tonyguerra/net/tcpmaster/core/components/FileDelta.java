@@ -0,0 +1,170 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Encodes a file as a delta against a {@link FileSignature} of another copy:
+ * a sequence of operations that rebuilds the file from the other copy's bytes
+ * plus the bytes it does not contain.
+ * <p>
+ * Every offset of the file is tested for a block of the other copy with a
+ * {@link RollingChecksum}, so matches are found even after insertions or
+ * deletions shift the content. Operations, big-endian:
+ * </p>
+ * <ul>
+ * <li>{@link #OP_COPY} {@code long offset, int length}: bytes of the other
+ * copy (consecutive blocks are merged into one operation)</li>
+ * <li>{@link #OP_LITERAL} {@code int length, byte[length]}: new bytes</li>
+ * </ul>
+ */
+public final class FileDelta {
+    public static final byte OP_COPY = 1;
+    public static final byte OP_LITERAL = 2;
+
+    public static final int COPY_LENGTH = 1 + 8 + 4;
+    public static final int LITERAL_HEADER_LENGTH = 1 + 4;
+
+    // Bytes of the file held at once (at least a few blocks)
+    private static final int WINDOW = 1024 * 1024;
+
+    /**
+     * @param copied       bytes taken from the other copy
+     * @param literal      bytes sent as they are
+     * @param encodedBytes size of the encoded delta
+     */
+    public record Stats(long copied, long literal, long encodedBytes) {
+        public long fileSize() {
+            return copied + literal;
+        }
+    }
+
+    private FileDelta() {
+    }
+
+    /**
+     * Reads {@code source} from its current position to the end and writes
+     * the delta to {@code out}.
+     */
+    public static Stats encode(FileChannel source, FileSignature base, OutputStream out) throws IOException {
+        final int blockSize = base.blockSize();
+        final byte[] buf = new byte[Math.max(WINDOW, 4 * blockSize)];
+        final var ops = new OpWriter(new DataOutputStream(out));
+
+        int end = 0;
+        int pos = 0;
+        int literalStart = 0;
+        boolean eof = false;
+        RollingChecksum sum = null;
+        int hint = 0;
+
+        while (true) {
+            if (end - pos < blockSize && !eof) {
+                // Keep the unmatched tail, emit what is before it, read more
+                ops.literal(buf, literalStart, pos - literalStart);
+                System.arraycopy(buf, pos, buf, 0, end - pos);
+                end -= pos;
+                pos = 0;
+                literalStart = 0;
+                sum = null;
+
+                while (end < buf.length) {
+                    final int read = source.read(ByteBuffer.wrap(buf, end, buf.length - end));
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                    end += read;
+                }
+                continue;
+            }
+
+            final int length = Math.min(blockSize, end - pos);
+            if (length == 0) {
+                break;
+            }
+            if (sum == null) {
+                sum = RollingChecksum.of(buf, pos, length);
+            }
+
+            final int block = base.find(sum.value(), buf, pos, length, hint);
+            if (block >= 0) {
+                ops.literal(buf, literalStart, pos - literalStart);
+                ops.copy((long) block * blockSize, length);
+                hint = block + 1;
+                pos += length;
+                literalStart = pos;
+                sum = null;
+            } else if (length < blockSize) {
+                // Tail shorter than a block that is not the other copy's last block
+                break;
+            } else {
+                if (pos + blockSize < end) {
+                    sum.roll(buf[pos], buf[pos + blockSize]);
+                } else {
+                    sum = null;
+                }
+                pos++;
+            }
+        }
+
+        ops.literal(buf, literalStart, end - literalStart);
+        return ops.finish();
+    }
+
+    private static final class OpWriter {
+        private final DataOutputStream out;
+        private long copyOffset;
+        private int copyLength;
+        private long copied;
+        private long literal;
+        private long encodedBytes;
+
+        private OpWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void copy(long offset, int length) throws IOException {
+            if (copyLength > 0 && copyOffset + copyLength == offset && (long) copyLength + length <= Integer.MAX_VALUE) {
+                copyLength += length;
+                return;
+            }
+            flushCopy();
+            copyOffset = offset;
+            copyLength = length;
+        }
+
+        private void literal(byte[] data, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            flushCopy();
+            out.writeByte(OP_LITERAL);
+            out.writeInt(length);
+            out.write(data, offset, length);
+            literal += length;
+            encodedBytes += LITERAL_HEADER_LENGTH + length;
+        }
+
+        private void flushCopy() throws IOException {
+            if (copyLength == 0) {
+                return;
+            }
+            out.writeByte(OP_COPY);
+            out.writeLong(copyOffset);
+            out.writeInt(copyLength);
+            copied += copyLength;
+            encodedBytes += COPY_LENGTH;
+            copyLength = 0;
+        }
+
+        private Stats finish() throws IOException {
+            flushCopy();
+            out.flush();
+            return new Stats(copied, literal, encodedBytes);
+        }
+    }
+}
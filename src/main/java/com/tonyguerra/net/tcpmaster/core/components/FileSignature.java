@@ -0,0 +1,223 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Block signatures of a file, as used by rsync: for every block of
+ * {@code blockSize} bytes (the last one may be shorter) a weak
+ * {@link RollingChecksum} and a strong hash (the first 16 bytes of its
+ * SHA-256).
+ * <p>
+ * The server computes the signature of its copy of a file and sends it in
+ * encoded form: {@code long fileSize, int blockSize}, then per block
+ * {@code int weak, byte[16] strong}. The client parses it and looks up the
+ * blocks of its own copy with {@link #find}, see {@link FileDelta}.
+ * </p>
+ * <p>
+ * Not thread-safe: {@link #find} reuses a digest.
+ * </p>
+ */
+public final class FileSignature {
+    public static final int MIN_BLOCK_SIZE = 2 * 1024;
+    public static final int MAX_BLOCK_SIZE = 128 * 1024;
+
+    private static final int STRONG_LENGTH = 16;
+    private static final int HEADER_LENGTH = 12;
+    private static final int ENTRY_LENGTH = 4 + STRONG_LENGTH;
+
+    // Bitmap of the low bits of every weak checksum: most offsets
+    // of a changed region are rejected without touching the index
+    private static final int FILTER_BITS = 20;
+    private static final int FILTER_MASK = (1 << FILTER_BITS) - 1;
+
+    private final long fileSize;
+    private final int blockSize;
+    private final int[] weak;
+    private final byte[] strong;
+    private final long[] index;
+    private final long[] filter;
+    private final MessageDigest sha;
+
+    private FileSignature(long fileSize, int blockSize, int[] weak, byte[] strong) {
+        this.fileSize = fileSize;
+        this.blockSize = blockSize;
+        this.weak = weak;
+        this.strong = strong;
+        this.sha = sha256();
+
+        // weak (high half) -> block (low half), sorted for binary search
+        this.index = new long[weak.length];
+        this.filter = new long[(1 << FILTER_BITS) / 64];
+        for (int block = 0; block < weak.length; block++) {
+            index[block] = (long) weak[block] << 32 | block;
+            final int bit = weak[block] & FILTER_MASK;
+            filter[bit >>> 6] |= 1L << bit;
+        }
+        Arrays.sort(index);
+    }
+
+    /**
+     * Picks a block size close to the square root of the file size (as rsync
+     * does), a power of two between {@link #MIN_BLOCK_SIZE} and
+     * {@link #MAX_BLOCK_SIZE}.
+     */
+    public static int blockSizeFor(long fileSize) {
+        final long root = Long.highestOneBit(Math.max(1, (long) Math.sqrt(fileSize)));
+        return Math.clamp(root, MIN_BLOCK_SIZE, MAX_BLOCK_SIZE);
+    }
+
+    /**
+     * Reads a whole file and encodes its signature.
+     *
+     * @return the encoded signature, ready to be sent
+     */
+    public static ByteBuffer compute(FileChannel file, int blockSize) throws IOException {
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+
+        final long size = file.size();
+        final long blocks = (size + blockSize - 1) / blockSize;
+        if (HEADER_LENGTH + blocks * ENTRY_LENGTH > Integer.MAX_VALUE) {
+            throw new IOException("Too many blocks for a signature: " + blocks);
+        }
+
+        final var out = ByteBuffer.allocate((int) (HEADER_LENGTH + blocks * ENTRY_LENGTH));
+        out.putLong(size).putInt(blockSize);
+
+        final var sha = sha256();
+        final byte[] data = new byte[blockSize * Math.max(1, (1024 * 1024) / blockSize)];
+        final var buf = ByteBuffer.wrap(data);
+        long position = 0;
+        while (position < size) {
+            buf.clear().limit((int) Math.min(data.length, size - position));
+            while (buf.hasRemaining()) {
+                if (file.read(buf, position + buf.position()) <= 0) {
+                    throw new IOException("File shrank while computing its signature");
+                }
+            }
+
+            for (int offset = 0; offset < buf.limit(); offset += blockSize) {
+                final int length = Math.min(blockSize, buf.limit() - offset);
+                out.putInt(RollingChecksum.of(data, offset, length).value());
+                out.put(strong(sha, data, offset, length), 0, STRONG_LENGTH);
+            }
+            position += buf.limit();
+        }
+
+        return out.flip();
+    }
+
+    /**
+     * Decodes a signature produced by {@link #compute}.
+     *
+     * @throws IllegalArgumentException if the encoding is malformed
+     */
+    public static FileSignature parse(ByteBuffer encoded) {
+        if (encoded.remaining() < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Signature too short");
+        }
+
+        final long fileSize = encoded.getLong();
+        final int blockSize = encoded.getInt();
+        if (fileSize < 0 || blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid signature header");
+        }
+
+        final long blocks = (fileSize + blockSize - 1) / blockSize;
+        if (encoded.remaining() != blocks * ENTRY_LENGTH) {
+            throw new IllegalArgumentException("Signature length does not match " + blocks + " blocks");
+        }
+
+        final int[] weak = new int[(int) blocks];
+        final byte[] strong = new byte[(int) blocks * STRONG_LENGTH];
+        for (int block = 0; block < blocks; block++) {
+            weak[block] = encoded.getInt();
+            encoded.get(strong, block * STRONG_LENGTH, STRONG_LENGTH);
+        }
+        return new FileSignature(fileSize, blockSize, weak, strong);
+    }
+
+    public long fileSize() {
+        return fileSize;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public int blockCount() {
+        return weak.length;
+    }
+
+    /**
+     * @return the length of a block (the last one may be short)
+     */
+    public int blockLength(int block) {
+        return (int) Math.min(blockSize, fileSize - (long) block * blockSize);
+    }
+
+    /**
+     * Looks for a block equal to {@code data[offset, offset + length)}.
+     *
+     * @param weak the {@link RollingChecksum} of that data
+     * @param hint block to try first (e.g. the one after the previous match,
+     *             so runs of repeated content map to consecutive blocks)
+     * @return the block index, or -1
+     */
+    public int find(int weak, byte[] data, int offset, int length, int hint) {
+        final int bit = weak & FILTER_MASK;
+        if ((filter[bit >>> 6] & 1L << bit) == 0) {
+            return -1;
+        }
+
+        byte[] digest = null;
+        if (hint >= 0 && hint < this.weak.length && this.weak[hint] == weak && blockLength(hint) == length) {
+            digest = strong(sha, data, offset, length);
+            if (strongEquals(hint, digest)) {
+                return hint;
+            }
+        }
+
+        // First entry with this weak checksum
+        int i = Arrays.binarySearch(index, (long) weak << 32);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (; i < index.length && (int) (index[i] >> 32) == weak; i++) {
+            final int block = (int) index[i];
+            if (blockLength(block) != length) {
+                continue;
+            }
+            if (digest == null) {
+                digest = strong(sha, data, offset, length);
+            }
+            if (strongEquals(block, digest)) {
+                return block;
+            }
+        }
+        return -1;
+    }
+
+    private boolean strongEquals(int block, byte[] digest) {
+        return Arrays.equals(strong, block * STRONG_LENGTH, (block + 1) * STRONG_LENGTH, digest, 0, STRONG_LENGTH);
+    }
+
+    private static byte[] strong(MessageDigest sha, byte[] data, int offset, int length) {
+        sha.update(data, offset, length);
+        return sha.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
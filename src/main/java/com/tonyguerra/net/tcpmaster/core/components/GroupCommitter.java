@@ -0,0 +1,210 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Group commit for file and directory flushes.
+ * <p>
+ * Callers block in {@link #force(FileChannel)} or {@link #forceDirectory(Path)}
+ * while a single committer thread gathers the requests that arrive within a
+ * short window after the first one. The batch's file flushes are then issued
+ * concurrently, so the file system can fold them into one journal commit and
+ * one device cache flush, and a directory is flushed once per batch no matter
+ * how many files were renamed into it. Every caller returns only after its own
+ * flush completed.
+ * </p>
+ */
+public final class GroupCommitter implements Closeable {
+    private final long windowNanos;
+    private final LinkedBlockingQueue<Request> queue;
+    private final ExecutorService flushers;
+    private final Thread committer;
+    private final LongAdder batches;
+    private final LongAdder requests;
+    private volatile boolean running;
+
+    /**
+     * @param windowMicros how long to gather requests after the first one of a
+     *                     batch (0 commits whatever is queued immediately)
+     */
+    public GroupCommitter(long windowMicros) {
+        if (windowMicros < 0)
+            throw new IllegalArgumentException("windowMicros must be >= 0");
+
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.queue = new LinkedBlockingQueue<>();
+        this.flushers = Executors.newVirtualThreadPerTaskExecutor();
+        this.batches = new LongAdder();
+        this.requests = new LongAdder();
+        this.running = true;
+        this.committer = new Thread(this::run, "TcpServer-GroupCommitter");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Blocks until the file's data has been forced to disk.
+     */
+    public void force(FileChannel file) throws IOException {
+        await(new Request(file, null));
+    }
+
+    /**
+     * Blocks until the directory (its entries, e.g. after a rename) has been
+     * forced to disk.
+     */
+    public void forceDirectory(Path dir) throws IOException {
+        await(new Request(null, dir));
+    }
+
+    /**
+     * @return the number of batches committed
+     */
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of flush requests served
+     */
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        committer.interrupt();
+        flushers.shutdown();
+        failQueued();
+    }
+
+    private void await(Request request) throws IOException {
+        if (!running) {
+            throw new IOException("Group committer closed");
+        }
+        queue.add(request);
+        if (!running && queue.remove(request)) {
+            throw new IOException("Group committer closed");
+        }
+
+        try {
+            request.done.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for group commit");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private void run() {
+        final List<Request> batch = new ArrayList<>();
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            final long deadline = System.nanoTime() + windowNanos;
+            long left;
+            while ((left = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(left);
+            }
+            queue.drainTo(batch);
+
+            if (!running) {
+                // Closed during the window: the flushers no longer take work
+                fail(batch);
+                failQueued();
+                return;
+            }
+
+            // Counted before the waiters are released, so they see their batch
+            batches.increment();
+            requests.add(batch.size());
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        final Map<Path, List<Request>> dirs = new HashMap<>();
+        final List<CompletableFuture<Void>> flushes = new ArrayList<>();
+
+        try {
+            for (final var request : batch) {
+                if (request.file != null) {
+                    flushes.add(CompletableFuture.runAsync(() -> flush(List.of(request)), flushers));
+                } else {
+                    dirs.computeIfAbsent(request.dir, k -> new ArrayList<>()).add(request);
+                }
+            }
+            // One flush per directory, shared by every request for it
+            for (final var waiters : dirs.values()) {
+                flushes.add(CompletableFuture.runAsync(() -> flush(waiters), flushers));
+            }
+        } catch (RejectedExecutionException ex) {
+            // close() shut the flushers down mid-batch; flushes already
+            // submitted still complete their own waiters first
+            fail(batch);
+            failQueued();
+        }
+
+        CompletableFuture.allOf(flushes.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private static void fail(List<Request> requests) {
+        final var closed = new IOException("Group committer closed");
+        requests.forEach(r -> r.done.completeExceptionally(closed));
+    }
+
+    private void failQueued() {
+        final List<Request> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        fail(pending);
+    }
+
+    // Requests are either one file or several for the same directory
+    private static void flush(List<Request> requests) {
+        final var first = requests.get(0);
+        try {
+            if (first.file != null) {
+                first.file.force(false);
+            } else {
+                UploadFiles.syncDirectory(first.dir);
+            }
+            requests.forEach(r -> r.done.complete(null));
+        } catch (IOException | RuntimeException ex) {
+            requests.forEach(r -> r.done.completeExceptionally(ex));
+        }
+    }
+
+    private record Request(FileChannel file, Path dir, CompletableFuture<Void> done) {
+        private Request(FileChannel file, Path dir) {
+            this(file, dir, new CompletableFuture<>());
+        }
+    }
+}
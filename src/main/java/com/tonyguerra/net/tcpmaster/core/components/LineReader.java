@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 
 public final class LineReader {
     private final InputStream in;
+    private long lastLineBytes;
 
     public LineReader(InputStream in) {
         this.in = in;
@@ -20,12 +21,17 @@ public final class LineReader {
      */
     public String readLineUtf8() throws IOException {
         final var buffer = new ByteArrayOutputStream(128);
+        long consumed = 0;
 
         while (true) {
             final int b = in.read();
+            if (b != -1) {
+                consumed++;
+            }
 
             if (b == -1) {
                 // Stream closed
+                lastLineBytes = consumed;
                 return buffer.size() == 0
                         ? null
                         : buffer.toString(StandardCharsets.UTF_8);
@@ -42,6 +48,15 @@ public final class LineReader {
             buffer.write(b);
         }
 
+        lastLineBytes = consumed;
         return buffer.toString(StandardCharsets.UTF_8);
     }
+
+    /**
+     * @return raw bytes consumed by the last {@link #readLineUtf8()} call,
+     *         including line terminators
+     */
+    public long lastLineBytes() {
+        return lastLineBytes;
+    }
 }
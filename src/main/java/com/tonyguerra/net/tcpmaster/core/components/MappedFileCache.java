@@ -0,0 +1,158 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of read-only memory mappings of frequently downloaded files.
+ * <p>
+ * A file is mapped on its second request (the first is only remembered, so
+ * one-off downloads do not evict hot files). Entries are evicted least
+ * recently used first, weighted by file size. Every lookup compares the
+ * file's identity, size and modification time with the mapped version, so a
+ * replaced file is never served stale; the server also invalidates paths it
+ * stores. Uploads replace files by renaming, which leaves existing mappings
+ * intact; truncating a cached file in place from outside the server is not
+ * supported.
+ * </p>
+ * <p>
+ * Evicted mappings are released by the garbage collector. Thread-safe.
+ * </p>
+ */
+public final class MappedFileCache {
+    // Paths requested once, waiting for a second request
+    private static final int DOORKEEPER_ENTRIES = 1024;
+
+    private final long maxBytes;
+    private final long maxFileBytes;
+    private final LinkedHashMap<Path, Entry> entries;
+    private final LinkedHashMap<Path, Boolean> seen;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    private record Entry(MappedByteBuffer buffer, Object fileKey, long size, FileTime modified) {
+        private boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && Objects.equals(fileKey, attrs.fileKey())
+                    && modified.equals(attrs.lastModifiedTime());
+        }
+    }
+
+    /**
+     * @param maxBytes     total size of the mapped files (must be > 0)
+     * @param maxFileBytes largest file to map (at most 2 GiB - 1)
+     */
+    public MappedFileCache(long maxBytes, long maxFileBytes) {
+        if (maxBytes <= 0 || maxFileBytes <= 0)
+            throw new IllegalArgumentException("sizes must be > 0");
+        this.maxBytes = maxBytes;
+        this.maxFileBytes = Math.min(Math.min(maxFileBytes, maxBytes), Integer.MAX_VALUE);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.seen = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Boolean> eldest) {
+                return size() > DOORKEEPER_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Looks up a file, mapping it if it is requested often enough.
+     *
+     * @return the whole file as a read-only buffer of its own (position 0), or
+     *         null if the caller should read the file itself
+     */
+    public ByteBuffer get(Path file) throws IOException {
+        final var attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attrs.isRegularFile() || attrs.size() == 0 || attrs.size() > maxFileBytes) {
+            return null;
+        }
+
+        synchronized (this) {
+            final var entry = entries.get(file);
+            if (entry != null && entry.matches(attrs)) {
+                hits++;
+                return entry.buffer().duplicate();
+            }
+            misses++;
+            if (entry != null) {
+                // Was hot before it changed: map the new version right away
+                remove(file);
+            } else if (seen.remove(file) == null) {
+                seen.put(file, Boolean.TRUE);
+                return null;
+            }
+        }
+
+        final MappedByteBuffer buffer;
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Replaced since the lookup: let the next request map the new file
+            if (channel.size() != attrs.size()) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, attrs.size());
+        }
+
+        synchronized (this) {
+            if (!entries.containsKey(file)) {
+                entries.put(file, new Entry(buffer, attrs.fileKey(), attrs.size(), attrs.lastModifiedTime()));
+                bytes += attrs.size();
+                evict();
+            }
+        }
+        return buffer.duplicate();
+    }
+
+    /**
+     * Drops a file, e.g. after it was overwritten.
+     */
+    public synchronized void invalidate(Path file) {
+        remove(file);
+        seen.remove(file);
+    }
+
+    /**
+     * @return the total size of the mapped files
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    private void remove(Path file) {
+        final var entry = entries.remove(file);
+        if (entry != null) {
+            bytes -= entry.size();
+        }
+    }
+
+    private void evict() {
+        final Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().size();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded history of already-encoded messages kept in a preallocated off-heap
+ * ring.
+ * <p>
+ * Message bytes are copied into a single direct {@link ByteBuffer}; the ring
+ * bookkeeping uses two primitive arrays, so retaining a message allocates
+ * nothing on the heap. A record never wraps around the end of the ring: when it
+ * does not fit in the remaining tail, writing restarts at offset 0 and the
+ * oldest records are evicted as they get overwritten.
+ * </p>
+ * <p>
+ * Thread-safe: all operations are synchronized (appends and snapshots are
+ * short memory copies).
+ * </p>
+ */
+public final class MessageHistory {
+    private final ByteBuffer ring;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    private int head; // slot of the oldest record
+    private int count;
+    private int writePos; // next free byte in ring
+
+    /**
+     * @param maxMessages   maximum number of retained messages (must be > 0)
+     * @param capacityBytes size of the off-heap ring in bytes (must be > 0)
+     */
+    public MessageHistory(int maxMessages, int capacityBytes) {
+        if (maxMessages <= 0)
+            throw new IllegalArgumentException("maxMessages must be > 0");
+        if (capacityBytes <= 0)
+            throw new IllegalArgumentException("capacityBytes must be > 0");
+
+        this.ring = ByteBuffer.allocateDirect(capacityBytes);
+        this.offsets = new int[maxMessages];
+        this.lengths = new int[maxMessages];
+    }
+
+    /**
+     * Retains a copy of the remaining bytes of {@code message}. The buffer's
+     * position is not modified. Messages larger than the ring are ignored.
+     *
+     * @param message the encoded message
+     * @return true if the message was retained
+     */
+    public synchronized boolean append(ByteBuffer message) {
+        final int len = message.remaining();
+        final int capacity = ring.capacity();
+        if (len == 0 || len > capacity) {
+            return false;
+        }
+
+        if (writePos + len > capacity) {
+            // Records left in the abandoned tail are the oldest ones
+            while (count > 0 && offsets[head] >= writePos) {
+                evictOldest();
+            }
+            writePos = 0;
+        }
+
+        while (count > 0 && (count == offsets.length || overlaps(head, writePos, len))) {
+            evictOldest();
+        }
+
+        ring.put(writePos, message, message.position(), len);
+
+        final int slot = (head + count) % offsets.length;
+        offsets[slot] = writePos;
+        lengths[slot] = len;
+        count++;
+        writePos += len;
+
+        return true;
+    }
+
+    /**
+     * Copies the newest {@code n} messages (oldest first) into one buffer, ready
+     * to be written to a socket in a single call.
+     *
+     * @param n how many of the newest messages to include
+     * @return the snapshot (possibly with 0 messages)
+     */
+    public synchronized Snapshot snapshot(int n) {
+        final int take = Math.max(0, Math.min(n, count));
+        final int first = (head + count - take) % offsets.length;
+
+        int total = 0;
+        for (int i = 0; i < take; i++) {
+            total += lengths[(first + i) % offsets.length];
+        }
+
+        final var out = ByteBuffer.allocate(total);
+        for (int i = 0; i < take; i++) {
+            final int slot = (first + i) % offsets.length;
+            out.put(out.position(), ring, offsets[slot], lengths[slot]);
+            out.position(out.position() + lengths[slot]);
+        }
+
+        return new Snapshot(take, out.flip());
+    }
+
+    /**
+     * @return the number of retained messages
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    private boolean overlaps(int slot, int start, int len) {
+        final int o = offsets[slot];
+        return o < start + len && start < o + lengths[slot];
+    }
+
+    private void evictOldest() {
+        head = (head + 1) % offsets.length;
+        count--;
+    }
+
+    /**
+     * @param messages number of messages contained in {@code data}
+     * @param data     the concatenated message bytes
+     */
+    public record Snapshot(int messages, ByteBuffer data) {
+    }
+}
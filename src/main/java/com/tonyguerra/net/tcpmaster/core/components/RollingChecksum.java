@@ -0,0 +1,50 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+/**
+ * The rsync weak checksum of a fixed-size window, updatable in O(1) when the
+ * window slides by one byte.
+ * <p>
+ * {@code a} is the sum of the window's bytes and {@code b} the sum of the
+ * running values of {@code a}, both modulo 2^16; the checksum is
+ * {@code a | b << 16}. Cheap enough to evaluate at every offset of a file,
+ * but weak: matches are confirmed with a strong hash.
+ * </p>
+ */
+public final class RollingChecksum {
+    private final int length;
+    private int a;
+    private int b;
+
+    private RollingChecksum(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return the checksum of {@code data[offset, offset + length)}
+     */
+    public static RollingChecksum of(byte[] data, int offset, int length) {
+        final var sum = new RollingChecksum(length);
+        for (int i = 0; i < length; i++) {
+            final int x = data[offset + i] & 0xff;
+            sum.a += x;
+            sum.b += (length - i) * x;
+        }
+        sum.a &= 0xffff;
+        sum.b &= 0xffff;
+        return sum;
+    }
+
+    /**
+     * Slides the window one byte: {@code out} leaves at the front and
+     * {@code in} enters at the back.
+     */
+    public void roll(byte out, byte in) {
+        final int x = out & 0xff;
+        a = (a - x + (in & 0xff)) & 0xffff;
+        b = (b - length * x + a) & 0xffff;
+    }
+
+    public int value() {
+        return a | b << 16;
+    }
+}
@@ -0,0 +1,259 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Concurrent {@code long -> V} table keyed by primitive session ids.
+ * <p>
+ * Keys are spread over a fixed number of stripes; each stripe is an
+ * open-addressing table ({@code long[]} keys, linear probing, tombstones on
+ * removal) guarded by its own monitor, so lookups never box the key and
+ * writers only contend within a stripe. Traversals read each stripe's current
+ * arrays without locking: entries added or removed concurrently may or may not
+ * be visited, which is the same weak consistency as
+ * {@link java.util.concurrent.ConcurrentHashMap} iteration. Stripes also serve
+ * as natural shards for parallel traversal.
+ * </p>
+ *
+ * @param <V> value type
+ */
+public final class SessionTable<V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final AtomicInteger size;
+
+    public SessionTable() {
+        this(64);
+    }
+
+    /**
+     * @param stripeCount number of stripes (power of two between 1 and 1024)
+     */
+    public SessionTable(int stripeCount) {
+        if (stripeCount < 1 || stripeCount > 1024 || Integer.bitCount(stripeCount) != 1)
+            throw new IllegalArgumentException("stripeCount must be a power of two between 1 and 1024");
+
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        this.size = new AtomicInteger();
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @return the previous value, or null
+     */
+    public V put(long key, V value) {
+        Objects.requireNonNull(value, "value");
+        final long h = mix(key);
+        final var stripe = stripeFor(h);
+
+        synchronized (stripe) {
+            final V previous = stripe.put(key, h, value);
+            if (previous == null) {
+                size.incrementAndGet();
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * @return the value for the key, or null
+     */
+    public V get(long key) {
+        final long h = mix(key);
+        final var stripe = stripeFor(h);
+
+        synchronized (stripe) {
+            return stripe.get(key, h);
+        }
+    }
+
+    /**
+     * @return the removed value, or null if the key was absent
+     */
+    public V remove(long key) {
+        final long h = mix(key);
+        final var stripe = stripeFor(h);
+
+        synchronized (stripe) {
+            final V removed = stripe.remove(key, h);
+            if (removed != null) {
+                size.decrementAndGet();
+            }
+            return removed;
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Visits every value (weakly consistent, see class docs).
+     */
+    public void forEach(Consumer<? super V> action) {
+        for (int i = 0; i < stripes.length; i++) {
+            forEachInStripe(i, action);
+        }
+    }
+
+    /**
+     * Visits the values of a single stripe (weakly consistent).
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInStripe(int stripe, Consumer<? super V> action) {
+        final Object[] values = stripes[stripe].values;
+        for (final Object v : values) {
+            if (v != null && v != TOMBSTONE) {
+                action.accept((V) v);
+            }
+        }
+    }
+
+    /**
+     * Sums a function over the values of a single stripe (weakly consistent).
+     */
+    @SuppressWarnings("unchecked")
+    public int sumInStripe(int stripe, ToIntFunction<? super V> fn) {
+        final Object[] values = stripes[stripe].values;
+        int sum = 0;
+        for (final Object v : values) {
+            if (v != null && v != TOMBSTONE) {
+                sum += fn.applyAsInt((V) v);
+            }
+        }
+        return sum;
+    }
+
+    private Stripe stripeFor(long h) {
+        return stripes.length == 1 ? stripes[0] : stripes[(int) (h >>> stripeShift)];
+    }
+
+    // Fibonacci hashing: sequential ids spread evenly over stripes and slots
+    private static long mix(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    private static final class Stripe {
+        private long[] keys;
+        private volatile Object[] values;
+        private int used; // live entries + tombstones
+        private int live;
+
+        private Stripe() {
+            this.keys = new long[INITIAL_STRIPE_CAPACITY];
+            this.values = new Object[INITIAL_STRIPE_CAPACITY];
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> V get(long key, long h) {
+            final Object[] vals = values;
+            final int mask = vals.length - 1;
+
+            for (int i = (int) h & mask;; i = (i + 1) & mask) {
+                final Object v = vals[i];
+                if (v == null) {
+                    return null;
+                }
+                if (v != TOMBSTONE && keys[i] == key) {
+                    return (V) v;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> V put(long key, long h, V value) {
+            Object[] vals = values;
+            int mask = vals.length - 1;
+            int firstTombstone = -1;
+
+            for (int i = (int) h & mask;; i = (i + 1) & mask) {
+                final Object v = vals[i];
+                if (v == null) {
+                    if (firstTombstone >= 0) {
+                        i = firstTombstone;
+                    } else {
+                        used++;
+                    }
+                    keys[i] = key;
+                    vals[i] = value;
+                    live++;
+                    break;
+                }
+                if (v == TOMBSTONE) {
+                    if (firstTombstone < 0) {
+                        firstTombstone = i;
+                    }
+                    continue;
+                }
+                if (keys[i] == key) {
+                    vals[i] = value;
+                    return (V) v;
+                }
+            }
+
+            if (used * 2 > vals.length) {
+                // Grow only if live entries need it; otherwise just purge tombstones
+                rehash(live * 4 > vals.length ? vals.length * 2 : vals.length);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> V remove(long key, long h) {
+            final Object[] vals = values;
+            final int mask = vals.length - 1;
+
+            for (int i = (int) h & mask;; i = (i + 1) & mask) {
+                final Object v = vals[i];
+                if (v == null) {
+                    return null;
+                }
+                if (v != TOMBSTONE && keys[i] == key) {
+                    vals[i] = TOMBSTONE;
+                    live--;
+                    return (V) v;
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            final long[] oldKeys = keys;
+            final Object[] oldValues = values;
+            final long[] newKeys = new long[capacity];
+            final Object[] newValues = new Object[capacity];
+            final int mask = capacity - 1;
+
+            for (int j = 0; j < oldValues.length; j++) {
+                final Object v = oldValues[j];
+                if (v == null || v == TOMBSTONE) {
+                    continue;
+                }
+                int i = (int) mix(oldKeys[j]) & mask;
+                while (newValues[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                newKeys[i] = oldKeys[j];
+                newValues[i] = v;
+            }
+
+            keys = newKeys;
+            used = live;
+            values = newValues; // volatile write publishes the new arrays
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+/**
+ * Token bucket with lazy refill.
+ * <p>
+ * The bucket holds at most {@code burst} tokens and gains {@code ratePerSecond}
+ * tokens per second. Refill is computed from {@link System#nanoTime()} when a
+ * permit is requested, so there is no timer and no allocation: the state is
+ * three primitive fields.
+ * </p>
+ * <p>
+ * A request larger than the burst is granted when the bucket is full and
+ * leaves it in debt, so oversized requests are throttled instead of being
+ * rejected forever.
+ * </p>
+ * <p>
+ * Not thread-safe: each bucket is meant to be used by the single thread that
+ * reads a session's input (or guarded by the caller).
+ * </p>
+ */
+public final class TokenBucket {
+    private final double ratePerNano;
+    private final double burst;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSecond tokens added per second (must be > 0)
+     * @param burst         bucket capacity (must be > 0); the bucket starts full
+     */
+    public TokenBucket(double ratePerSecond, long burst) {
+        this(ratePerSecond, burst, System.nanoTime());
+    }
+
+    TokenBucket(double ratePerSecond, long burst, long nowNanos) {
+        if (!(ratePerSecond > 0))
+            throw new IllegalArgumentException("ratePerSecond must be > 0");
+        if (burst <= 0)
+            throw new IllegalArgumentException("burst must be > 0");
+
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * @return the bucket capacity
+     */
+    public long burst() {
+        return (long) burst;
+    }
+
+    /**
+     * Takes {@code permits} tokens if available.
+     *
+     * @param permits tokens to take (e.g. 1 per message, n per byte count)
+     * @return true if the permits were granted
+     */
+    public boolean tryAcquire(long permits) {
+        return tryAcquire(permits, System.nanoTime());
+    }
+
+    boolean tryAcquire(long permits, long nowNanos) {
+        refill(nowNanos);
+
+        if (tokens < Math.min(permits, burst)) {
+            return false;
+        }
+
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * Nanoseconds until {@code permits} tokens will be available (0 if they are
+     * available now).
+     */
+    public long nanosUntilAvailable(long permits) {
+        return nanosUntilAvailable(permits, System.nanoTime());
+    }
+
+    long nanosUntilAvailable(long permits, long nowNanos) {
+        refill(nowNanos);
+
+        final double missing = Math.min(permits, burst) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / ratePerNano);
+    }
+
+    private void refill(long nowNanos) {
+        final long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * ratePerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent topic -> subscriber index.
+ * <p>
+ * Topics are dot-separated segments, e.g. {@code prices.eu.btc}. Subscription
+ * patterns may contain wildcards:
+ * <ul>
+ * <li>{@code *} matches exactly one segment ({@code prices.*.btc})</li>
+ * <li>{@code >} matches one or more trailing segments ({@code prices.>})</li>
+ * </ul>
+ * Exact subscriptions are served by a single hash lookup; wildcard
+ * subscriptions live in a trie, so a publish only walks the segments of its own
+ * topic. Publish cost therefore scales with the number of matching
+ * subscribers, not with the number of known subscribers.
+ * </p>
+ *
+ * @param <S> subscriber type (compared by {@code equals}/{@code hashCode})
+ */
+public final class TopicIndex<S> {
+    public static final String SINGLE_WILDCARD = "*";
+    public static final String TAIL_WILDCARD = ">";
+
+    private final ConcurrentHashMap<String, Set<S>> exact;
+    private final Node<S> root;
+
+    // Lets publish skip the trie walk entirely while no wildcard is registered
+    private final AtomicInteger wildcardSubscriptions;
+
+    public TopicIndex() {
+        this.exact = new ConcurrentHashMap<>();
+        this.root = new Node<>();
+        this.wildcardSubscriptions = new AtomicInteger();
+    }
+
+    /**
+     * Adds a subscription.
+     *
+     * @param pattern    topic or wildcard pattern (see {@link #isValidPattern})
+     * @param subscriber the subscriber (must not be null)
+     * @return true if the subscription did not exist yet
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public boolean subscribe(String pattern, S subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!isValidPattern(pattern)) {
+            throw new IllegalArgumentException("Invalid topic pattern: " + pattern);
+        }
+
+        if (!isWildcard(pattern)) {
+            return exact.computeIfAbsent(pattern, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+
+        // Trie writes are serialized so a prune never detaches a node that a
+        // concurrent subscribe is about to fill; publishes read without locking
+        synchronized (root) {
+            var node = root;
+            for (final String segment : pattern.split("\\.")) {
+                node = node.children.computeIfAbsent(segment, k -> new Node<>());
+            }
+
+            final boolean added = node.subscribers.add(subscriber);
+            if (added) {
+                wildcardSubscriptions.incrementAndGet();
+            }
+            return added;
+        }
+    }
+
+    /**
+     * Removes a subscription.
+     *
+     * @return true if the subscription existed
+     */
+    public boolean unsubscribe(String pattern, S subscriber) {
+        if (pattern == null || subscriber == null) {
+            return false;
+        }
+
+        if (!isWildcard(pattern)) {
+            final boolean[] removed = { false };
+            exact.computeIfPresent(pattern, (k, subs) -> {
+                removed[0] = subs.remove(subscriber);
+                return subs.isEmpty() ? null : subs;
+            });
+            return removed[0];
+        }
+
+        final String[] segments = pattern.split("\\.");
+        synchronized (root) {
+            final List<Node<S>> path = new ArrayList<>(segments.length + 1);
+            var node = root;
+            path.add(node);
+            for (final String segment : segments) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    return false;
+                }
+                path.add(node);
+            }
+
+            final boolean removed = node.subscribers.remove(subscriber);
+            if (!removed) {
+                return false;
+            }
+            wildcardSubscriptions.decrementAndGet();
+
+            // Prune the branch bottom-up so abandoned patterns don't leave
+            // empty nodes behind
+            for (int i = segments.length; i > 0; i--) {
+                final var child = path.get(i);
+                if (!child.subscribers.isEmpty() || !child.children.isEmpty()) {
+                    break;
+                }
+                path.get(i - 1).children.remove(segments[i - 1], child);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes every given subscription of a subscriber (e.g. on disconnect).
+     */
+    public void unsubscribeAll(S subscriber, Iterable<String> patterns) {
+        for (final String pattern : patterns) {
+            unsubscribe(pattern, subscriber);
+        }
+    }
+
+    /**
+     * Resolves the subscribers of a concrete topic (no wildcards).
+     * A subscriber matching through several patterns is returned once.
+     *
+     * @param topic the published topic
+     * @return a read-only set of matching subscribers (possibly empty)
+     */
+    public Set<S> subscribers(String topic) {
+        final var direct = exact.get(topic);
+
+        if (wildcardSubscriptions.get() == 0) {
+            return direct == null ? Set.of() : Collections.unmodifiableSet(direct);
+        }
+
+        final Set<S> out = new HashSet<>();
+        if (direct != null) {
+            out.addAll(direct);
+        }
+        collect(root, topic.split("\\."), 0, out);
+        return out;
+    }
+
+    private static <S> void collect(Node<S> node, String[] segments, int index, Set<S> out) {
+        if (index == segments.length) {
+            out.addAll(node.subscribers);
+            return;
+        }
+
+        final var tail = node.children.get(TAIL_WILDCARD);
+        if (tail != null) {
+            out.addAll(tail.subscribers);
+        }
+
+        final var literal = node.children.get(segments[index]);
+        if (literal != null) {
+            collect(literal, segments, index + 1, out);
+        }
+
+        final var single = node.children.get(SINGLE_WILDCARD);
+        if (single != null) {
+            collect(single, segments, index + 1, out);
+        }
+    }
+
+    /**
+     * @return true if the value contains a wildcard segment
+     */
+    public static boolean isWildcard(String pattern) {
+        return pattern.contains(SINGLE_WILDCARD) || pattern.contains(TAIL_WILDCARD);
+    }
+
+    /**
+     * A pattern is valid if it has no empty segments, wildcards occupy a whole
+     * segment, and {@code >} appears only as the last segment.
+     */
+    public static boolean isValidPattern(String pattern) {
+        if (pattern == null || pattern.isEmpty() || pattern.chars().anyMatch(Character::isWhitespace)) {
+            return false;
+        }
+
+        final String[] segments = pattern.split("\\.", -1);
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            if (segment.isEmpty()) {
+                return false;
+            }
+            if (segment.equals(TAIL_WILDCARD)) {
+                if (i != segments.length - 1) {
+                    return false;
+                }
+                continue;
+            }
+            if (!segment.equals(SINGLE_WILDCARD) && isWildcard(segment)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * A topic is a valid pattern without wildcards (publishes must be concrete).
+     */
+    public static boolean isValidTopic(String topic) {
+        return isValidPattern(topic) && !isWildcard(topic);
+    }
+
+    // Number of trie nodes below the root (exposed for tests)
+    int wildcardNodeCount() {
+        return count(root) - 1;
+    }
+
+    private static int count(Node<?> node) {
+        int n = 1;
+        for (final var child : node.children.values()) {
+            n += count(child);
+        }
+        return n;
+    }
+
+    private static final class Node<S> {
+        private final ConcurrentHashMap<String, Node<S>> children = new ConcurrentHashMap<>();
+        private final Set<S> subscribers = ConcurrentHashMap.newKeySet();
+    }
+}
@@ -0,0 +1,61 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compression codec for binary transfers, negotiated with the
+ * {@code codec=<name>} option of {@code !file.put}.
+ * <p>
+ * A compressed payload is a sequence of frames: {@code int rawLength},
+ * {@code int encodedLength}, then {@code encodedLength} codec bytes that decode
+ * to exactly {@code rawLength} bytes. Frames are independent and hold at most
+ * {@link TransferCodecs#FRAME_SIZE} raw bytes, so a receiver needs only two
+ * fixed buffers and an interrupted upload can resume after the last complete
+ * frame.
+ * </p>
+ * <p>
+ * Implementations are registered with {@link TransferCodecs#register} or
+ * discovered through {@link java.util.ServiceLoader}. A codec must be
+ * thread-safe; its encoders and decoders are used by one thread at a time.
+ * </p>
+ */
+public interface TransferCodec {
+
+    /**
+     * @return the name used on the wire (lowercase, no spaces or '=')
+     */
+    String name();
+
+    Encoder newEncoder();
+
+    Decoder newDecoder();
+
+    interface Encoder extends AutoCloseable {
+        /**
+         * Encodes all remaining bytes of {@code src} as one frame payload.
+         *
+         * @param dst receives the encoded bytes; has at least
+         *            {@link TransferCodecs#MAX_ENCODED_FRAME} bytes remaining
+         * @throws IOException if the encoded frame does not fit
+         */
+        void encode(ByteBuffer src, ByteBuffer dst) throws IOException;
+
+        @Override
+        void close();
+    }
+
+    interface Decoder extends AutoCloseable {
+        /**
+         * Decodes one frame payload ({@code src} remaining bytes) into
+         * {@code dst}, which has exactly the frame's raw length remaining.
+         *
+         * @throws IOException if the payload is corrupt or decodes to a
+         *                     different length
+         */
+        void decode(ByteBuffer src, ByteBuffer dst) throws IOException;
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,83 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link TransferCodec}s by wire name.
+ * <p>
+ * {@code deflate} is always available; further codecs are picked up from
+ * {@link ServiceLoader} on first use or registered explicitly.
+ * </p>
+ */
+public final class TransferCodecs {
+    /**
+     * Maximum raw bytes per frame.
+     */
+    public static final int FRAME_SIZE = 256 * 1024;
+
+    /**
+     * Maximum encoded bytes per frame (room for codecs that expand
+     * incompressible input slightly).
+     */
+    public static final int MAX_ENCODED_FRAME = FRAME_SIZE + FRAME_SIZE / 8;
+
+    // Encoded/raw ratio above which compressing is not worth the CPU
+    private static final double MIN_SAVING_RATIO = 0.9;
+
+    private static final Map<String, TransferCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(new DeflateCodec());
+        for (final var codec : ServiceLoader.load(TransferCodec.class)) {
+            register(codec);
+        }
+    }
+
+    private TransferCodecs() {
+    }
+
+    /**
+     * Registers a codec, replacing any codec with the same name.
+     */
+    public static void register(TransferCodec codec) {
+        final String name = codec.name();
+        if (name == null || name.isBlank() || name.contains(" ") || name.contains("="))
+            throw new IllegalArgumentException("Invalid codec name: " + name);
+        CODECS.put(name.toLowerCase(Locale.ROOT), codec);
+    }
+
+    /**
+     * @return the codec with this name, or null if unknown
+     */
+    public static TransferCodec get(String name) {
+        return CODECS.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Trial-encodes a sample (typically the first block of a file) to decide
+     * whether compressing the transfer pays off; media and archives usually do
+     * not compress.
+     *
+     * @param sample bytes to test (not consumed)
+     * @return true if the sample shrinks by at least 10%
+     */
+    public static boolean isWorthCompressing(TransferCodec codec, ByteBuffer sample) {
+        if (!sample.hasRemaining()) {
+            return false;
+        }
+
+        final var src = sample.slice(sample.position(), Math.min(sample.remaining(), FRAME_SIZE));
+        final var dst = ByteBuffer.allocate(MAX_ENCODED_FRAME);
+        try (final var encoder = codec.newEncoder()) {
+            encoder.encode(src, dst);
+        } catch (IOException ex) {
+            return false;
+        }
+        return dst.position() <= src.capacity() * MIN_SAVING_RATIO;
+    }
+}
@@ -0,0 +1,103 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.tonyguerra.net.tcpmaster.configurations.Globals;
+
+/**
+ * Naming rules for files received through {@code !file.put}.
+ * <p>
+ * Bytes are written to {@code <target>.part} and the file is renamed to its
+ * final name only once every byte has arrived, so an interrupted upload never
+ * looks complete and its partial file tells how far a resume can start.
+ * </p>
+ */
+public final class UploadFiles {
+    public static final String PART_SUFFIX = ".part";
+
+    private UploadFiles() {
+    }
+
+    /**
+     * @return the partial file that collects the bytes of {@code target}
+     */
+    public static Path partOf(Path target) {
+        return target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    }
+
+    /**
+     * Client paths must not name partial files or the content store directly.
+     * Checked on the resolved path, so "x/../.objects" and "a.part/." are
+     * caught as well.
+     *
+     * @param target the normalized path a client name resolves to under
+     *               {@link Globals#getBaseDirUploads()}
+     */
+    public static boolean isReserved(Path target) {
+        final var name = target.getFileName();
+        if (name != null && name.toString().endsWith(PART_SUFFIX)) {
+            return true;
+        }
+
+        final var base = Globals.getBaseDirUploads();
+        if (!target.startsWith(base)) {
+            return false;
+        }
+        final var relative = base.relativize(target);
+        return relative.getName(0).toString().equals(ContentStore.OBJECTS_DIR);
+    }
+
+    /**
+     * Renames a finished file over {@code target} in one step, so readers see
+     * either the previous file or the complete new one. Falls back to a plain
+     * replacing move where the file system cannot rename atomically.
+     */
+    public static void commit(Path file, Path target) throws IOException {
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces a directory's entries (files created or renamed into it) to disk.
+     * Best effort: platforms that cannot open directories (Windows) are
+     * skipped.
+     */
+    public static void syncDirectory(Path dir) throws IOException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (AccessDeniedException | UnsupportedOperationException ex) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @return the number of bytes already received for {@code target} (0 if no
+     *         partial file exists)
+     * @throws UncheckedIOException if the partial file cannot be read
+     */
+    public static long partialLength(Path target) {
+        try {
+            return Files.size(partOf(target));
+        } catch (NoSuchFileException ex) {
+            return 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.tonyguerra.net.tcpmaster.enums;
+
+/**
+ * How far the server goes to make an upload durable before answering
+ * {@code OK STORED}.
+ */
+public enum Durability {
+    /**
+     * Leave the data to the operating system's page cache; a crash or power
+     * loss may lose uploads that were already acknowledged.
+     */
+    NONE,
+
+    /**
+     * Force each file's data, and the directory entry created by the final
+     * rename, to disk before acknowledging. Safe, but every small upload pays
+     * for its own disk flushes.
+     */
+    PER_FILE,
+
+    /**
+     * Same guarantees as {@link #PER_FILE}, but the flushes of concurrent
+     * uploads are gathered by a background committer over a short window and
+     * issued together, so the storage can complete them in one commit.
+     */
+    GROUP_COMMIT;
+}
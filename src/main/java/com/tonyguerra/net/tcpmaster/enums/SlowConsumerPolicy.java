@@ -0,0 +1,28 @@
+package com.tonyguerra.net.tcpmaster.enums;
+
+/**
+ * What the server does when a recipient's outbound backlog reaches the
+ * configured limit during a broadcast or publish.
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * Discard the message being queued; the backlog is left untouched.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discard the oldest queued message to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Replace queued messages of the same stream (topic, or the global broadcast
+     * stream) with the new one, so the client only gets the latest value.
+     */
+    CONFLATE,
+
+    /**
+     * Close the recipient's connection.
+     */
+    DISCONNECT;
+}
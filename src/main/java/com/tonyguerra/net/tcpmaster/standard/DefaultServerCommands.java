@@ -1,12 +1,24 @@
 package com.tonyguerra.net.tcpmaster.standard;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.tonyguerra.net.tcpmaster.configurations.Globals;
 import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+import com.tonyguerra.net.tcpmaster.core.components.FileSignature;
+import com.tonyguerra.net.tcpmaster.core.components.TransferCodec;
+import com.tonyguerra.net.tcpmaster.core.components.TransferCodecs;
+import com.tonyguerra.net.tcpmaster.core.components.TopicIndex;
+import com.tonyguerra.net.tcpmaster.core.components.UploadFiles;
 import com.tonyguerra.net.tcpmaster.enums.TcpType;
 import com.tonyguerra.net.tcpmaster.handlers.TcpHandler;
 
@@ -96,6 +108,214 @@ public final class DefaultServerCommands {
         MUTED_CLIENTS.remove(clientId(client));
     }
 
+    /**
+     * Subscribes the current client to a topic. Wildcards are supported:
+     * {@code *} matches one segment, {@code >} matches the remaining segments.
+     *
+     * Usage: !subscribe prices.eu.*
+     */
+    @TcpHandler(command = "!subscribe", type = TcpType.SERVER)
+    public static String subscribe(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 2 || !TopicIndex.isValidPattern(parts[1])) {
+            return "ERROR Invalid topic";
+        }
+
+        ctx.server().subscribe(ctx.session(), parts[1]);
+        return "OK SUBSCRIBED " + parts[1];
+    }
+
+    /**
+     * Removes a subscription created with !subscribe (same pattern).
+     *
+     * Usage: !unsubscribe prices.eu.*
+     */
+    @TcpHandler(command = "!unsubscribe", type = TcpType.SERVER)
+    public static String unsubscribe(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 2 || !TopicIndex.isValidPattern(parts[1])) {
+            return "ERROR Invalid topic";
+        }
+
+        ctx.server().unsubscribe(ctx.session(), parts[1]);
+        return "OK UNSUBSCRIBED " + parts[1];
+    }
+
+    /**
+     * Publishes a message to the subscribers of a topic.
+     *
+     * Usage: !publish prices.eu.btc 64250.10
+     */
+    @TcpHandler(command = "!publish", type = TcpType.SERVER)
+    public static String publish(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+", 3);
+        if (parts.length < 3 || !TopicIndex.isValidTopic(parts[1])) {
+            return "ERROR Invalid topic";
+        }
+
+        if (MUTED_CLIENTS.contains(clientId(ctx.socket()))) {
+            return "ERROR Muted";
+        }
+
+        final int delivered = ctx.server().publish(ctx.session(), parts[1], parts[2]);
+        return "OK PUBLISHED " + delivered;
+    }
+
+    /**
+     * Replays the newest retained broadcasts (or publishes of a topic) to the
+     * current client. The server must keep a history for that stream.
+     *
+     * Usage: !replay <n> [topic]
+     */
+    @TcpHandler(command = "!replay", type = TcpType.SERVER)
+    public static String replay(TcpServer.ServerCommandContext ctx) throws IOException {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 2) {
+            return "ERROR";
+        }
+
+        final int count;
+        try {
+            count = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException ex) {
+            return "ERROR";
+        }
+
+        if (count <= 0) {
+            return "ERROR";
+        }
+
+        final String topic = parts.length > 2 ? parts[2] : null;
+        if (topic != null && !TopicIndex.isValidTopic(topic)) {
+            return "ERROR Invalid topic";
+        }
+
+        return "OK REPLAYED " + ctx.server().replay(ctx.session(), topic, count);
+    }
+
+    /**
+     * Returns the numeric session id of the current client (the target id for
+     * !whisper).
+     *
+     * Usage: !whoami
+     */
+    @TcpHandler(command = "!whoami", type = TcpType.SERVER)
+    public static String whoami(TcpServer.ServerCommandContext ctx) {
+        return "OK " + ctx.session().sessionId();
+    }
+
+    /**
+     * Sends a private message to a single client, addressed by session id.
+     *
+     * Usage: !whisper <sessionId> <message>
+     */
+    @TcpHandler(command = "!whisper", type = TcpType.SERVER)
+    public static String whisper(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+", 3);
+        if (parts.length < 3) {
+            return "ERROR";
+        }
+
+        final long target;
+        try {
+            target = Long.parseLong(parts[1]);
+        } catch (NumberFormatException ex) {
+            return "ERROR";
+        }
+
+        if (MUTED_CLIENTS.contains(clientId(ctx.socket()))) {
+            return "ERROR Muted";
+        }
+
+        final String line = String.format("[WHISPER] #%d -> %s", ctx.session().sessionId(), parts[2]);
+        if (ctx.server().sendTo(target, line)) {
+            return "OK SENT";
+        }
+        return ctx.server().isConnected(target) ? "ERROR Recipient busy" : "ERROR Unknown session";
+    }
+
+    /**
+     * Starts identifying the current connection as the link of another cluster
+     * node. The reply carries a challenge to answer with !cluster.auth.
+     *
+     * Usage: !cluster.hello <nodeId>
+     */
+    @TcpHandler(command = "!cluster.hello", type = TcpType.SERVER)
+    public static String clusterHello(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 2) {
+            return "ERROR";
+        }
+
+        final String challenge = ctx.server().challengeClusterPeer(ctx.session(), parts[1]);
+        return challenge != null ? "OK CHALLENGE " + challenge : "ERROR Cluster mode disabled";
+    }
+
+    /**
+     * Proves that the node which sent !cluster.hello knows the cluster secret
+     * (HMAC-SHA256 of "<challenge> <nodeId>", hex).
+     *
+     * Usage: !cluster.auth <proof>
+     */
+    @TcpHandler(command = "!cluster.auth", type = TcpType.SERVER)
+    public static String clusterAuth(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 2) {
+            return "ERROR";
+        }
+
+        return ctx.server().authenticateClusterPeer(ctx.session(), parts[1])
+                ? "OK PEER"
+                : "ERROR Unauthorized";
+    }
+
+    /**
+     * Delivers a broadcast (B) or topic publish (P) forwarded by another cluster
+     * node. Only accepted on connections authenticated with !cluster.auth.
+     *
+     * Usage:
+     * !cluster.relay <messageId> B <senderId> <message>
+     * !cluster.relay <messageId> P <topic> <senderId> <message>
+     */
+    @TcpHandler(command = "!cluster.relay", type = TcpType.SERVER)
+    public static String clusterRelay(TcpServer.ServerCommandContext ctx) {
+        final String[] head = ctx.rawLine().trim().split("\\s+", 4);
+        if (head.length < 4) {
+            return "ERROR";
+        }
+
+        final String messageId = head[1];
+        final String kind = head[2];
+
+        final String topic;
+        final String[] rest;
+        if ("B".equals(kind)) {
+            topic = null;
+            rest = head[3].split("\\s+", 2);
+        } else if ("P".equals(kind)) {
+            final String[] withTopic = head[3].split("\\s+", 2);
+            if (withTopic.length < 2 || !TopicIndex.isValidTopic(withTopic[0])) {
+                return "ERROR Invalid topic";
+            }
+            topic = withTopic[0];
+            rest = withTopic[1].split("\\s+", 2);
+        } else {
+            return "ERROR";
+        }
+
+        if (rest.length < 2) {
+            return "ERROR";
+        }
+
+        try {
+            return ctx.server().deliverClusterRelay(ctx.session(), messageId, topic, rest[0], rest[1])
+                    ? "OK RELAYED"
+                    : "OK DUPLICATE";
+        } catch (IllegalStateException ex) {
+            return "ERROR " + ex.getMessage();
+        }
+    }
+
     @TcpHandler(command = "!bin.begin", type = TcpType.SERVER)
     public static void beginBinary(TcpServer.ServerCommandContext ctx) {
         final String[] parts = ctx.rawLine().trim().split("\\s+");
@@ -118,16 +338,27 @@ public final class DefaultServerCommands {
     }
 
     /**
-     * Upload a file to the server.
+     * Upload a file to the server, or resume an interrupted upload.
      *
      * Usage:
-     * !file.put <relativePath> <size>
+     * !file.put <relativePath> <size> [offset] [crc32c=<hex>|sha256=<hex>] [codec=<name>]
      *
      * Example:
      * !file.put docs/report.pdf 12345
+     * !file.put docs/report.pdf 12345 8192
+     * !file.put docs/report.pdf 12345 crc32c=1a2b3c4d
+     * !file.put logs/app.log 12345 codec=deflate
      *
-     * After this command, the client MUST send exactly <size> bytes via
-     * sendBinary().
+     * After this command, the client MUST send exactly <size> - <offset> bytes
+     * via sendBinary(). The offset must not exceed the bytes already received
+     * (see !file.stat). With a checksum of the whole file, the server answers
+     * "ERROR CHECKSUM" and discards the upload if the stored bytes differ.
+     * With a codec, the bytes are sent as compressed frames (see
+     * TransferCodec); sizes and offsets still count uncompressed bytes.
+     *
+     * With content-addressed storage enabled and a sha256 checksum, the server
+     * answers "OK EXISTS <name>" instead of "OK READY" when it already holds
+     * that content; no bytes follow.
      */
     @TcpHandler(command = "!file.put", type = TcpType.SERVER)
     public static String filePut(TcpServer.ServerCommandContext ctx) {
@@ -136,30 +367,356 @@ public final class DefaultServerCommands {
             return "ERROR";
         }
 
-        final String relative = parts[1];
+        // Resolve and sanitized path (prevents ../ traversal)
+        final var target = safeResolver(Globals.getBaseDirUploads(), parts[1]);
+        if (UploadFiles.isReserved(target)) {
+            return "ERROR Reserved name";
+        }
 
         final long size;
+        long offset = 0;
+        FileChecksum checksum = null;
+        TransferCodec codec = null;
         try {
             size = Long.parseLong(parts[2]);
+            for (int i = 3; i < parts.length; i++) {
+                if (parts[i].startsWith("codec=")) {
+                    codec = TransferCodecs.get(parts[i].substring("codec=".length()));
+                    if (codec == null) {
+                        return "ERROR Unknown codec";
+                    }
+                } else if (parts[i].indexOf('=') > 0) {
+                    checksum = FileChecksum.parse(parts[i]);
+                } else if (i == 3) {
+                    offset = Long.parseLong(parts[i]);
+                } else {
+                    return "ERROR";
+                }
+            }
         } catch (NumberFormatException ex) {
             return "ERROR";
+        } catch (IllegalArgumentException ex) {
+            return "ERROR Invalid checksum";
         }
 
         if (size <= 0) {
             return "ERROR";
         }
 
-        // Resolve and sanitized path (prevents ../ traversal)
-        final var target = safeResolver(Globals.getBaseDirUploads(), relative);
+        if (offset != 0) {
+            final long received = UploadFiles.partialLength(target);
+            if (offset < 0 || offset > size || offset > received) {
+                return "ERROR Invalid offset " + received;
+            }
+        }
+
+        final var store = ctx.server().getContentStore();
+        if (store != null && checksum != null && checksum.algorithm() == FileChecksum.Algorithm.SHA256) {
+            try {
+                if (store.linkExisting(checksum.expected(), size, target)) {
+                    // The part file is left alone: another connection may own it
+                    ctx.server().invalidateDownload(target);
+                    return "OK EXISTS " + target.getFileName();
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
 
         // Store pending target and switch to binary mode
         final var session = ctx.session();
         session.setPendingBinaryTarget(target);
+        session.setPendingBinaryOffset(offset);
+        session.setPendingChecksum(checksum);
+        session.setPendingCodec(codec);
+        session.beginBinary(size - offset);
+
+        return "OK READY";
+    }
+
+    /**
+     * Pipelined upload: the client sends the payload right after this line,
+     * without waiting for "OK READY", and may send the next file's header
+     * right after that. Each push gets exactly one reply, once its payload
+     * has been consumed, so replies arrive in push order.
+     *
+     * Usage:
+     * !file.push <relativePath> <size> [<algorithm>=<hex>]
+     *
+     * Replies "OK STORED <name>", "OK EXISTS <name>" (content-addressed hit;
+     * the payload is discarded) or "ERROR ..." (the payload is discarded).
+     * Empty files are allowed.
+     */
+    @TcpHandler(command = "!file.push", type = TcpType.SERVER)
+    public static String filePush(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 3 || parts.length > 4) {
+            return "ERROR";
+        }
+
+        final var target = safeResolver(Globals.getBaseDirUploads(), parts[1]);
+        if (UploadFiles.isReserved(target)) {
+            return "ERROR Reserved name";
+        }
+
+        final long size;
+        FileChecksum checksum = null;
+        try {
+            size = Long.parseLong(parts[2]);
+            if (parts.length == 4) {
+                checksum = FileChecksum.parse(parts[3]);
+            }
+        } catch (NumberFormatException ex) {
+            return "ERROR";
+        } catch (IllegalArgumentException ex) {
+            return "ERROR Invalid checksum";
+        }
+
+        if (size < 0) {
+            return "ERROR";
+        }
+
+        final var store = ctx.server().getContentStore();
+        if (store != null && checksum != null && checksum.algorithm() == FileChecksum.Algorithm.SHA256) {
+            try {
+                if (store.linkExisting(checksum.expected(), size, target)) {
+                    ctx.server().invalidateDownload(target);
+                    return "OK EXISTS " + target.getFileName();
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        final var session = ctx.session();
+        session.setPendingBinaryTarget(target);
+        session.setPendingChecksum(checksum);
         session.beginBinary(size);
 
         return "OK READY";
     }
 
+    /**
+     * Upload one chunk of a file; chunks may arrive in any order, over several
+     * connections. The file is stored once every byte has arrived.
+     *
+     * Usage:
+     * !file.chunk <relativePath> <fileSize> <offset> <length> [uploadId]
+     *
+     * After this command, the client MUST send exactly <length> bytes. The
+     * server answers "OK CHUNK <bytesReceived>", or "OK STORED <name>" for the
+     * chunk that completes the file. Every chunk of one upload carries the same
+     * uploadId; a chunk with another id starts the file over, so a retried
+     * upload does not inherit the ranges of an aborted one.
+     */
+    @TcpHandler(command = "!file.chunk", type = TcpType.SERVER)
+    public static String fileChunk(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 5) {
+            return "ERROR";
+        }
+
+        final var target = safeResolver(Globals.getBaseDirUploads(), parts[1]);
+        if (UploadFiles.isReserved(target)) {
+            return "ERROR Reserved name";
+        }
+
+        final long size;
+        final long offset;
+        final long length;
+        try {
+            size = Long.parseLong(parts[2]);
+            offset = Long.parseLong(parts[3]);
+            length = Long.parseLong(parts[4]);
+        } catch (NumberFormatException ex) {
+            return "ERROR";
+        }
+
+        if (size <= 0 || offset < 0 || length <= 0 || offset + length > size) {
+            return "ERROR Invalid range";
+        }
+
+        final var session = ctx.session();
+        session.setPendingBinaryTarget(target);
+        session.setPendingBinaryOffset(offset);
+        session.setPendingChunkFileSize(size);
+        session.setPendingChunkUploadId(parts.length > 5 ? parts[5] : null);
+        session.beginBinary(length);
+
+        return "OK READY";
+    }
+
+    /**
+     * Reports how many bytes of an upload the server holds.
+     *
+     * Usage:
+     * !file.stat <relativePath>
+     *
+     * Replies:
+     * OK STAT <bytes> PARTIAL (interrupted upload, resume from <bytes>)
+     * OK STAT <bytes> COMPLETE (stored file)
+     * OK STAT 0 MISSING
+     */
+    @TcpHandler(command = "!file.stat", type = TcpType.SERVER)
+    public static String fileStat(TcpServer.ServerCommandContext ctx) throws IOException {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 2) {
+            return "ERROR";
+        }
+
+        final var target = safeResolver(Globals.getBaseDirUploads(), parts[1]);
+        if (UploadFiles.isReserved(target)) {
+            return "ERROR";
+        }
+
+        if (Files.exists(UploadFiles.partOf(target))) {
+            return "OK STAT " + UploadFiles.partialLength(target) + " PARTIAL";
+        }
+        if (Files.isRegularFile(target)) {
+            return "OK STAT " + Files.size(target) + " COMPLETE";
+        }
+        return "OK STAT 0 MISSING";
+    }
+
+    /**
+     * Download a file (or a byte range of it) from the server.
+     *
+     * Usage:
+     * !file.get <relativePath> [offset] [length]
+     *
+     * Example:
+     * !file.get docs/report.pdf
+     * !file.get docs/report.pdf 1048576 65536
+     *
+     * The server replies "OK SIZE <n>" followed by exactly <n> raw bytes.
+     */
+    @TcpHandler(command = "!file.get", type = TcpType.SERVER)
+    public static String fileGet(TcpServer.ServerCommandContext ctx) throws IOException {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length < 2) {
+            return "ERROR";
+        }
+
+        final long offset;
+        final long length;
+        try {
+            offset = parts.length > 2 ? Long.parseLong(parts[2]) : 0;
+            length = parts.length > 3 ? Long.parseLong(parts[3]) : -1;
+        } catch (NumberFormatException ex) {
+            return "ERROR";
+        }
+
+        // Partial uploads and the content store are not downloadable
+        final var source = safeResolver(Globals.getBaseDirUploads(), parts[1]);
+        if (UploadFiles.isReserved(source) || !Files.isRegularFile(source)) {
+            return "ERROR Not found";
+        }
+
+        final long size = Files.size(source);
+        if (offset < 0 || offset > size || length < -1) {
+            return "ERROR Invalid range";
+        }
+
+        final long count = length < 0 ? size - offset : Math.min(length, size - offset);
+        ctx.server().sendFileAfterResponse(ctx.session(), source, offset, count);
+
+        return "OK SIZE " + count;
+    }
+
+    /**
+     * Sends the block signature of a stored file, the first step of a delta
+     * upload (see FileSignature).
+     *
+     * Usage:
+     * !file.sig <relativePath> <blockSize>
+     *
+     * Replies "OK SIZE <n>" followed by exactly <n> bytes of encoded signature.
+     */
+    @TcpHandler(command = "!file.sig", type = TcpType.SERVER)
+    public static String fileSig(TcpServer.ServerCommandContext ctx) throws IOException {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length != 3) {
+            return "ERROR";
+        }
+
+        final int blockSize;
+        try {
+            blockSize = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException ex) {
+            return "ERROR";
+        }
+        if (blockSize < FileSignature.MIN_BLOCK_SIZE || blockSize > FileSignature.MAX_BLOCK_SIZE) {
+            return "ERROR Invalid block size";
+        }
+
+        final var source = safeResolver(Globals.getBaseDirUploads(), parts[1]);
+        if (UploadFiles.isReserved(source) || !Files.isRegularFile(source)) {
+            return "ERROR Not found";
+        }
+
+        final ByteBuffer signature;
+        try (final var file = FileChannel.open(source, StandardOpenOption.READ)) {
+            signature = FileSignature.compute(file, blockSize);
+        }
+        ctx.server().sendBytesAfterResponse(ctx.session(), signature);
+
+        return "OK SIZE " + signature.remaining();
+    }
+
+    /**
+     * Upload a file as a delta against the stored copy (see FileDelta). The
+     * checksum covers the whole new content and is required: the rebuilt file
+     * replaces the stored one only if it matches.
+     *
+     * Usage:
+     * !file.delta <relativePath> <deltaBytes> <fileSize> <algorithm>=<hex>
+     *
+     * After "OK READY", the client MUST send exactly <deltaBytes> bytes. The
+     * server answers "OK STORED <name>", or "ERROR CHECKSUM" if the stored copy
+     * changed since its signature was taken.
+     */
+    @TcpHandler(command = "!file.delta", type = TcpType.SERVER)
+    public static String fileDelta(TcpServer.ServerCommandContext ctx) {
+        final String[] parts = ctx.rawLine().trim().split("\\s+");
+        if (parts.length != 5) {
+            return "ERROR";
+        }
+
+        final var target = safeResolver(Globals.getBaseDirUploads(), parts[1]);
+        if (UploadFiles.isReserved(target)) {
+            return "ERROR Reserved name";
+        }
+
+        final long deltaBytes;
+        final long size;
+        final FileChecksum checksum;
+        try {
+            deltaBytes = Long.parseLong(parts[2]);
+            size = Long.parseLong(parts[3]);
+            checksum = FileChecksum.parse(parts[4]);
+        } catch (NumberFormatException ex) {
+            return "ERROR";
+        } catch (IllegalArgumentException ex) {
+            return "ERROR Invalid checksum";
+        }
+
+        if (deltaBytes <= 0 || size <= 0) {
+            return "ERROR";
+        }
+
+        if (!Files.isRegularFile(target)) {
+            return "ERROR Not found";
+        }
+
+        final var session = ctx.session();
+        session.setPendingBinaryTarget(target);
+        session.setPendingDeltaFileSize(size);
+        session.setPendingChecksum(checksum);
+        session.beginBinary(deltaBytes);
+
+        return "OK READY";
+    }
+
     private static Path safeResolver(Path baseDir, String userPath) {
         // Remove leading slashes to force "relative"
         String cleanned = userPath.replace('\\', '/');
@@ -10,6 +10,8 @@ module com.tonyguerra.net.tcpmaster {
     exports com.tonyguerra.net.tcpmaster.configurations;
     exports com.tonyguerra.net.tcpmaster.core.components;
 
+    uses com.tonyguerra.net.tcpmaster.core.components.TransferCodec;
+
     opens com.tonyguerra.net.tcpmaster.handlers to org.reflections;
     opens com.tonyguerra.net.tcpmaster.standard to org.reflections;
 }
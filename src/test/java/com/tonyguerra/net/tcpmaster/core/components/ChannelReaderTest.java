@@ -0,0 +1,64 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+
+final class ChannelReaderTest {
+
+    private static ChannelReader readerOf(byte[] data, int bufferSize) {
+        return new ChannelReader(Channels.newChannel(new ByteArrayInputStream(data)), bufferSize);
+    }
+
+    @Test
+    void shouldReadLinesAcrossBufferRefills() throws Exception {
+        final var reader = readerOf("first line\r\nsecond\nlast".getBytes(StandardCharsets.UTF_8), 4);
+
+        assertEquals("first line", reader.readLineUtf8());
+        assertEquals("second", reader.readLineUtf8());
+        assertEquals("last", reader.readLineUtf8());
+        assertNull(reader.readLineUtf8());
+    }
+
+    @Test
+    void shouldKeepBytesBufferedAheadOfAPayload() throws Exception {
+        final var stream = new ByteArrayOutputStream();
+        stream.write("OK SIZE 5\n".getBytes(StandardCharsets.UTF_8));
+        stream.write(new byte[] { 1, 2, 3, 4, 5 });
+        stream.write("after\n".getBytes(StandardCharsets.UTF_8));
+
+        // Buffer large enough to read header, payload and trailer at once
+        final var reader = readerOf(stream.toByteArray(), 1024);
+        final var target = Files.createTempFile("tcp-master-channel-reader-", ".bin");
+
+        try (final var file = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            assertEquals("OK SIZE 5", reader.readLineUtf8());
+            reader.readToFile(file, 0, 5, null);
+            assertEquals("after", reader.readLineUtf8());
+        } finally {
+            assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, Files.readAllBytes(target));
+            Files.deleteIfExists(target);
+        }
+    }
+
+    @Test
+    void shouldFailWhenPayloadIsTruncated() throws Exception {
+        final var reader = readerOf(new byte[] { 1, 2, 3 }, 16);
+        final var target = Files.createTempFile("tcp-master-channel-reader-", ".bin");
+
+        try (final var file = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            assertThrows(IOException.class, () -> reader.readToFile(file, 0, 10, null));
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+}
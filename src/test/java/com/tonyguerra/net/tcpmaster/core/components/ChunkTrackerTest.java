@@ -0,0 +1,47 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+final class ChunkTrackerTest {
+
+    @Test
+    void shouldCompleteWhenAllRangesArriveInAnyOrder() {
+        final var tracker = new ChunkTracker(100);
+
+        assertFalse(tracker.add(50, 25));
+        assertFalse(tracker.add(0, 25));
+        assertFalse(tracker.add(75, 25));
+        assertEquals(75, tracker.received());
+
+        assertTrue(tracker.add(25, 25));
+        assertEquals(100, tracker.received());
+    }
+
+    @Test
+    void duplicateAndOverlappingChunksShouldCountOnce() {
+        final var tracker = new ChunkTracker(100);
+
+        assertFalse(tracker.add(0, 40));
+        assertFalse(tracker.add(0, 40));
+        assertFalse(tracker.add(30, 20));
+        assertEquals(50, tracker.received());
+
+        assertFalse(tracker.add(60, 10));
+        assertFalse(tracker.add(45, 30)); // bridges [0,50) and [60,70)
+        assertEquals(75, tracker.received());
+
+        assertTrue(tracker.add(70, 30));
+        assertFalse(tracker.add(0, 100), "Completion is reported only once");
+    }
+
+    @Test
+    void shouldRejectRangesOutsideTheFile() {
+        final var tracker = new ChunkTracker(10);
+
+        assertThrows(IllegalArgumentException.class, () -> tracker.add(5, 6));
+        assertThrows(IllegalArgumentException.class, () -> tracker.add(-1, 2));
+        assertThrows(IllegalArgumentException.class, () -> tracker.add(0, 0));
+    }
+}
@@ -0,0 +1,60 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class ContentStoreTest {
+    private static final String HASH = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void commitShouldStoreContentOnceAndLinkNames() throws Exception {
+        final var store = new ContentStore(dir.resolve(".objects"));
+
+        final var first = Files.writeString(dir.resolve("a.part"), "abc");
+        store.commit(first, HASH, dir.resolve("a.txt"));
+
+        assertFalse(Files.exists(first));
+        assertEquals("abc", Files.readString(dir.resolve("a.txt")));
+        assertTrue(Files.isSameFile(store.objectOf(HASH), dir.resolve("a.txt")));
+
+        // Same content again: the new file is dropped, the name links the object
+        final var second = Files.writeString(dir.resolve("b.part"), "abc");
+        store.commit(second, HASH, dir.resolve("sub/b.txt"));
+
+        assertFalse(Files.exists(second));
+        assertTrue(Files.isSameFile(dir.resolve("a.txt"), dir.resolve("sub/b.txt")));
+    }
+
+    @Test
+    void linkExistingShouldRequireMatchingObject() throws Exception {
+        final var store = new ContentStore(dir.resolve(".objects"));
+
+        assertFalse(store.linkExisting(HASH, 3, dir.resolve("c.txt")));
+
+        store.commit(Files.writeString(dir.resolve("a.part"), "abc"), HASH, dir.resolve("a.txt"));
+
+        assertFalse(store.linkExisting(HASH, 4, dir.resolve("c.txt")), "Size must match");
+        assertTrue(store.linkExisting(HASH, 3, dir.resolve("c.txt")));
+        assertEquals("abc", Files.readString(dir.resolve("c.txt")));
+    }
+
+    @Test
+    void replacingANameShouldNotTouchTheObject() throws Exception {
+        final var store = new ContentStore(dir.resolve(".objects"));
+        store.commit(Files.writeString(dir.resolve("a.part"), "abc"), HASH, dir.resolve("a.txt"));
+
+        // What an ordinary upload does: part file renamed over the name
+        Files.move(Files.writeString(dir.resolve("x.part"), "other"), dir.resolve("a.txt"),
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals("abc", Files.readString(store.objectOf(HASH)));
+    }
+}
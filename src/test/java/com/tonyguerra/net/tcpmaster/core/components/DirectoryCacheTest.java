@@ -0,0 +1,57 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class DirectoryCacheTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void ensureShouldCreateOnceAndTrustTheCache() throws Exception {
+        final var cache = new DirectoryCache();
+        final var nested = dir.resolve("a/b/c");
+
+        cache.ensure(nested);
+        assertTrue(Files.isDirectory(nested));
+        assertEquals(1, cache.size());
+
+        // Removed behind the cache's back: not noticed until forgotten
+        Files.delete(nested);
+        cache.ensure(nested);
+        assertFalse(Files.exists(nested));
+
+        cache.forget(dir.resolve("a"));
+        assertEquals(0, cache.size());
+        cache.ensure(nested);
+        assertTrue(Files.isDirectory(nested));
+    }
+
+    @Test
+    void cacheShouldStartOverWhenFull() throws Exception {
+        final var cache = new DirectoryCache(2);
+
+        cache.ensure(dir.resolve("one"));
+        cache.ensure(dir.resolve("two"));
+        cache.ensure(dir.resolve("three"));
+
+        assertEquals(1, cache.size());
+        assertTrue(Files.isDirectory(dir.resolve("three")));
+    }
+
+    @Test
+    void commitShouldReplaceTheTargetAtomically() throws Exception {
+        final var target = Files.writeString(dir.resolve("file.txt"), "old");
+        final var part = Files.writeString(UploadFiles.partOf(target), "new");
+
+        UploadFiles.commit(part, target);
+
+        assertFalse(Files.exists(part));
+        assertEquals("new", Files.readString(target));
+    }
+}
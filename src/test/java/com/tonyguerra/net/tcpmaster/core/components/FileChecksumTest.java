@@ -0,0 +1,61 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+final class FileChecksumTest {
+
+    @Test
+    void shouldMatchKnownVectors() {
+        final var crc = FileChecksum.parse("crc32c=E3069283");
+        crc.update(ByteBuffer.wrap("123456789".getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(crc.matches());
+
+        final var sha = FileChecksum
+                .parse("sha256=ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+        sha.update(ByteBuffer.wrap("abc".getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(sha.matches());
+    }
+
+    @Test
+    void incrementalUpdatesShouldEqualOnePass() throws Exception {
+        final byte[] data = new byte[300_000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (i * 7);
+
+        final var file = Files.createTempFile("tcp-master-checksum-", ".bin");
+        try {
+            Files.write(file, data);
+            final String whole = FileChecksum.compute(FileChecksum.Algorithm.CRC32C, file);
+
+            final var direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+            final var pieces = FileChecksum.of(FileChecksum.Algorithm.CRC32C);
+            pieces.update(direct.slice(0, 1000));
+            pieces.update(direct.slice(1000, data.length - 1000));
+
+            assertEquals(whole, "crc32c=" + pieces.hex());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void shouldDetectMismatch() {
+        final var crc = FileChecksum.parse("crc32c=00000000");
+        crc.update(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        assertFalse(crc.matches());
+    }
+
+    @Test
+    void shouldRejectMalformedOptions() {
+        assertThrows(IllegalArgumentException.class, () -> FileChecksum.parse("md5=abcd"));
+        assertThrows(IllegalArgumentException.class, () -> FileChecksum.parse("crc32c=123"));
+        assertThrows(IllegalArgumentException.class, () -> FileChecksum.parse("crc32c=zzzzzzzz"));
+        assertThrows(IllegalArgumentException.class, () -> FileChecksum.parse("=abcd"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class FileDeltaTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void rollingChecksumShouldMatchAFreshComputation() {
+        final byte[] data = random(10_000, 1);
+        final var sum = RollingChecksum.of(data, 0, 700);
+        for (int i = 1; i + 700 <= data.length; i++) {
+            sum.roll(data[i - 1], data[i + 699]);
+            assertEquals(RollingChecksum.of(data, i, 700).value(), sum.value(), "offset " + i);
+        }
+    }
+
+    @Test
+    void signatureShouldRoundTrip() throws Exception {
+        final var file = Files.write(dir.resolve("base.bin"), random(10_000, 2));
+
+        final var signature = signatureOf(file, 4096);
+
+        assertEquals(10_000, signature.fileSize());
+        assertEquals(3, signature.blockCount());
+        assertEquals(10_000 - 8192, signature.blockLength(2));
+        assertThrows(IllegalArgumentException.class, () -> FileSignature.parse(ByteBuffer.allocate(5)));
+    }
+
+    @Test
+    void unchangedFileShouldBecomeOneCopy() throws Exception {
+        final byte[] content = random(1_000_000, 3);
+        final var base = Files.write(dir.resolve("base.bin"), content);
+
+        final var delta = new ByteArrayOutputStream();
+        final var stats = encode(base, signatureOf(base, 2048), delta);
+
+        assertEquals(content.length, stats.copied());
+        assertEquals(0, stats.literal());
+        assertEquals(FileDelta.COPY_LENGTH, stats.encodedBytes());
+        assertArrayEquals(content, apply(content, delta.toByteArray()));
+    }
+
+    @Test
+    void editsShouldOnlySendChangedBytes() throws Exception {
+        final byte[] old = random(2_000_000, 4);
+        final var base = Files.write(dir.resolve("base.bin"), old);
+
+        // Insert in the middle, overwrite near the start, cut the end
+        final var edited = new ByteArrayOutputStream();
+        edited.write(old, 0, 1_000_000);
+        edited.write("inserted bytes".getBytes());
+        edited.write(old, 1_000_000, 900_000);
+        final byte[] content = edited.toByteArray();
+        content[10] ^= 1;
+        final var file = Files.write(dir.resolve("new.bin"), content);
+
+        final var delta = new ByteArrayOutputStream();
+        final var stats = encode(file, signatureOf(base, 4096), delta);
+
+        assertEquals(content.length, stats.fileSize());
+        assertEquals(delta.size(), stats.encodedBytes());
+        assertTrue(stats.literal() < 3 * 4096, "Literal bytes: " + stats.literal());
+        assertArrayEquals(content, apply(old, delta.toByteArray()));
+    }
+
+    @Test
+    void unrelatedContentShouldBeAllLiteral() throws Exception {
+        final var base = Files.write(dir.resolve("base.bin"), random(100_000, 5));
+        final byte[] content = random(70_001, 6);
+        final var file = Files.write(dir.resolve("new.bin"), content);
+
+        final var delta = new ByteArrayOutputStream();
+        final var stats = encode(file, signatureOf(base, 2048), delta);
+
+        assertEquals(0, stats.copied());
+        assertArrayEquals(content, apply(new byte[0], delta.toByteArray()));
+    }
+
+    @Test
+    void blockSizeShouldFollowTheSquareRoot() {
+        assertEquals(FileSignature.MIN_BLOCK_SIZE, FileSignature.blockSizeFor(0));
+        assertEquals(32 * 1024, FileSignature.blockSizeFor(1L << 30));
+        assertEquals(FileSignature.MAX_BLOCK_SIZE, FileSignature.blockSizeFor(1L << 40));
+    }
+
+    private static FileSignature signatureOf(Path file, int blockSize) throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return FileSignature.parse(FileSignature.compute(channel, blockSize));
+        }
+    }
+
+    private static FileDelta.Stats encode(Path file, FileSignature signature, ByteArrayOutputStream out)
+            throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return FileDelta.encode(channel, signature, out);
+        }
+    }
+
+    // What the server does, in memory
+    private static byte[] apply(byte[] base, byte[] delta) throws IOException {
+        final var in = new DataInputStream(new ByteArrayInputStream(delta));
+        final var out = new ByteArrayOutputStream();
+        while (in.available() > 0) {
+            final byte op = in.readByte();
+            if (op == FileDelta.OP_COPY) {
+                final long offset = in.readLong();
+                final int length = in.readInt();
+                out.write(Arrays.copyOfRange(base, (int) offset, (int) offset + length));
+            } else {
+                assertEquals(FileDelta.OP_LITERAL, op);
+                out.write(in.readNBytes(in.readInt()));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] random(int size, long seed) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
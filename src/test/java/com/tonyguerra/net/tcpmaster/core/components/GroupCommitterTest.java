@@ -0,0 +1,93 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class GroupCommitterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentRequestsShouldShareBatches() throws Exception {
+        final int writers = 16;
+        final var start = new CountDownLatch(1);
+
+        try (final var committer = new GroupCommitter(20_000)) {
+            final List<CompletableFuture<Void>> done = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                final var file = dir.resolve("f" + i);
+                done.add(CompletableFuture.runAsync(() -> {
+                    try (final var channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE)) {
+                        channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+                        start.await();
+                        committer.force(channel);
+                        committer.forceDirectory(dir);
+                    } catch (IOException | InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }));
+            }
+
+            start.countDown();
+            CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+            assertEquals(2L * writers, committer.requestCount());
+            assertTrue(committer.batchCount() < writers,
+                    "Expected shared batches, got " + committer.batchCount() + " for " + writers + " writers");
+        }
+    }
+
+    @Test
+    void failedFlushShouldReachTheCaller() throws Exception {
+        try (final var committer = new GroupCommitter(0)) {
+            final var channel = FileChannel.open(dir.resolve("closed"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            channel.close();
+
+            assertThrows(IOException.class, () -> committer.force(channel));
+        }
+    }
+
+    @Test
+    void closedCommitterShouldRejectRequests() throws Exception {
+        final var committer = new GroupCommitter(0);
+        committer.close();
+
+        assertThrows(IOException.class, () -> committer.forceDirectory(dir));
+    }
+
+    @Test
+    void closingDuringTheWindowShouldFailTheBatch() throws Exception {
+        final var committer = new GroupCommitter(300_000);
+        final var waiter = CompletableFuture.runAsync(() -> {
+            try {
+                committer.forceDirectory(dir);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+
+        // Close while the committer is still gathering its batch
+        Thread.sleep(100);
+        committer.close();
+
+        final var ex = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, ex.getCause().getCause());
+    }
+}
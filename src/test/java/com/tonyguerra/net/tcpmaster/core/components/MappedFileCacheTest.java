@@ -0,0 +1,88 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class MappedFileCacheTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void fileShouldBeMappedOnItsSecondRequest() throws Exception {
+        final var cache = new MappedFileCache(1024, 1024);
+        final var file = Files.writeString(dir.resolve("a.txt"), "hello");
+
+        assertNull(cache.get(file));
+        final var first = cache.get(file);
+        assertNotNull(first);
+        assertEquals("hello", StandardCharsets.UTF_8.decode(first).toString());
+
+        // Each caller gets its own position
+        final var second = cache.get(file);
+        assertEquals(0, second.position());
+        assertEquals(1, cache.hits());
+        assertEquals(5, cache.bytes());
+    }
+
+    @Test
+    void replacedFileShouldNotBeServedStale() throws Exception {
+        final var cache = new MappedFileCache(1024, 1024);
+        final var file = Files.writeString(dir.resolve("a.txt"), "old");
+        cache.get(file);
+        assertNotNull(cache.get(file));
+
+        // Replaced by rename, like an upload
+        final var part = Files.writeString(dir.resolve("a.txt.part"), "newer");
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        final var remapped = cache.get(file);
+        assertEquals("newer", StandardCharsets.UTF_8.decode(remapped).toString());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedFilesShouldBeEvictedBySize() throws Exception {
+        final var cache = new MappedFileCache(10, 10);
+        final var a = Files.writeString(dir.resolve("a"), "aaaa");
+        final var b = Files.writeString(dir.resolve("b"), "bbbb");
+        final var c = Files.writeString(dir.resolve("c"), "cccc");
+        final var big = Files.writeString(dir.resolve("big"), "x".repeat(11));
+
+        for (final var file : new Path[] { a, a, b, b }) {
+            cache.get(file);
+        }
+        cache.get(a); // b is now the least recently used
+        cache.get(c);
+        cache.get(c);
+
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.bytes());
+        final long hits = cache.hits();
+        assertNotNull(cache.get(a));
+        assertEquals(hits + 1, cache.hits());
+
+        assertNull(cache.get(big));
+        assertNull(cache.get(big));
+    }
+
+    @Test
+    void invalidateShouldDropTheMapping() throws Exception {
+        final var cache = new MappedFileCache(1024, 1024);
+        final var file = Files.writeString(dir.resolve("a.txt"), "hello");
+        cache.get(file);
+        cache.get(file);
+
+        cache.invalidate(file);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+        assertNull(cache.get(file), "Starts over at the first request");
+    }
+}
@@ -0,0 +1,71 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+final class MessageHistoryTest {
+
+    private static ByteBuffer line(String s) {
+        return ByteBuffer.wrap((s + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(MessageHistory.Snapshot snapshot) {
+        return StandardCharsets.UTF_8.decode(snapshot.data()).toString();
+    }
+
+    @Test
+    void snapshotShouldReturnNewestMessagesOldestFirst() {
+        final var history = new MessageHistory(10, 1024);
+        history.append(line("a"));
+        history.append(line("b"));
+        history.append(line("c"));
+
+        final var snapshot = history.snapshot(2);
+        assertEquals(2, snapshot.messages());
+        assertEquals("b\nc\n", text(snapshot));
+    }
+
+    @Test
+    void appendShouldNotConsumeSourceBuffer() {
+        final var history = new MessageHistory(10, 1024);
+        final var msg = line("hello");
+
+        history.append(msg);
+        assertEquals(6, msg.remaining());
+    }
+
+    @Test
+    void shouldEvictByMessageCount() {
+        final var history = new MessageHistory(3, 1024);
+        for (final String s : new String[] { "1", "2", "3", "4", "5" }) {
+            history.append(line(s));
+        }
+
+        assertEquals(3, history.size());
+        assertEquals("3\n4\n5\n", text(history.snapshot(10)));
+    }
+
+    @Test
+    void shouldEvictOverwrittenRecordsWhenRingWraps() {
+        // 4 bytes per record, 10-byte ring: at most 2 records fit
+        final var history = new MessageHistory(100, 10);
+        for (final String s : new String[] { "aaa", "bbb", "ccc", "ddd", "eee" }) {
+            history.append(line(s));
+        }
+
+        assertEquals(2, history.size());
+        assertEquals("ddd\neee\n", text(history.snapshot(10)));
+    }
+
+    @Test
+    void oversizedMessagesShouldBeIgnored() {
+        final var history = new MessageHistory(10, 4);
+        assertFalse(history.append(line("too long")));
+        assertEquals(0, history.snapshot(5).messages());
+    }
+}
@@ -0,0 +1,105 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+final class SessionTableTest {
+
+    @Test
+    void shouldPutGetAndRemove() {
+        final var table = new SessionTable<String>(4);
+
+        assertNull(table.put(1, "a"));
+        assertNull(table.put(2, "b"));
+        assertEquals("a", table.put(1, "a2"));
+
+        assertEquals("a2", table.get(1));
+        assertEquals("b", table.get(2));
+        assertNull(table.get(3));
+        assertEquals(2, table.size());
+
+        assertEquals("b", table.remove(2));
+        assertNull(table.remove(2));
+        assertNull(table.get(2));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void shouldGrowAndReuseTombstones() {
+        final var table = new SessionTable<Long>(2);
+
+        for (long id = 1; id <= 10_000; id++) {
+            table.put(id, id);
+        }
+        assertEquals(10_000, table.size());
+
+        for (long id = 1; id <= 10_000; id += 2) {
+            assertEquals(id, table.remove(id));
+        }
+        for (long id = 10_001; id <= 20_000; id++) {
+            table.put(id, id);
+        }
+
+        assertEquals(15_000, table.size());
+        for (long id = 2; id <= 10_000; id += 2) {
+            assertEquals(id, table.get(id));
+        }
+        assertNull(table.get(9_999));
+        assertEquals(20_000L, table.get(20_000));
+    }
+
+    @Test
+    void stripesShouldCoverEveryValueOnce() {
+        final var table = new SessionTable<Integer>(8);
+        for (int id = 1; id <= 1000; id++) {
+            table.put(id, 1);
+        }
+
+        int sum = 0;
+        for (int stripe = 0; stripe < table.stripeCount(); stripe++) {
+            sum += table.sumInStripe(stripe, v -> v);
+        }
+        assertEquals(1000, sum);
+
+        final var visited = new ArrayList<Integer>();
+        table.forEach(visited::add);
+        assertEquals(1000, visited.size());
+    }
+
+    @Test
+    void shouldHandleConcurrentWriters() throws Exception {
+        final var table = new SessionTable<Long>();
+        final var ids = new AtomicInteger();
+        final var threads = new Thread[8];
+
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    final long id = ids.incrementAndGet();
+                    table.put(id, id);
+                    if (id % 3 == 0) {
+                        table.remove(id);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000 - 40_000 / 3, table.size());
+        assertEquals(7L, table.get(7));
+        assertNull(table.get(9));
+    }
+
+    @Test
+    void shouldRejectInvalidStripeCount() {
+        assertThrows(IllegalArgumentException.class, () -> new SessionTable<String>(3));
+        assertThrows(IllegalArgumentException.class, () -> new SessionTable<String>(0));
+    }
+}
@@ -0,0 +1,48 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+final class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void shouldAllowBurstThenRefillOverTime() {
+        final var bucket = new TokenBucket(10, 3, 0);
+
+        assertTrue(bucket.tryAcquire(1, 0));
+        assertTrue(bucket.tryAcquire(1, 0));
+        assertTrue(bucket.tryAcquire(1, 0));
+        assertFalse(bucket.tryAcquire(1, 0));
+
+        // 10 tokens/s -> one token every 100 ms
+        assertFalse(bucket.tryAcquire(1, SECOND / 20));
+        assertTrue(bucket.tryAcquire(1, SECOND / 10));
+        assertFalse(bucket.tryAcquire(1, SECOND / 10));
+    }
+
+    @Test
+    void shouldNeverExceedBurst() {
+        final var bucket = new TokenBucket(1000, 5, 0);
+
+        assertTrue(bucket.tryAcquire(5, 60 * SECOND));
+        assertFalse(bucket.tryAcquire(1, 60 * SECOND));
+    }
+
+    @Test
+    void oversizedRequestShouldPassWhenFullAndLeaveDebt() {
+        final var bucket = new TokenBucket(100, 10, 0);
+
+        assertTrue(bucket.tryAcquire(50, 0));
+        assertFalse(bucket.tryAcquire(1, SECOND / 10)); // 10 tokens back, still 30 in debt
+        assertEquals(SECOND * 31 / 100, bucket.nanosUntilAvailable(1, SECOND / 10), SECOND / 1000);
+        assertTrue(bucket.tryAcquire(1, SECOND * 42 / 100));
+    }
+
+    @Test
+    void shouldRejectInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
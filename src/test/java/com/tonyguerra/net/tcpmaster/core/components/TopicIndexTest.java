@@ -0,0 +1,100 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+final class TopicIndexTest {
+
+    @Test
+    void exactSubscriptionShouldMatchOnlyItsTopic() {
+        final var index = new TopicIndex<String>();
+        index.subscribe("prices.eu.btc", "a");
+
+        assertEquals(Set.of("a"), index.subscribers("prices.eu.btc"));
+        assertTrue(index.subscribers("prices.eu.eth").isEmpty());
+        assertTrue(index.subscribers("prices.eu").isEmpty());
+    }
+
+    @Test
+    void singleWildcardShouldMatchExactlyOneSegment() {
+        final var index = new TopicIndex<String>();
+        index.subscribe("prices.*.btc", "a");
+
+        assertEquals(Set.of("a"), index.subscribers("prices.eu.btc"));
+        assertEquals(Set.of("a"), index.subscribers("prices.us.btc"));
+        assertTrue(index.subscribers("prices.btc").isEmpty());
+        assertTrue(index.subscribers("prices.eu.x.btc").isEmpty());
+    }
+
+    @Test
+    void tailWildcardShouldMatchOneOrMoreTrailingSegments() {
+        final var index = new TopicIndex<String>();
+        index.subscribe("prices.>", "a");
+
+        assertEquals(Set.of("a"), index.subscribers("prices.eu"));
+        assertEquals(Set.of("a"), index.subscribers("prices.eu.btc"));
+        assertTrue(index.subscribers("prices").isEmpty());
+        assertTrue(index.subscribers("news.eu").isEmpty());
+    }
+
+    @Test
+    void subscriberMatchingSeveralPatternsShouldBeReturnedOnce() {
+        final var index = new TopicIndex<String>();
+        index.subscribe("prices.eu.btc", "a");
+        index.subscribe("prices.*.btc", "a");
+        index.subscribe("prices.>", "a");
+        index.subscribe("prices.>", "b");
+
+        assertEquals(Set.of("a", "b"), index.subscribers("prices.eu.btc"));
+    }
+
+    @Test
+    void unsubscribeShouldRemoveOnlyThatPattern() {
+        final var index = new TopicIndex<String>();
+        index.subscribe("prices.eu.btc", "a");
+        index.subscribe("prices.>", "a");
+
+        assertTrue(index.unsubscribe("prices.>", "a"));
+        assertFalse(index.unsubscribe("prices.>", "a"));
+        assertEquals(Set.of("a"), index.subscribers("prices.eu.btc"));
+
+        index.unsubscribeAll("a", List.of("prices.eu.btc"));
+        assertTrue(index.subscribers("prices.eu.btc").isEmpty());
+    }
+
+    @Test
+    void unsubscribeShouldPruneEmptyTrieNodes() {
+        final var index = new TopicIndex<String>();
+        index.subscribe("prices.*.btc", "a");
+        index.subscribe("prices.*.eth", "b");
+        index.subscribe("prices.>", "c");
+
+        index.unsubscribe("prices.*.btc", "a");
+        assertEquals(4, index.wildcardNodeCount(), "prices, *, eth and > remain");
+
+        index.unsubscribe("prices.*.eth", "b");
+        index.unsubscribe("prices.>", "c");
+        assertEquals(0, index.wildcardNodeCount());
+
+        index.subscribe("prices.*.btc", "a");
+        assertEquals(Set.of("a"), index.subscribers("prices.eu.btc"));
+    }
+
+    @Test
+    void malformedPatternsShouldBeRejected() {
+        final var index = new TopicIndex<String>();
+
+        assertThrows(IllegalArgumentException.class, () -> index.subscribe("prices..btc", "a"));
+        assertThrows(IllegalArgumentException.class, () -> index.subscribe("prices.>.btc", "a"));
+        assertThrows(IllegalArgumentException.class, () -> index.subscribe("pri*ces", "a"));
+        assertFalse(TopicIndex.isValidTopic("prices.*"));
+        assertTrue(TopicIndex.isValidTopic("prices.eu"));
+    }
+}
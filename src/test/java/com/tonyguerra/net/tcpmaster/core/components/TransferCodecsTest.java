@@ -0,0 +1,98 @@
+package com.tonyguerra.net.tcpmaster.core.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+final class TransferCodecsTest {
+
+    private static byte[] csv(int size) {
+        final var sb = new StringBuilder();
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append(i).append(",2026-10-18T12:00:00Z,INFO,order-service,processed order ").append(i % 97)
+                    .append('\n');
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void deflateShouldRoundTripAFrame() throws Exception {
+        final var codec = TransferCodecs.get("DEFLATE");
+        assertNotNull(codec);
+
+        final byte[] raw = csv(TransferCodecs.FRAME_SIZE);
+        final var encoded = ByteBuffer.allocateDirect(TransferCodecs.MAX_ENCODED_FRAME);
+        final var decoded = ByteBuffer.allocateDirect(raw.length);
+
+        try (final var encoder = codec.newEncoder(); final var decoder = codec.newDecoder()) {
+            // Twice, to cover reuse of the same encoder/decoder
+            for (int round = 0; round < 2; round++) {
+                encoder.encode(ByteBuffer.wrap(raw), encoded.clear());
+                assertTrue(encoded.position() < raw.length / 5, "CSV should compress well");
+
+                decoder.decode(encoded.flip(), decoded.clear());
+                final byte[] back = new byte[raw.length];
+                decoded.flip().get(back);
+                assertArrayEquals(raw, back);
+            }
+        }
+    }
+
+    @Test
+    void decoderShouldRejectWrongLengthOrGarbage() throws Exception {
+        final var codec = TransferCodecs.get(DeflateCodec.NAME);
+        final byte[] raw = csv(10_000);
+        final var encoded = ByteBuffer.allocate(TransferCodecs.MAX_ENCODED_FRAME);
+
+        try (final var encoder = codec.newEncoder(); final var decoder = codec.newDecoder()) {
+            encoder.encode(ByteBuffer.wrap(raw), encoded);
+            encoded.flip();
+
+            assertThrows(IOException.class, () -> decoder.decode(encoded.duplicate(), ByteBuffer.allocate(9_999)));
+            assertThrows(IOException.class, () -> decoder.decode(encoded.duplicate(), ByteBuffer.allocate(10_001)));
+            assertThrows(IOException.class,
+                    () -> decoder.decode(ByteBuffer.wrap(new byte[] { -1, -1, -1, -1 }), ByteBuffer.allocate(10)));
+        }
+    }
+
+    @Test
+    void incompressibleSampleShouldNotBeWorthCompressing() {
+        final var codec = TransferCodecs.get(DeflateCodec.NAME);
+
+        final byte[] random = new byte[64 * 1024];
+        new Random(7).nextBytes(random);
+
+        assertFalse(TransferCodecs.isWorthCompressing(codec, ByteBuffer.wrap(random)));
+        assertTrue(TransferCodecs.isWorthCompressing(codec, ByteBuffer.wrap(csv(64 * 1024))));
+        assertFalse(TransferCodecs.isWorthCompressing(codec, ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    void registryShouldRejectInvalidNames() {
+        final var deflate = new DeflateCodec();
+        final var badName = new TransferCodec() {
+            @Override
+            public String name() {
+                return "bad name";
+            }
+
+            @Override
+            public Encoder newEncoder() {
+                return deflate.newEncoder();
+            }
+
+            @Override
+            public Decoder newDecoder() {
+                return deflate.newDecoder();
+            }
+        };
+
+        assertThrows(IllegalArgumentException.class, () -> TransferCodecs.register(badName));
+        assertNull(TransferCodecs.get("nope"));
+    }
+}
@@ -0,0 +1,153 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class BandwidthLimitTest {
+    private static final int SIZE = 512 * 1024;
+    private static final long RATE = 512 * 1024;
+    private static final long BURST = 32 * 1024;
+
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void sessionLimitShouldShapeUploadsWithoutDelayingOtherClients() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port).setTransferRateLimit(RATE / 2, BURST);
+        server.start();
+
+        final var local = tempFile();
+        final String remote = "shaped-" + UUID.randomUUID() + ".bin";
+
+        try (TcpClient uploader = new TcpClient("127.0.0.1", port);
+                TcpClient other = new TcpClient("127.0.0.1", port)) {
+            uploader.setResponseTimeoutMs(10_000).connect();
+            other.setResponseTimeoutMs(2000).connect();
+
+            final long start = System.nanoTime();
+            final var upload = CompletableFuture.supplyAsync(() -> upload(uploader, local, remote));
+
+            // Interactive traffic on another session is not held back
+            Thread.sleep(200);
+            final long pingStart = System.nanoTime();
+            assertEquals("OK", other.sendMessage("plain", false));
+            assertTrue(elapsedMillis(pingStart) < 500, "Other session delayed");
+
+            assertTrue(upload.get(15, TimeUnit.SECONDS).startsWith("OK STORED"));
+            // 512 KiB at 256 KiB/s: about two seconds once the first burst is spent
+            assertTrue(elapsedMillis(start) >= 1500, "Upload not shaped: " + elapsedMillis(start) + " ms");
+            assertTrue(server.getTransferThrottleNanos() > 0);
+            assertEquals(Files.size(local), Files.size(stored(remote)));
+        } finally {
+            Files.deleteIfExists(local);
+            Files.deleteIfExists(stored(remote));
+        }
+    }
+
+    @Test
+    void globalLimitShouldBeSharedByAllSessions() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port).setGlobalTransferRateLimit(RATE, BURST);
+        server.start();
+
+        final var local = tempFile();
+        final String first = "global-a-" + UUID.randomUUID() + ".bin";
+        final String second = "global-b-" + UUID.randomUUID() + ".bin";
+
+        try (TcpClient a = new TcpClient("127.0.0.1", port);
+                TcpClient b = new TcpClient("127.0.0.1", port)) {
+            a.setResponseTimeoutMs(10_000).connect();
+            b.setResponseTimeoutMs(10_000).connect();
+
+            final long start = System.nanoTime();
+            final var uploadA = CompletableFuture.supplyAsync(() -> upload(a, local, first));
+            final var uploadB = CompletableFuture.supplyAsync(() -> upload(b, local, second));
+
+            assertTrue(uploadA.get(15, TimeUnit.SECONDS).startsWith("OK STORED"));
+            assertTrue(uploadB.get(15, TimeUnit.SECONDS).startsWith("OK STORED"));
+            // 1 MiB in total at 512 KiB/s
+            assertTrue(elapsedMillis(start) >= 1500, "Uploads not shaped: " + elapsedMillis(start) + " ms");
+        } finally {
+            Files.deleteIfExists(local);
+            Files.deleteIfExists(stored(first));
+            Files.deleteIfExists(stored(second));
+        }
+    }
+
+    @Test
+    void sessionLimitShouldShapeDownloads() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port).setTransferRateLimit(RATE / 2, BURST);
+        server.start();
+
+        final var source = tempFile();
+        final var local = Files.createTempFile("tcp-master-shaped-", ".bin");
+        final String remote = "shaped-get-" + UUID.randomUUID() + ".bin";
+        Files.createDirectories(stored(remote).getParent());
+        Files.copy(source, stored(remote));
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(10_000).connect();
+
+            final long start = System.nanoTime();
+            assertEquals(SIZE, client.downloadFile(remote, local));
+            assertTrue(elapsedMillis(start) >= 1500, "Download not shaped: " + elapsedMillis(start) + " ms");
+            assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(local));
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(local);
+            Files.deleteIfExists(stored(remote));
+        }
+    }
+
+    private static String upload(TcpClient client, Path local, String remote) {
+        try {
+            return client.uploadFile(local, remote);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static Path tempFile() throws IOException {
+        final var file = Files.createTempFile("tcp-master-shaped-", ".bin");
+        final byte[] content = new byte[SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 253);
+        }
+        return Files.write(file, content);
+    }
+
+    private static Path stored(String remote) {
+        return Path.of("uploads").toAbsolutePath().resolve(remote);
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,97 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.ClientCommandPolicy;
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class BatchSendTest {
+
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null)
+            server.close();
+    }
+
+    @Test
+    void batchShouldReturnResponsesInOrder() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final List<String> messages = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            messages.add("!subscribe batch." + i);
+            expected.add("OK SUBSCRIBED batch." + i);
+        }
+        // Local handler, blank line and plain message in between
+        messages.add(500, "!version");
+        expected.add(500, "tcp-master v1.0.0");
+        messages.add("  ");
+        expected.add("OK");
+        messages.add("hello");
+        expected.add("OK");
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setLogNonBroadcastMessages(false).setResponseTimeoutMs(10_000).connect();
+
+            assertEquals(expected, client.sendBatch(messages));
+
+            // The untagged path still works afterwards
+            assertEquals("OK", client.sendMessage("plain", false));
+        }
+    }
+
+    @Test
+    void batchShouldHonourTheCommandPolicy() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setCommandPolicy(ClientCommandPolicy.REMOTE_ONLY).setResponseTimeoutMs(5000).connect();
+
+            assertEquals(List.of("Unknown command: !version", "OK"), client.sendBatch(List.of("!version", "x")));
+        }
+    }
+
+    @Test
+    void asyncBatchShouldCompleteEachFuture() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            final var replies = client.sendBatchAsync(List.of("!help", "!subscribe a.b", "!unsubscribe a.b"));
+
+            assertTrue(replies.get(0).isDone(), "Local responses complete at once");
+            assertTrue(replies.get(0).get().startsWith("Commands:"));
+            assertEquals("OK SUBSCRIBED a.b", replies.get(1).get(5, TimeUnit.SECONDS));
+            assertEquals("OK UNSUBSCRIBED a.b", replies.get(2).get(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -56,4 +57,136 @@ final class BroadcastTest {
             assertTrue(broadcast.contains("hello"), "Unexpected broadcast: " + broadcast);
         }
     }
+
+    @Test
+    void broadcastShouldReachEveryRecipientButNotTheSender() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final var receivedByA = new ArrayBlockingQueue<String>(10);
+        final var receivedByB = new ArrayBlockingQueue<String>(10);
+        final var receivedByC = new ArrayBlockingQueue<String>(10);
+
+        try (final var a = new TcpClient("127.0.0.1", port);
+                final var b = new TcpClient("127.0.0.1", port);
+                final var c = new TcpClient("127.0.0.1", port)) {
+
+            a.setResponseTimeoutMs(2000).connect();
+            b.setResponseTimeoutMs(2000).connect();
+            c.setResponseTimeoutMs(2000).connect();
+
+            a.addBroadcastListener(receivedByA::offer);
+            b.addBroadcastListener(receivedByB::offer);
+            c.addBroadcastListener(receivedByC::offer);
+
+            final long deadline = System.currentTimeMillis() + 2000;
+            while (server.getConnectedClientsCount() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            a.sendMessage("!broadcast héllo wörld", false);
+
+            final String toB = receivedByB.poll(2, TimeUnit.SECONDS);
+            final String toC = receivedByC.poll(2, TimeUnit.SECONDS);
+            assertNotNull(toB, "Client B should receive a broadcast");
+            assertNotNull(toC, "Client C should receive a broadcast");
+            assertEquals(toB, toC, "Every recipient should get the same payload");
+            assertTrue(toB.endsWith("-> héllo wörld"), "Unexpected broadcast: " + toB);
+
+            assertNull(receivedByA.poll(300, TimeUnit.MILLISECONDS), "Sender must not receive its own broadcast");
+        }
+    }
+
+    @Test
+    void parallelFanOutShouldCompleteWithRecipientCount() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port).setParallelBroadcastThreshold(1);
+        server.start();
+
+        final var receivedByA = new ArrayBlockingQueue<String>(10);
+        final var receivedByB = new ArrayBlockingQueue<String>(10);
+
+        try (final var a = new TcpClient("127.0.0.1", port);
+                final var b = new TcpClient("127.0.0.1", port)) {
+
+            a.setResponseTimeoutMs(2000).connect();
+            b.setResponseTimeoutMs(2000).connect();
+
+            a.addBroadcastListener(receivedByA::offer);
+            b.addBroadcastListener(receivedByB::offer);
+
+            final long deadline = System.currentTimeMillis() + 2000;
+            while (server.getConnectedClientsCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            final int recipients = server.broadcast(new Socket(), "sharded").get(2, TimeUnit.SECONDS);
+            assertEquals(2, recipients);
+
+            assertNotNull(receivedByA.poll(2, TimeUnit.SECONDS));
+            assertNotNull(receivedByB.poll(2, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void coalescingWindowShouldGatherBurstIntoFewWrites() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port).setBroadcastCoalesceWindowMicros(10_000);
+        server.start();
+
+        final var received = new ArrayBlockingQueue<String>(100);
+
+        try (final var a = new TcpClient("127.0.0.1", port)) {
+            a.setResponseTimeoutMs(2000).connect();
+            a.addBroadcastListener(received::offer);
+
+            final long deadline = System.currentTimeMillis() + 2000;
+            while (server.getConnectedClientsCount() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            final var sender = new Socket();
+            for (int i = 0; i < 50; i++) {
+                server.broadcast(sender, "burst-" + i);
+            }
+
+            for (int i = 0; i < 50; i++) {
+                final String msg = received.poll(2, TimeUnit.SECONDS);
+                assertNotNull(msg, "Missing broadcast #" + i);
+                assertTrue(msg.endsWith("burst-" + i), "Out of order: " + msg);
+            }
+
+            final var stats = server.getBroadcastBatchStats();
+            assertEquals(50, stats.messages());
+            assertTrue(stats.maxBatchSize() > 1, "Burst should be coalesced: " + stats);
+        }
+    }
+
+    @Test
+    void lateJoinerShouldReplayRetainedBroadcasts() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port).setBroadcastHistory(16, 64 * 1024);
+        server.start();
+
+        final var sender = new Socket();
+        server.broadcast(sender, "first");
+        server.broadcast(sender, "second");
+        server.broadcast(sender, "third");
+
+        final var received = new ArrayBlockingQueue<String>(10);
+
+        try (final var late = new TcpClient("127.0.0.1", port)) {
+            late.setResponseTimeoutMs(2000).connect();
+            late.addBroadcastListener(received::offer);
+
+            assertEquals("OK REPLAYED 2", late.sendMessage("!replay 2", false));
+            assertTrue(received.poll(2, TimeUnit.SECONDS).endsWith("second"));
+            assertTrue(received.poll(2, TimeUnit.SECONDS).endsWith("third"));
+        }
+    }
 }
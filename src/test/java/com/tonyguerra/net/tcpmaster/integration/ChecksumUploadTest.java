@@ -0,0 +1,142 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+
+final class ChecksumUploadTest {
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static byte[] content(int size) {
+        final byte[] content = new byte[size];
+        for (int i = 0; i < size; i++)
+            content[i] = (byte) (i % 239);
+        return content;
+    }
+
+    private static Path stored(String remoteName) {
+        return Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+    }
+
+    @Test
+    void uploadWithChecksumShouldBeStored() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final byte[] content = content(3 * 1024 * 1024 + 17);
+        final var local = Files.createTempFile("tcp-master-checksum-", ".bin");
+        Files.write(local, content);
+
+        final String remoteName = "checksum-" + UUID.randomUUID() + ".bin";
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setUploadChecksum(FileChecksum.Algorithm.SHA256).connect();
+
+            assertEquals("OK STORED " + remoteName, client.uploadFile(local, remoteName));
+            assertArrayEquals(content, Files.readAllBytes(stored(remoteName)));
+        } finally {
+            Files.deleteIfExists(stored(remoteName));
+            Files.deleteIfExists(local);
+        }
+    }
+
+    @Test
+    void mismatchShouldBeRejectedAndDiscarded() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final byte[] content = content(256 * 1024);
+        final String remoteName = "checksum-bad-" + UUID.randomUUID() + ".bin";
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.connect();
+
+            assertEquals("OK READY", client.sendMessage(
+                    "!file.put " + remoteName + " " + content.length + " crc32c=00000000", false));
+            client.sendBinary(new ByteArrayInputStream(content), content.length);
+
+            assertEquals("ERROR CHECKSUM", client.readNextResponse());
+            assertFalse(Files.exists(stored(remoteName)));
+            assertFalse(Files.exists(stored(remoteName + ".part")));
+
+            assertEquals("ERROR Invalid checksum",
+                    client.sendMessage("!file.put " + remoteName + " 10 md5=abc", false));
+        } finally {
+            Files.deleteIfExists(stored(remoteName));
+        }
+    }
+
+    @Test
+    void resumedUploadShouldCoverBytesFromEarlierConnection() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final byte[] content = content(2 * 1024 * 1024);
+        final int half = content.length / 2;
+        final var local = Files.createTempFile("tcp-master-checksum-", ".bin");
+        Files.write(local, content);
+
+        final String remoteName = "checksum-resume-" + UUID.randomUUID() + ".bin";
+        final var part = stored(remoteName + ".part");
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            // First connection sends half of the file and dies
+            try (final var socket = new Socket("127.0.0.1", port)) {
+                final var out = socket.getOutputStream();
+                out.write(("!file.put " + remoteName + " " + content.length + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                out.write(content, 0, half);
+                out.flush();
+
+                final long deadline = System.currentTimeMillis() + 5000;
+                while ((!Files.exists(part) || Files.size(part) < half) && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+            }
+
+            client.connect();
+            final String checksum = FileChecksum.compute(FileChecksum.Algorithm.CRC32C, local);
+
+            assertEquals("OK READY", client.sendMessage(
+                    "!file.put " + remoteName + " " + content.length + " " + half + " " + checksum, false));
+            client.sendBinary(new ByteArrayInputStream(content, half, content.length - half), content.length - half);
+
+            assertEquals("OK STORED " + remoteName, client.readNextResponse());
+            assertArrayEquals(content, Files.readAllBytes(stored(remoteName)));
+        } finally {
+            Files.deleteIfExists(stored(remoteName));
+            Files.deleteIfExists(part);
+            Files.deleteIfExists(local);
+        }
+    }
+}
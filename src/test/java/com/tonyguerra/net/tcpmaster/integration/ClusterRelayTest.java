@@ -0,0 +1,187 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class ClusterRelayTest {
+    private static final String SECRET = "mesh-secret";
+
+    private final List<TcpServer> nodes = new ArrayList<>();
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(TcpServer::close);
+    }
+
+    private void startMesh(int size) throws Exception {
+        final var ports = new ArrayList<Integer>();
+        for (int i = 0; i < size; i++) {
+            ports.add(freePort());
+        }
+
+        for (int i = 0; i < size; i++) {
+            final var seeds = new ArrayList<InetSocketAddress>();
+            for (int j = 0; j < size; j++) {
+                if (j != i) {
+                    seeds.add(new InetSocketAddress("127.0.0.1", ports.get(j)));
+                }
+            }
+
+            final var node = new TcpServer(ports.get(i));
+            node.start();
+            node.joinCluster("node" + i, SECRET, seeds);
+            nodes.add(node);
+        }
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        for (final var node : nodes) {
+            while (node.getConnectedClusterLinks() < size - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(size - 1, node.getConnectedClusterLinks());
+        }
+    }
+
+    @Test
+    void broadcastShouldReachClientsOnEveryNode() throws Exception {
+        startMesh(3);
+
+        final var receivedOnB = new ArrayBlockingQueue<String>(10);
+        final var receivedOnC = new ArrayBlockingQueue<String>(10);
+
+        try (final var a = new TcpClient("127.0.0.1", nodes.get(0).getPort());
+                final var b = new TcpClient("127.0.0.1", nodes.get(1).getPort());
+                final var c = new TcpClient("127.0.0.1", nodes.get(2).getPort())) {
+
+            a.setResponseTimeoutMs(2000).connect();
+            b.setResponseTimeoutMs(2000).connect();
+            c.setResponseTimeoutMs(2000).connect();
+
+            b.addBroadcastListener(receivedOnB::offer);
+            c.addBroadcastListener(receivedOnC::offer);
+
+            // One round trip each guarantees the nodes have registered b and c
+            b.sendMessage("!ping", false);
+            c.sendMessage("!ping", false);
+
+            a.sendMessage("!broadcast across the mesh", false);
+
+            final String onB = receivedOnB.poll(3, TimeUnit.SECONDS);
+            final String onC = receivedOnC.poll(3, TimeUnit.SECONDS);
+            assertNotNull(onB, "Client on node B should receive the broadcast");
+            assertNotNull(onC, "Client on node C should receive the broadcast");
+            assertTrue(onB.endsWith("-> across the mesh"), "Unexpected broadcast: " + onB);
+
+            // Exactly once per node
+            assertNull(receivedOnB.poll(300, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    void publishShouldReachSubscribersOnOtherNodes() throws Exception {
+        startMesh(2);
+
+        final var receivedOnB = new ArrayBlockingQueue<String>(10);
+
+        try (final var a = new TcpClient("127.0.0.1", nodes.get(0).getPort());
+                final var b = new TcpClient("127.0.0.1", nodes.get(1).getPort())) {
+
+            a.setResponseTimeoutMs(2000).connect();
+            b.setResponseTimeoutMs(2000).connect();
+            b.addBroadcastListener(receivedOnB::offer);
+
+            b.sendMessage("!subscribe orders.>", false);
+            a.sendMessage("!publish orders.eu.new 42", false);
+
+            final String onB = receivedOnB.poll(3, TimeUnit.SECONDS);
+            assertNotNull(onB, "Subscriber on node B should receive the publish");
+            assertTrue(onB.startsWith("[PUBLISH] orders.eu.new "), "Unexpected publish: " + onB);
+        }
+    }
+
+    @Test
+    void relayFromNonPeerShouldBeRejected() throws Exception {
+        final int port = freePort();
+        final var node = new TcpServer(port);
+        node.start();
+        node.joinCluster("solo", SECRET, List.of());
+        nodes.add(node);
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(2000).connect();
+
+            final String resp = client.sendMessage("!cluster.relay x-1 B /1.2.3.4:5 spoofed", false);
+            assertTrue(resp.startsWith("ERROR"), "Unexpected response: " + resp);
+        }
+    }
+
+    @Test
+    void helloWithoutTheSecretShouldNotMakeAPeer() throws Exception {
+        final int port = freePort();
+        final var node = new TcpServer(port);
+        node.start();
+        node.joinCluster("solo", SECRET, List.of());
+        nodes.add(node);
+
+        final var received = new ArrayBlockingQueue<String>(10);
+
+        try (final var client = new TcpClient("127.0.0.1", port);
+                final var other = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(2000).connect();
+            other.setResponseTimeoutMs(2000).connect();
+            client.addBroadcastListener(received::offer);
+
+            assertTrue(client.sendMessage("!cluster.hello intruder", false).startsWith("OK CHALLENGE "));
+            assertEquals("ERROR Unauthorized", client.sendMessage("!cluster.auth 00", false));
+
+            // Neither relays nor a second try without a new hello are accepted
+            assertTrue(client.sendMessage("!cluster.relay solo-1 B /1.2.3.4:5 spoofed", false).startsWith("ERROR"));
+            assertEquals("ERROR Unauthorized", client.sendMessage("!cluster.auth 00", false));
+
+            // Still an ordinary client: local broadcasts reach it
+            other.sendMessage("!broadcast still here", false);
+            final String broadcast = received.poll(3, TimeUnit.SECONDS);
+            assertNotNull(broadcast);
+            assertTrue(broadcast.endsWith("-> still here"), "Unexpected broadcast: " + broadcast);
+        }
+    }
+
+    @Test
+    void nodeWithAnotherSecretShouldNotLink() throws Exception {
+        final int portA = freePort();
+        final int portB = freePort();
+
+        final var a = new TcpServer(portA);
+        a.start();
+        a.joinCluster("a", SECRET, List.of(new InetSocketAddress("127.0.0.1", portB)));
+        nodes.add(a);
+
+        final var b = new TcpServer(portB);
+        b.start();
+        b.joinCluster("b", "other-secret", List.of(new InetSocketAddress("127.0.0.1", portA)));
+        nodes.add(b);
+
+        Thread.sleep(1000);
+        assertEquals(0, a.getConnectedClusterLinks());
+        assertEquals(0, b.getConnectedClusterLinks());
+    }
+}
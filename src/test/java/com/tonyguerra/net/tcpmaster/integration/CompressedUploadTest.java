@@ -0,0 +1,193 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+
+final class CompressedUploadTest {
+    private TcpServer server;
+    private ServerSocket proxy;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        if (proxy != null) {
+            proxy.close();
+        }
+    }
+
+    private static byte[] csv(int size) {
+        final var sb = new StringBuilder();
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append(i).append(",2026-10-18T12:00:00Z,INFO,order-service,processed order ").append(i % 97)
+                    .append('\n');
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static Path stored(String remoteName) {
+        return Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+    }
+
+    @Test
+    void compressibleUploadShouldSendFewerBytes() throws Exception {
+        final var upstreamBytes = new AtomicLong();
+        final int port = startServerBehindProxy(Long.MAX_VALUE, upstreamBytes);
+
+        final byte[] content = csv(8 * 1024 * 1024 + 5);
+        final var local = Files.createTempFile("tcp-master-compress-", ".csv");
+        Files.write(local, content);
+        final String remoteName = "compressed-" + UUID.randomUUID() + ".csv";
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setUploadCompression("deflate").setUploadChecksum(FileChecksum.Algorithm.CRC32C).connect();
+
+            assertEquals("OK STORED " + remoteName, client.uploadFile(local, remoteName));
+            assertArrayEquals(content, Files.readAllBytes(stored(remoteName)));
+            assertTrue(upstreamBytes.get() < content.length / 4, "Sent " + upstreamBytes.get() + " bytes");
+
+            assertEquals("ERROR Unknown codec", client.sendMessage("!file.put x.bin 10 codec=nope", false));
+        } finally {
+            Files.deleteIfExists(stored(remoteName));
+            Files.deleteIfExists(local);
+        }
+    }
+
+    @Test
+    void incompressibleUploadShouldBeSentRaw() throws Exception {
+        final var upstreamBytes = new AtomicLong();
+        final int port = startServerBehindProxy(Long.MAX_VALUE, upstreamBytes);
+
+        final byte[] content = new byte[2 * 1024 * 1024];
+        new Random(41).nextBytes(content);
+        final var local = Files.createTempFile("tcp-master-compress-", ".bin");
+        Files.write(local, content);
+        final String remoteName = "raw-" + UUID.randomUUID() + ".bin";
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setUploadCompression("deflate").connect();
+
+            assertEquals("OK STORED " + remoteName, client.uploadFile(local, remoteName));
+            assertArrayEquals(content, Files.readAllBytes(stored(remoteName)));
+
+            // Header + raw bytes: no frame headers, no expansion
+            final long overhead = upstreamBytes.get() - content.length;
+            assertTrue(overhead >= 0 && overhead < 200, "Overhead " + overhead);
+        } finally {
+            Files.deleteIfExists(stored(remoteName));
+            Files.deleteIfExists(local);
+        }
+    }
+
+    @Test
+    void compressedUploadShouldResumeAfterConnectionDrop() throws Exception {
+        final var upstreamBytes = new AtomicLong();
+        final int port = startServerBehindProxy(200 * 1024, upstreamBytes);
+
+        final byte[] content = csv(8 * 1024 * 1024);
+        final var local = Files.createTempFile("tcp-master-compress-", ".csv");
+        Files.write(local, content);
+        final String remoteName = "compressed-resume-" + UUID.randomUUID() + ".csv";
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setUploadCompression("deflate").setResponseTimeoutMs(5000).connect();
+
+            assertEquals("OK STORED " + remoteName, client.uploadFile(local, remoteName));
+            assertArrayEquals(content, Files.readAllBytes(stored(remoteName)));
+        } finally {
+            Files.deleteIfExists(stored(remoteName));
+            Files.deleteIfExists(stored(remoteName + ".part"));
+            Files.deleteIfExists(local);
+        }
+    }
+
+    // Starts the server and a proxy in front of it that counts client -> server
+    // bytes and cuts the first connection after `cutFirstAfter` of them.
+    // Returns the proxy port.
+    private int startServerBehindProxy(long cutFirstAfter, AtomicLong upstreamBytes) throws IOException {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        proxy = new ServerSocket(0);
+        final var connections = new AtomicInteger();
+        final var acceptor = new Thread(() -> {
+            while (!proxy.isClosed()) {
+                try {
+                    final Socket downstream = proxy.accept();
+                    final Socket upstream = new Socket("127.0.0.1", port);
+                    final long limit = connections.incrementAndGet() == 1 ? cutFirstAfter : Long.MAX_VALUE;
+
+                    pump(downstream.getInputStream(), upstream.getOutputStream(), limit, upstreamBytes,
+                            downstream, upstream);
+                    pump(upstream.getInputStream(), downstream.getOutputStream(), Long.MAX_VALUE, null,
+                            downstream, upstream);
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        }, "CompressedUploadTest-Proxy");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        return proxy.getLocalPort();
+    }
+
+    private static void pump(InputStream in, OutputStream out, long limit, AtomicLong counter, Socket a, Socket b) {
+        final var t = new Thread(() -> {
+            final byte[] buf = new byte[16 * 1024];
+            long forwarded = 0;
+            try {
+                int n;
+                while ((n = in.read(buf, 0, (int) Math.min(buf.length, limit - forwarded))) > 0) {
+                    out.write(buf, 0, n);
+                    forwarded += n;
+                    if (counter != null) {
+                        counter.addAndGet(n);
+                    }
+                    if (forwarded >= limit) {
+                        break;
+                    }
+                }
+            } catch (IOException ignored) {
+            } finally {
+                try {
+                    a.close();
+                } catch (IOException ignored) {
+                }
+                try {
+                    b.close();
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+}
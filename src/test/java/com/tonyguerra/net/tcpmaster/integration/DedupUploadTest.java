@@ -0,0 +1,92 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.tonyguerra.net.tcpmaster.configurations.Globals;
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+
+final class DedupUploadTest {
+    private TcpServer server;
+    private Path previousBaseDir;
+
+    // The object store and its shard directories stay out of ./uploads
+    @TempDir
+    Path baseDir;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        previousBaseDir = Globals.getBaseDirUploads();
+        Globals.setBaseDirUploads(baseDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+        Globals.setBaseDirUploads(previousBaseDir.toString());
+    }
+
+    private static Path stored(String remoteName) {
+        return Globals.getBaseDirUploads().resolve(remoteName).normalize();
+    }
+
+    @Test
+    void repeatedContentShouldBeLinkedWithoutTransfer() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port).setContentAddressedStorage(true);
+        server.start();
+
+        final byte[] content = (UUID.randomUUID() + "-artifact-").repeat(20_000).getBytes();
+        final var local = Files.createTempFile("tcp-master-dedup-", ".bin");
+        Files.write(local, content);
+
+        final String first = "dedup-" + UUID.randomUUID() + ".bin";
+        final String second = "dedup-copies/" + UUID.randomUUID() + ".bin";
+        final var object = server.getContentStore().objectOf(
+                FileChecksum.compute(FileChecksum.Algorithm.SHA256, local).substring("sha256=".length()));
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setUploadChecksum(FileChecksum.Algorithm.SHA256).connect();
+
+            assertEquals("OK STORED " + stored(first).getFileName(), client.uploadFile(local, first));
+
+            final var progress = new AtomicLong();
+            assertEquals("OK EXISTS " + stored(second).getFileName(),
+                    client.uploadFile(local, second, (sent, total) -> progress.set(sent)));
+            assertEquals(content.length, progress.get());
+
+            assertArrayEquals(content, Files.readAllBytes(stored(second)));
+            assertTrue(Files.isSameFile(stored(first), stored(second)), "Both names should share one copy");
+            assertTrue(Files.isSameFile(object, stored(first)));
+
+            assertEquals("ERROR Reserved name", client.sendMessage("!file.put .objects/x 10", false));
+            // Names that only reach the store once normalized
+            assertEquals("ERROR Reserved name", client.sendMessage("!file.put x/../.objects/ab/cd 10", false));
+            assertEquals("ERROR Reserved name", client.sendMessage("!file.put ./.objects/ab/cd 10", false));
+            assertEquals("ERROR Reserved name", client.sendMessage("!file.push /.objects/ab/cd 0", false));
+        } finally {
+            Files.deleteIfExists(local);
+        }
+    }
+}
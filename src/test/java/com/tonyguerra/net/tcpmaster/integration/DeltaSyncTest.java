@@ -0,0 +1,144 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class DeltaSyncTest {
+    private TcpServer server;
+    private Path stored;
+    private Path local;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        if (stored != null) {
+            Files.deleteIfExists(stored);
+        }
+        if (local != null) {
+            Files.deleteIfExists(local);
+        }
+    }
+
+    @Test
+    void modifiedFileShouldBeSentAsADelta() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final String remote = "delta-" + UUID.randomUUID() + ".bin";
+        stored = Path.of("uploads").toAbsolutePath().resolve(remote);
+
+        final byte[] old = new byte[4 * 1024 * 1024];
+        new Random(7).nextBytes(old);
+        Files.write(stored, old);
+
+        // Shift the second half by a small insertion and change a few bytes
+        final byte[] content = new byte[old.length + 100];
+        System.arraycopy(old, 0, content, 0, old.length / 2);
+        System.arraycopy(old, old.length / 2, content, old.length / 2 + 100, old.length / 2);
+        content[12345] ^= 0x55;
+        local = Files.createTempFile("tcp-master-delta-", ".bin");
+        Files.write(local, content);
+
+        final var sent = new AtomicLong();
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(10_000).connect();
+
+            final String confirm = client.syncFile(local, remote, (done, total) -> sent.set(total));
+
+            assertTrue(confirm.startsWith("OK STORED"), "Unexpected confirm: " + confirm);
+            assertEquals("OK", client.sendMessage("plain", false));
+        }
+
+        assertArrayEquals(content, Files.readAllBytes(stored));
+        assertTrue(sent.get() > 0 && sent.get() < content.length / 50, "Delta bytes: " + sent.get());
+    }
+
+    @Test
+    void missingRemoteCopyShouldFallBackToFullUpload() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final String remote = "delta-new-" + UUID.randomUUID() + ".txt";
+        stored = Path.of("uploads").toAbsolutePath().resolve(remote);
+        local = Files.createTempFile("tcp-master-delta-", ".txt");
+        Files.writeString(local, "brand new file");
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            assertTrue(client.syncFile(local, remote).startsWith("OK STORED"));
+        }
+
+        assertEquals("brand new file", Files.readString(stored));
+    }
+
+    @Test
+    void deltaForAChangedServerCopyShouldBeRejected() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final String remote = "delta-stale-" + UUID.randomUUID() + ".bin";
+        stored = Path.of("uploads").toAbsolutePath().resolve(remote);
+        Files.write(stored, new byte[10_000]);
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            // One copy op that rebuilds the stored zeros, but a checksum of other content
+            assertEquals("OK READY", client.sendMessage("!file.delta " + remote + " 13 10000 crc32c=00000000", false));
+            final var op = ByteBuffer.allocate(13).put((byte) 1).putLong(0).putInt(10_000);
+            client.sendBinary(new ByteArrayInputStream(op.array()), 13);
+
+            assertEquals("ERROR CHECKSUM", client.readNextResponse());
+            assertEquals("OK", client.sendMessage("plain", false));
+        }
+
+        assertEquals(10_000, Files.size(stored));
+        assertFalse(Files.exists(stored.resolveSibling(remote + ".part")));
+    }
+
+    @Test
+    void partialUploadsShouldHaveNoSignature() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final String remote = "delta-part-" + UUID.randomUUID() + ".bin";
+        stored = Path.of("uploads").toAbsolutePath().resolve(remote + ".part");
+        Files.write(stored, new byte[10_000]);
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            assertEquals("ERROR Not found", client.sendMessage("!file.sig " + remote + ".part 2048", false));
+            assertEquals("ERROR Not found", client.sendMessage("!file.sig x/../" + remote + ".part/. 2048", false));
+            assertEquals("OK", client.sendMessage("plain", false));
+        }
+    }
+}
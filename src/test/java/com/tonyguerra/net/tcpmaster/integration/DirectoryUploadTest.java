@@ -0,0 +1,173 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.tonyguerra.net.tcpmaster.configurations.Globals;
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+
+final class DirectoryUploadTest {
+    private TcpServer server;
+    private Path stored;
+    private Path previousBaseDir;
+
+    @TempDir
+    Path local;
+
+    // Uploads and the object store stay out of ./uploads
+    @TempDir
+    Path baseDir;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        previousBaseDir = Globals.getBaseDirUploads();
+        Globals.setBaseDirUploads(baseDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+        Globals.setBaseDirUploads(previousBaseDir.toString());
+    }
+
+    @Test
+    void shouldUploadTreeWithSmallLargeAndEmptyFiles() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        for (int i = 0; i < 300; i++) {
+            write("small/" + (i % 7) + "/f" + i + ".txt", ("file " + i).getBytes());
+        }
+        final byte[] large = new byte[2 * 1024 * 1024 + 17];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 241);
+        }
+        write("large.bin", large);
+        write("empty.txt", new byte[0]);
+
+        final String root = "tree-" + UUID.randomUUID();
+        stored = Globals.getBaseDirUploads().resolve(root);
+        final var lastProgress = new AtomicLong();
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setLogNonBroadcastMessages(false).setResponseTimeoutMs(10_000).connect();
+
+            final var results = client.uploadDirectory(local, root, (done, total) -> {
+                assertEquals(302, total);
+                lastProgress.set(done);
+            });
+
+            assertEquals(302, results.size());
+            results.forEach((path, reply) -> assertTrue(reply.startsWith("OK STORED"), path + ": " + reply));
+            assertEquals(302, lastProgress.get());
+
+            // The connection is still in sync afterwards
+            assertEquals("OK", client.sendMessage("plain", false));
+        }
+
+        assertEquals("file 123", Files.readString(stored.resolve("small/4/f123.txt")));
+        assertArrayEquals(large, Files.readAllBytes(stored.resolve("large.bin")));
+        assertEquals(0, Files.size(stored.resolve("empty.txt")));
+    }
+
+    @Test
+    void refusedFilesShouldNotBreakThePipeline() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        write("a.txt", "first".getBytes());
+        write("b.part", "reserved name".getBytes());
+        write("c.txt", "third".getBytes());
+
+        final String root = "refused-" + UUID.randomUUID();
+        stored = Globals.getBaseDirUploads().resolve(root);
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            final var results = client.uploadDirectory(local, root);
+
+            assertTrue(results.get(root + "/a.txt").startsWith("OK STORED"));
+            assertEquals("ERROR Reserved name", results.get(root + "/b.part"));
+            assertTrue(results.get(root + "/c.txt").startsWith("OK STORED"));
+            assertEquals("OK", client.sendMessage("plain", false));
+        }
+
+        assertEquals("third", Files.readString(stored.resolve("c.txt")));
+    }
+
+    @Test
+    void rateLimitedPushesShouldBeDiscarded() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port).setCommandRateLimit(0.1, 3);
+        server.start();
+
+        for (int i = 0; i < 5; i++) {
+            write("f" + i + ".txt", ("content " + i).getBytes());
+        }
+
+        final String root = "limited-" + UUID.randomUUID();
+        stored = Globals.getBaseDirUploads().resolve(root);
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            final var replies = client.uploadDirectory(local, root).values().stream().toList();
+
+            assertEquals(3, replies.stream().filter(r -> r.startsWith("OK STORED")).count());
+            assertEquals(2, replies.stream().filter("ERROR RATE LIMITED"::equals).count());
+        }
+    }
+
+    @Test
+    void checksummedPushShouldReuseStoredContent() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port).setContentAddressedStorage(true);
+        server.start();
+
+        final String content = "shared content";
+        write("one.txt", content.getBytes());
+
+        final String root = "cas-" + UUID.randomUUID();
+        stored = Globals.getBaseDirUploads().resolve(root);
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setUploadChecksum(FileChecksum.Algorithm.SHA256).setResponseTimeoutMs(5000).connect();
+
+            assertTrue(client.uploadDirectory(local, root).get(root + "/one.txt").startsWith("OK STORED"));
+            assertTrue(client.uploadDirectory(local, root + "/copy").get(root + "/copy/one.txt")
+                    .startsWith("OK EXISTS"));
+        }
+
+        assertEquals(content, Files.readString(stored.resolve("copy/one.txt")));
+    }
+
+    private void write(String relative, byte[] content) throws IOException {
+        final var file = local.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+}
@@ -0,0 +1,117 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.enums.Durability;
+
+final class DurabilityTest {
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void perFileDurabilityShouldStoreUploads() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port).setDurability(Durability.PER_FILE);
+        server.start();
+
+        assertNull(server.getGroupCommitter());
+        uploadConcurrently(port, 2, 3);
+    }
+
+    @Test
+    void groupCommitShouldBatchConcurrentUploads() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port).setDurability(Durability.GROUP_COMMIT, 20_000);
+        server.start();
+
+        final int uploads = uploadConcurrently(port, 8, 3);
+
+        final var committer = server.getGroupCommitter();
+        // One data flush and one directory flush per upload
+        assertEquals(2L * uploads, committer.requestCount());
+        assertTrue(committer.batchCount() < committer.requestCount(),
+                "Flushes should be batched: " + committer.batchCount() + " batches");
+    }
+
+    // Each client uploads `files` small files; returns the number of uploads
+    private int uploadConcurrently(int port, int clients, int files) throws Exception {
+        final var dir = "durability-" + UUID.randomUUID();
+        final var start = new CountDownLatch(1);
+        final List<CompletableFuture<Void>> done = new ArrayList<>();
+
+        try {
+            for (int c = 0; c < clients; c++) {
+                final int client = c;
+                done.add(CompletableFuture.runAsync(() -> {
+                    try (TcpClient tcp = new TcpClient("127.0.0.1", port)) {
+                        tcp.connect();
+                        start.await();
+                        for (int f = 0; f < files; f++) {
+                            final var local = Files.createTempFile("tcp-master-durable-", ".txt");
+                            try {
+                                Files.writeString(local, "client " + client + " file " + f);
+                                final String name = dir + "/c" + client + "-" + f + ".txt";
+                                assertTrue(tcp.uploadFile(local, name).startsWith("OK STORED"));
+                            } finally {
+                                Files.deleteIfExists(local);
+                            }
+                        }
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }));
+            }
+
+            start.countDown();
+            CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+            final var stored = Path.of("uploads").toAbsolutePath().resolve(dir);
+            for (int c = 0; c < clients; c++) {
+                for (int f = 0; f < files; f++) {
+                    assertEquals("client " + c + " file " + f,
+                            Files.readString(stored.resolve("c" + c + "-" + f + ".txt"), StandardCharsets.UTF_8));
+                }
+            }
+            return clients * files;
+        } finally {
+            final var stored = Path.of("uploads").toAbsolutePath().resolve(dir);
+            if (Files.isDirectory(stored)) {
+                try (final var entries = Files.list(stored)) {
+                    for (final var entry : entries.toList()) {
+                        Files.deleteIfExists(entry);
+                    }
+                }
+                Files.deleteIfExists(stored);
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.errors.TcpException;
+
+final class FileDownloadIntegrationTest {
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void shouldDownloadWholeFileAndRanges() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final byte[] content = new byte[700_000];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) (i % 251);
+
+        final String remoteName = "get-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+        Files.createDirectories(stored.getParent());
+        Files.write(stored, content);
+        final var partOf = stored.resolveSibling(remoteName + ".part");
+
+        final var local = Files.createTempFile("tcp-master-download-", ".bin");
+        final var ranged = Files.createTempFile("tcp-master-download-range-", ".bin");
+        final var lastReceived = new AtomicLong();
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            final long received = client.downloadFile(remoteName, local, (done, total) -> {
+                assertTrue(done >= lastReceived.get());
+                lastReceived.set(done);
+                assertEquals(content.length, total);
+            });
+
+            assertEquals(content.length, received);
+            assertEquals(content.length, lastReceived.get());
+            assertArrayEquals(content, Files.readAllBytes(local));
+
+            // Range: bytes land at the same offset in the local file
+            assertEquals(1000, client.downloadFile(remoteName, ranged, 5000, 1000, null));
+            final byte[] part = Files.readAllBytes(ranged);
+            assertEquals(6000, part.length);
+            assertArrayEquals(Arrays.copyOfRange(content, 5000, 6000), Arrays.copyOfRange(part, 5000, 6000));
+
+            // Range past the end is clamped
+            assertEquals(10, client.downloadFile(remoteName, ranged, content.length - 10, 1000, null));
+
+            // The connection is still usable for line commands
+            assertEquals("OK", client.sendMessage("hello", false));
+
+            final var ex = assertThrows(TcpException.class,
+                    () -> client.downloadFile("missing-" + UUID.randomUUID(), local));
+            assertTrue(ex.getMessage().contains("ERROR Not found"), ex.getMessage());
+
+            // Partial uploads are not downloadable, however they are named
+            Files.write(partOf, new byte[] { 1, 2, 3 });
+            for (final String name : new String[] { remoteName + ".part", "x/../" + remoteName + ".part/." }) {
+                final var reserved = assertThrows(TcpException.class, () -> client.downloadFile(name, local));
+                assertTrue(reserved.getMessage().contains("ERROR Not found"), reserved.getMessage());
+            }
+        } finally {
+            Files.deleteIfExists(stored);
+            Files.deleteIfExists(partOf);
+            Files.deleteIfExists(local);
+            Files.deleteIfExists(ranged);
+        }
+    }
+
+    @Test
+    void broadcastsShouldNotInterleaveWithDownloadPayload() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final byte[] content = new byte[4 * 1024 * 1024];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) (i % 253);
+
+        final String remoteName = "get-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+        Files.createDirectories(stored.getParent());
+        Files.write(stored, content);
+
+        final var local = Files.createTempFile("tcp-master-download-", ".bin");
+        final var broadcasts = new ArrayBlockingQueue<String>(100);
+
+        try (TcpClient receiver = new TcpClient("127.0.0.1", port);
+                TcpClient sender = new TcpClient("127.0.0.1", port)) {
+            receiver.setResponseTimeoutMs(5000).connect();
+            sender.setResponseTimeoutMs(5000).connect();
+            receiver.addBroadcastListener(broadcasts::offer);
+
+            final var download = receiver.downloadFileAsync(remoteName, local, null);
+            for (int i = 0; i < 20; i++) {
+                sender.sendMessage("!broadcast tick-" + i, false);
+            }
+
+            assertEquals(content.length, download.get(10, TimeUnit.SECONDS));
+            assertArrayEquals(content, Files.readAllBytes(local));
+
+            for (int i = 0; i < 20; i++) {
+                assertNotNull(broadcasts.poll(2, TimeUnit.SECONDS), "Missing broadcast " + i);
+            }
+        } finally {
+            Files.deleteIfExists(stored);
+            Files.deleteIfExists(local);
+        }
+    }
+
+    @Test
+    void cachedDownloadsShouldServeMappedFilesAndSeeUploads() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port).setDownloadCache(16 * 1024 * 1024, 4 * 1024 * 1024);
+        server.start();
+
+        final byte[] content = new byte[300_000];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) (i % 249);
+
+        final String remoteName = "cached-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+        Files.createDirectories(stored.getParent());
+        Files.write(stored, content);
+
+        final var local = Files.createTempFile("tcp-master-download-", ".bin");
+        final var replacement = Files.createTempFile("tcp-master-upload-", ".bin");
+        Files.writeString(replacement, "replaced content");
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals(content.length, client.downloadFile(remoteName, local));
+                assertArrayEquals(content, Files.readAllBytes(local));
+            }
+            assertEquals(1, server.getDownloadCache().hits());
+
+            // Range served from the mapping
+            assertEquals(1000, client.downloadFile(remoteName, local, 250_000, 1000, null));
+            assertArrayEquals(Arrays.copyOfRange(content, 250_000, 251_000),
+                    Arrays.copyOfRange(Files.readAllBytes(local), 250_000, 251_000));
+
+            // An upload to the same path invalidates the mapping
+            assertTrue(client.uploadFile(replacement, remoteName).startsWith("OK STORED"));
+            assertEquals(16, client.downloadFile(remoteName, local));
+            assertEquals("replaced content", Files.readString(local));
+        } finally {
+            Files.deleteIfExists(stored);
+            Files.deleteIfExists(local);
+            Files.deleteIfExists(replacement);
+        }
+    }
+
+    @Test
+    void headerTimeoutShouldDropTheConnection() throws Exception {
+        final var local = Files.createTempFile("tcp-master-download-", ".bin");
+        final var requested = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        // Answers the request only after the client has given up on it
+        try (final var stub = new ServerSocket(0)) {
+            final var responder = new Thread(() -> {
+                try (final Socket socket = stub.accept()) {
+                    final var in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                            StandardCharsets.UTF_8));
+                    in.readLine();
+                    requested.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    final var out = socket.getOutputStream();
+                    out.write("OK SIZE 3\nabcOK\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } catch (IOException | InterruptedException ex) {
+                    // The client may already be gone
+                }
+            }, "FileDownloadIntegrationTest-Stub");
+            responder.setDaemon(true);
+            responder.start();
+
+            try (TcpClient client = new TcpClient("127.0.0.1", stub.getLocalPort())) {
+                client.setResponseTimeoutMs(300).connect();
+
+                final var ex = assertThrows(TcpException.class, () -> client.downloadFile("slow.bin", local));
+                assertTrue(ex.getMessage().contains("Timeout"), ex.getMessage());
+                assertTrue(requested.await(0, TimeUnit.SECONDS));
+
+                // The late header cannot be taken for the reply to another request
+                assertFalse(client.isConnected());
+                assertThrows(TcpException.class, () -> client.sendMessage("plain", false));
+            } finally {
+                release.countDown();
+                responder.join(5000);
+                Files.deleteIfExists(local);
+            }
+        }
+    }
+}
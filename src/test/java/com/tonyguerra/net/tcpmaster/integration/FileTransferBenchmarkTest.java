@@ -0,0 +1,318 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.core.components.FileChecksum;
+import com.tonyguerra.net.tcpmaster.enums.Durability;
+
+/**
+ * Loopback upload throughput: server receive path vs. the former 8 KB heap copy
+ * loop, the cost of checksum verification, parallel chunked uploads by number
+ * of streams, and small-file uploads per durability mode.
+ *
+ * Run with: mvn test -Dtest=FileTransferBenchmarkTest -Dtcpmaster.bench=true
+ * [-Dtcpmaster.bench.bytes=4294967296]
+ */
+@EnabledIfSystemProperty(named = "tcpmaster.bench", matches = "true")
+final class FileTransferBenchmarkTest {
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void uploadThroughput() throws Exception {
+        final long size = Long.getLong("tcpmaster.bench.bytes", 2L * 1024 * 1024 * 1024);
+        final var source = createSource(size);
+
+        try {
+            final double baseline = heapCopyBaseline(source, size);
+            final double server = serverUpload(source, size, "");
+
+            System.out.printf("[bench] %d MiB  heap copy: %.0f MiB/s  server receive: %.0f MiB/s  (x%.2f)%n",
+                    size >> 20, baseline, server, server / baseline);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Test
+    void checksumUploadThroughput() throws Exception {
+        final long size = Long.getLong("tcpmaster.bench.bytes", 2L * 1024 * 1024 * 1024);
+        final var source = createSource(size);
+
+        try {
+            final double plain = serverUpload(source, size, "");
+            for (final var algorithm : FileChecksum.Algorithm.values()) {
+                server.close();
+                final String option = " " + FileChecksum.compute(algorithm, source);
+                final double verified = serverUpload(source, size, option);
+
+                System.out.printf("[bench] %d MiB  no checksum: %.0f MiB/s  %s: %.0f MiB/s%n",
+                        size >> 20, plain, algorithm.key(), verified);
+            }
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Test
+    void parallelUploadThroughput() throws Exception {
+        final long size = Long.getLong("tcpmaster.bench.bytes", 2L * 1024 * 1024 * 1024);
+        final var source = createSource(size);
+
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            for (final int streams : new int[] { 1, 2, 4, 8 }) {
+                final String remoteName = "bench-" + UUID.randomUUID() + ".bin";
+                final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+                try {
+                    final long start = System.nanoTime();
+                    client.uploadFileParallel(source, remoteName, streams, null);
+                    final long elapsed = System.nanoTime() - start;
+
+                    assertEquals(size, Files.size(stored));
+                    System.out.printf("[bench] %d MiB  %d stream(s): %.0f MiB/s%n",
+                            size >> 20, streams, mibPerSecond(size, elapsed));
+                } finally {
+                    Files.deleteIfExists(stored);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Test
+    void smallFileDurabilityThroughput() throws Exception {
+        final int clients = 16;
+        final int filesPerClient = 32;
+        final var local = Files.createTempFile("tcp-master-bench-small-", ".bin");
+        Files.write(local, new byte[4096]);
+
+        try {
+            for (final var mode : Durability.values()) {
+                final int port = freePort();
+                server = new TcpServer(port).setDurability(mode);
+                server.start();
+
+                final var dir = "bench-" + UUID.randomUUID();
+                final long start = System.nanoTime();
+                final var workers = new ArrayList<CompletableFuture<Void>>();
+                for (int c = 0; c < clients; c++) {
+                    final int client = c;
+                    workers.add(CompletableFuture.runAsync(() -> {
+                        try (final var tcp = new TcpClient("127.0.0.1", port)) {
+                            tcp.setLogNonBroadcastMessages(false).connect();
+                            for (int f = 0; f < filesPerClient; f++) {
+                                tcp.uploadFile(local, dir + "/" + client + "-" + f + ".bin");
+                            }
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }));
+                }
+                CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).get();
+                final long elapsed = System.nanoTime() - start;
+
+                System.out.printf("[bench] %d x 4 KiB files, %d clients, %s: %.0f files/s%n",
+                        clients * filesPerClient, clients, mode, clients * filesPerClient / (elapsed / 1e9));
+
+                server.close();
+                try (final var entries = Files.list(Path.of("uploads").toAbsolutePath().resolve(dir))) {
+                    for (final var entry : entries.toList()) {
+                        Files.delete(entry);
+                    }
+                }
+                Files.delete(Path.of("uploads").toAbsolutePath().resolve(dir));
+            }
+        } finally {
+            Files.deleteIfExists(local);
+        }
+    }
+
+    @Test
+    void directoryUploadThroughput() throws Exception {
+        final int count = 2000;
+        final var localDir = Files.createTempDirectory("tcp-master-bench-dir-");
+        for (int i = 0; i < count; i++) {
+            Files.write(localDir.resolve("f" + i + ".bin"), new byte[1024]);
+        }
+
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final var sequentialDir = "bench-" + UUID.randomUUID();
+        final var pipelinedDir = "bench-" + UUID.randomUUID();
+        try (final var tcp = new TcpClient("127.0.0.1", port)) {
+            tcp.setLogNonBroadcastMessages(false).connect();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                tcp.uploadFile(localDir.resolve("f" + i + ".bin"), sequentialDir + "/f" + i + ".bin");
+            }
+            final long sequential = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final var results = tcp.uploadDirectory(localDir, pipelinedDir);
+            final long pipelined = System.nanoTime() - start;
+            assertEquals(count, results.size());
+
+            System.out.printf("[bench] %d x 1 KiB files: uploadFile loop %.0f files/s, uploadDirectory %.0f files/s%n",
+                    count, count / (sequential / 1e9), count / (pipelined / 1e9));
+        } finally {
+            for (final var dir : List.of(localDir, Path.of("uploads").toAbsolutePath().resolve(sequentialDir),
+                    Path.of("uploads").toAbsolutePath().resolve(pipelinedDir))) {
+                if (Files.isDirectory(dir)) {
+                    try (final var entries = Files.list(dir)) {
+                        for (final var entry : entries.toList()) {
+                            Files.delete(entry);
+                        }
+                    }
+                    Files.delete(dir);
+                }
+            }
+        }
+    }
+
+    private double serverUpload(Path source, long size, String options) throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        final String remoteName = "bench-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+
+        try (final var channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                final var file = FileChannel.open(source, StandardOpenOption.READ)) {
+            final var in = channel.socket().getInputStream();
+
+            channel.write(StandardCharsets.UTF_8.encode("!file.put " + remoteName + " " + size + options + "\n"));
+            assertEquals("OK READY", readLine(in));
+
+            final long start = System.nanoTime();
+            sendAll(file, channel, size);
+            final String confirm = readLine(in);
+            final long elapsed = System.nanoTime() - start;
+
+            assertTrue(confirm.startsWith("OK STORED"), "Unexpected confirm: " + confirm);
+            assertEquals(size, Files.size(stored));
+            return mibPerSecond(size, elapsed);
+        } finally {
+            Files.deleteIfExists(stored);
+        }
+    }
+
+    // The receive loop TcpServer used before: socket stream -> 8 KB byte[] -> file stream
+    private static double heapCopyBaseline(Path source, long size) throws Exception {
+        final var target = Files.createTempFile("tcp-master-bench-baseline-", ".bin");
+
+        try (final var listener = new ServerSocket(0)) {
+            final var receiver = CompletableFuture.supplyAsync(() -> {
+                try (final var socket = listener.accept();
+                        final var in = socket.getInputStream();
+                        final var out = Files.newOutputStream(target)) {
+                    final byte[] buf = new byte[8192];
+                    long remaining = size;
+                    final long start = System.nanoTime();
+                    while (remaining > 0) {
+                        final int read = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+                        if (read == -1)
+                            throw new IOException("Stream closed");
+                        out.write(buf, 0, read);
+                        remaining -= read;
+                    }
+                    out.flush();
+                    return System.nanoTime() - start;
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+
+            try (final var channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", listener.getLocalPort()));
+                    final var file = FileChannel.open(source, StandardOpenOption.READ)) {
+                sendAll(file, channel, size);
+            }
+
+            return mibPerSecond(size, receiver.get());
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private static void sendAll(FileChannel file, SocketChannel channel, long size) throws IOException {
+        long position = 0;
+        while (position < size) {
+            position += file.transferTo(position, size - position, channel);
+        }
+    }
+
+    private static Path createSource(long size) throws IOException {
+        final var source = Files.createTempFile("tcp-master-bench-", ".bin");
+        final var chunk = ByteBuffer.allocateDirect(1024 * 1024);
+        for (int i = 0; i < chunk.capacity(); i++) {
+            chunk.put(i, (byte) (i % 251));
+        }
+
+        try (final var file = FileChannel.open(source, StandardOpenOption.WRITE)) {
+            long written = 0;
+            while (written < size) {
+                chunk.clear().limit((int) Math.min(chunk.capacity(), size - written));
+                while (chunk.hasRemaining()) {
+                    written += file.write(chunk);
+                }
+            }
+        }
+        return source;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        final var line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8).trim();
+    }
+
+    private static double mibPerSecond(long bytes, long nanos) {
+        return (bytes / 1048576d) / (nanos / 1e9);
+    }
+}
@@ -75,4 +75,36 @@ final class FileUploadIntegrationTest {
         Files.deleteIfExists(stored);
         Files.deleteIfExists(tmpFile);
     }
+
+    @Test
+    void shouldRecreateDirectoryRemovedBetweenUploads() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final var tmpFile = Files.createTempFile("tcp-master-upload-", ".txt");
+        Files.writeString(tmpFile, "payload");
+
+        final String dir = "dir-" + UUID.randomUUID();
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(dir);
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            assertTrue(client.uploadFile(tmpFile, dir + "/a.txt").startsWith("OK STORED"));
+
+            // The server remembers the directory; removing it must not break uploads
+            Files.delete(stored.resolve("a.txt"));
+            Files.delete(stored);
+
+            assertTrue(client.uploadFile(tmpFile, dir + "/b.txt").startsWith("OK STORED"));
+            assertEquals("payload", Files.readString(stored.resolve("b.txt")));
+        } finally {
+            Files.deleteIfExists(stored.resolve("a.txt"));
+            Files.deleteIfExists(stored.resolve("b.txt"));
+            Files.deleteIfExists(stored);
+            Files.deleteIfExists(tmpFile);
+        }
+    }
 }
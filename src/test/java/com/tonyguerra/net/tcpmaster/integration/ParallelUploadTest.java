@@ -0,0 +1,148 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class ParallelUploadTest {
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void shouldAssembleChunksSentOverSeveralConnections() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        // Not a multiple of the chunk size, so the last chunk is short
+        final byte[] content = new byte[9 * 1024 * 1024 + 123];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) ((i * 31) % 257);
+
+        final var local = Files.createTempFile("tcp-master-parallel-", ".bin");
+        Files.write(local, content);
+
+        final String remoteName = "parallel-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+        final var maxProgress = new AtomicLong();
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            final String confirm = client.uploadFileParallel(local, remoteName, 4,
+                    (sent, total) -> maxProgress.accumulateAndGet(sent, Math::max));
+
+            assertEquals("OK STORED " + remoteName, confirm);
+            assertEquals(content.length, maxProgress.get());
+            assertArrayEquals(content, Files.readAllBytes(stored));
+            assertFalse(Files.exists(stored.resolveSibling(remoteName + ".part")));
+        } finally {
+            Files.deleteIfExists(stored);
+            Files.deleteIfExists(local);
+        }
+    }
+
+    private static String chunk(String remoteName, long size, long offset, long length, String uploadId) {
+        return String.format("!file.chunk %s %d %d %d %s", remoteName, size, offset, length, uploadId);
+    }
+
+    @Test
+    void retryShouldNotInheritTheRangesOfAnAbortedUpload() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final byte[] content = new byte[64 * 1024];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) ((i * 31) % 257);
+        final int half = content.length / 2;
+
+        final String remoteName = "parallel-retry-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+
+        try {
+            // The aborted attempt delivered the first half (other bytes), then went away
+            try (TcpClient aborted = new TcpClient("127.0.0.1", port)) {
+                aborted.setResponseTimeoutMs(5000).connect();
+                assertEquals("OK READY", aborted.sendMessage(chunk(remoteName, content.length, 0, half, "a"), false));
+                aborted.sendBinary(new ByteArrayInputStream(new byte[half]), half);
+                assertEquals("OK CHUNK " + half, aborted.readNextResponse());
+            }
+
+            try (TcpClient retry = new TcpClient("127.0.0.1", port)) {
+                retry.setResponseTimeoutMs(5000).connect();
+
+                // Another id: the stale first half does not count
+                assertEquals("OK READY", retry.sendMessage(chunk(remoteName, content.length, half, half, "b"), false));
+                retry.sendBinary(new ByteArrayInputStream(content, half, half), half);
+                assertEquals("OK CHUNK " + half, retry.readNextResponse());
+                assertFalse(Files.exists(stored));
+
+                assertEquals("OK READY", retry.sendMessage(chunk(remoteName, content.length, 0, half, "b"), false));
+                retry.sendBinary(new ByteArrayInputStream(content, 0, half), half);
+                assertEquals("OK STORED " + remoteName, retry.readNextResponse());
+            }
+
+            assertArrayEquals(content, Files.readAllBytes(stored));
+            assertFalse(Files.exists(stored.resolveSibling(remoteName + ".part")));
+        } finally {
+            Files.deleteIfExists(stored);
+        }
+    }
+
+    @Test
+    void brokenChunkShouldDropTheUpload() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final String remoteName = "parallel-broken-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+        final var part = stored.resolveSibling(remoteName + ".part");
+
+        try {
+            try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+                client.setResponseTimeoutMs(5000).connect();
+                assertEquals("OK READY", client.sendMessage(chunk(remoteName, 4096, 0, 1024, "a"), false));
+                // Half of the chunk, then the connection goes away
+                assertThrows(IOException.class, () -> client.sendBinary(new ByteArrayInputStream(new byte[512]), 1024));
+            }
+
+            // Chunks are not resumable: nothing of the upload is kept
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (Files.exists(part) && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(Files.exists(part));
+            assertFalse(Files.exists(stored));
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class PubSubTest {
+
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null)
+            server.close();
+    }
+
+    @Test
+    void publishShouldReachOnlyMatchingSubscribers() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final var receivedByB = new ArrayBlockingQueue<String>(10);
+        final var receivedByC = new ArrayBlockingQueue<String>(10);
+
+        try (final var a = new TcpClient("127.0.0.1", port);
+                final var b = new TcpClient("127.0.0.1", port);
+                final var c = new TcpClient("127.0.0.1", port)) {
+
+            a.setResponseTimeoutMs(2000).connect();
+            b.setResponseTimeoutMs(2000).connect();
+            c.setResponseTimeoutMs(2000).connect();
+
+            b.addBroadcastListener(receivedByB::offer);
+            c.addBroadcastListener(receivedByC::offer);
+
+            assertEquals("OK SUBSCRIBED prices.*.btc", b.sendMessage("!subscribe prices.*.btc", false));
+            assertEquals("OK SUBSCRIBED news.>", c.sendMessage("!subscribe news.>", false));
+
+            assertEquals("OK PUBLISHED 1", a.sendMessage("!publish prices.eu.btc 64250.10", false));
+
+            final String toB = receivedByB.poll(2, TimeUnit.SECONDS);
+            assertNotNull(toB, "Subscriber B should receive the publish");
+            assertTrue(toB.startsWith("[PUBLISH] prices.eu.btc "), "Unexpected publish: " + toB);
+            assertTrue(toB.endsWith("-> 64250.10"), "Unexpected publish: " + toB);
+            assertNull(receivedByC.poll(300, TimeUnit.MILLISECONDS), "C is not subscribed to prices");
+
+            assertEquals("OK UNSUBSCRIBED prices.*.btc", b.sendMessage("!unsubscribe prices.*.btc", false));
+            assertEquals("OK PUBLISHED 0", a.sendMessage("!publish prices.eu.btc 1", false));
+            assertEquals("ERROR Invalid topic", a.sendMessage("!publish prices.* 1", false));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class RateLimitTest {
+
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null)
+            server.close();
+    }
+
+    @Test
+    void commandsOverTheBurstShouldBeRejected() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port).setCommandRateLimit(0.1, 3);
+        server.start();
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(2000).connect();
+
+            assertEquals("OK", client.sendMessage("one", false));
+            assertEquals("OK", client.sendMessage("two", false));
+            assertEquals("OK", client.sendMessage("three", false));
+            assertEquals("ERROR RATE LIMITED", client.sendMessage("four", false));
+            assertEquals(1, server.getRateLimitedCount());
+        }
+    }
+
+    @Test
+    void broadcastLimitShouldNotAffectOtherCommands() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port).setBroadcastRateLimit(0.1, 1);
+        server.start();
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(2000).connect();
+
+            assertEquals("OK PUBLISHED 0", client.sendMessage("!publish news.a first", false));
+            assertEquals("ERROR RATE LIMITED", client.sendMessage("!publish news.a second", false));
+            assertEquals("OK", client.sendMessage("plain", false));
+        }
+    }
+
+    @Test
+    void byteLimitShouldRejectLinesOverTheBudget() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port).setInboundByteRateLimit(1, 16);
+        server.start();
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(2000).connect();
+
+            assertEquals("OK", client.sendMessage("0123456789", false)); // 11 bytes
+            assertEquals("ERROR RATE LIMITED", client.sendMessage("0123456789", false));
+        }
+    }
+
+    @Test
+    void unauthenticatedClusterHelloShouldNotLiftTheLimits() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port).setBroadcastRateLimit(0.1, 1);
+        server.start();
+        server.joinCluster("solo", "mesh-secret", List.of());
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(2000).connect();
+
+            assertTrue(client.sendMessage("!cluster.hello intruder", false).startsWith("OK CHALLENGE "));
+            assertEquals("ERROR Unauthorized", client.sendMessage("!cluster.auth 00", false));
+
+            assertEquals("OK PUBLISHED 0", client.sendMessage("!publish news.a first", false));
+            assertEquals("ERROR RATE LIMITED", client.sendMessage("!publish news.a second", false));
+        }
+    }
+}
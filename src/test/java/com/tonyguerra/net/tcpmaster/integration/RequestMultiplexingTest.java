@@ -0,0 +1,163 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.errors.TcpException;
+
+final class RequestMultiplexingTest {
+
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null)
+            server.close();
+    }
+
+    @Test
+    void concurrentRequestsShouldGetTheirOwnReplies() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        try (final var shared = new TcpClient("127.0.0.1", port);
+                final var publisher = new TcpClient("127.0.0.1", port)) {
+            shared.setRequestMultiplexing(true).setLogNonBroadcastMessages(false).setResponseTimeoutMs(5000).connect();
+            publisher.setResponseTimeoutMs(5000).connect();
+
+            // Pushed messages interleave with the replies
+            assertEquals("OK SUBSCRIBED noise", shared.sendMessage("!subscribe noise", false));
+
+            final List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int worker = t;
+                workers.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        final String topic = "t" + worker + "." + i;
+                        try {
+                            assertEquals("OK SUBSCRIBED " + topic, shared.sendMessage("!subscribe " + topic, false));
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < 200; i++) {
+                publisher.sendMessage("!publish noise " + i, false);
+            }
+
+            CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+            assertEquals("OK", shared.sendMessage("plain", false));
+        }
+    }
+
+    @Test
+    void taggedUploadShouldBeConfirmedWithTheSameId() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final String remote = "mux-" + UUID.randomUUID() + ".txt";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remote);
+        final byte[] content = "multiplexed".getBytes(StandardCharsets.UTF_8);
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setRequestMultiplexing(true).setResponseTimeoutMs(5000).connect();
+
+            assertEquals("OK READY", client.sendMessage("!file.put " + remote + " " + content.length, false));
+            client.sendBinary(new ByteArrayInputStream(content), content.length);
+
+            // Nobody waits for the id any more: the confirmation goes to readNextResponse
+            assertTrue(client.readNextResponse().startsWith("OK STORED"));
+            assertEquals("OK", client.sendMessage("plain", false));
+        } finally {
+            assertArrayEquals(content, Files.readAllBytes(stored));
+            Files.deleteIfExists(stored);
+        }
+    }
+
+    @Test
+    void untaggedClientsShouldBeUnaffected() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        try (final var client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            assertEquals("OK", client.sendMessage("#hashtag message", false));
+            assertEquals("OK SUBSCRIBED a.b", client.sendMessage("!subscribe a.b", false));
+        }
+    }
+
+    @Test
+    void lateTaggedReplyShouldNotReachTheNextReader() throws Exception {
+        final var requested = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        // Answers the request only after the client has given up on it
+        try (final var stub = new ServerSocket(0)) {
+            final var responder = new Thread(() -> {
+                try (final Socket socket = stub.accept()) {
+                    final var in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                            StandardCharsets.UTF_8));
+                    final String request = in.readLine();
+                    requested.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    final String id = request.substring(0, request.indexOf(' '));
+                    socket.getOutputStream().write((id + " late\n").getBytes(StandardCharsets.UTF_8));
+                    socket.getOutputStream().flush();
+                    in.readLine();
+                } catch (IOException | InterruptedException ex) {
+                    // The client may already be gone
+                }
+            }, "RequestMultiplexingTest-Stub");
+            responder.setDaemon(true);
+            responder.start();
+
+            try (final var client = new TcpClient("127.0.0.1", stub.getLocalPort())) {
+                client.setRequestMultiplexing(true).setResponseTimeoutMs(300).connect();
+
+                assertThrows(TcpException.class, () -> client.sendMessage("slow", false));
+                assertTrue(requested.await(0, TimeUnit.SECONDS));
+                release.countDown();
+
+                // An untagged reader (e.g. an upload confirmation) must not get it
+                assertThrows(TcpException.class, () -> client.readNextResponse(500));
+            } finally {
+                release.countDown();
+                responder.join(5000);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class ResumableUploadTest {
+    private TcpServer server;
+    private ServerSocket proxy;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        if (proxy != null) {
+            proxy.close();
+        }
+    }
+
+    @Test
+    void uploadShouldResumeFromPartialFileAfterConnectionDrop() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        // The first connection through the proxy is cut after 1 MB of upstream bytes
+        final var connections = new AtomicInteger();
+        final var upstreamBytes = new AtomicLong();
+        proxy = startProxy(port, 1024 * 1024, connections, upstreamBytes);
+
+        final byte[] content = new byte[4 * 1024 * 1024];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) (i % 241);
+
+        final var local = Files.createTempFile("tcp-master-resume-", ".bin");
+        Files.write(local, content);
+
+        final String remoteName = "resume-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+        final var maxProgress = new AtomicLong();
+
+        try (TcpClient client = new TcpClient("127.0.0.1", proxy.getLocalPort())) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            final String confirm = client.uploadFile(local, remoteName,
+                    (sent, total) -> maxProgress.accumulateAndGet(sent, Math::max));
+
+            assertTrue(confirm.startsWith("OK STORED"), "Unexpected confirm: " + confirm);
+            assertTrue(connections.get() >= 2, "The upload should have reconnected");
+            assertEquals(content.length, maxProgress.get());
+
+            // Resumed, not restarted: far fewer than 2 full copies crossed the proxy
+            assertTrue(upstreamBytes.get() < content.length + 1024 * 1024 + 64 * 1024,
+                    "Too many bytes re-sent: " + upstreamBytes.get());
+
+            assertArrayEquals(content, Files.readAllBytes(stored));
+            assertFalse(Files.exists(stored.resolveSibling(remoteName + ".part")));
+            assertEquals("OK STAT " + content.length + " COMPLETE",
+                    client.sendMessage("!file.stat " + remoteName, false));
+        } finally {
+            Files.deleteIfExists(stored);
+            Files.deleteIfExists(local);
+        }
+    }
+
+    @Test
+    void statAndPutShouldValidateOffsets() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final String remoteName = "stat-" + UUID.randomUUID() + ".bin";
+        final var stored = Path.of("uploads").toAbsolutePath().resolve(remoteName).normalize();
+        final var part = stored.resolveSibling(remoteName + ".part");
+
+        try (TcpClient client = new TcpClient("127.0.0.1", port)) {
+            client.setResponseTimeoutMs(5000).connect();
+
+            assertEquals("OK STAT 0 MISSING", client.sendMessage("!file.stat " + remoteName, false));
+
+            Files.createDirectories(part.getParent());
+            Files.write(part, new byte[] { 1, 2, 3 });
+
+            assertEquals("OK STAT 3 PARTIAL", client.sendMessage("!file.stat " + remoteName, false));
+            assertEquals("ERROR Invalid offset 3", client.sendMessage("!file.put " + remoteName + " 10 4", false));
+            assertEquals("ERROR Reserved name", client.sendMessage("!file.put " + remoteName + ".part 10", false));
+            assertEquals("ERROR Reserved name", client.sendMessage("!file.put " + remoteName + ".part/. 10", false));
+            assertEquals("ERROR", client.sendMessage("!file.stat " + remoteName + ".part/.", false));
+
+            assertEquals("OK READY", client.sendMessage("!file.put " + remoteName + " 5 3", false));
+            client.sendBinary(new ByteArrayInputStream(new byte[] { 4, 5 }), 2);
+            assertTrue(client.readNextResponse().startsWith("OK STORED"));
+
+            assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, Files.readAllBytes(stored));
+        } finally {
+            Files.deleteIfExists(stored);
+            Files.deleteIfExists(part);
+        }
+    }
+
+    private static ServerSocket startProxy(int targetPort, long cutFirstAfter, AtomicInteger connections,
+            AtomicLong upstreamBytes) throws IOException {
+        final var listener = new ServerSocket(0);
+
+        final var acceptor = new Thread(() -> {
+            while (!listener.isClosed()) {
+                try {
+                    final Socket downstream = listener.accept();
+                    final Socket upstream = new Socket("127.0.0.1", targetPort);
+                    final long limit = connections.incrementAndGet() == 1 ? cutFirstAfter : Long.MAX_VALUE;
+
+                    pump(downstream.getInputStream(), upstream.getOutputStream(), limit, upstreamBytes,
+                            downstream, upstream);
+                    pump(upstream.getInputStream(), downstream.getOutputStream(), Long.MAX_VALUE, null,
+                            downstream, upstream);
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        }, "ResumableUploadTest-Proxy");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        return listener;
+    }
+
+    private static void pump(InputStream in, OutputStream out, long limit, AtomicLong counter, Socket a, Socket b) {
+        final var t = new Thread(() -> {
+            final byte[] buf = new byte[16 * 1024];
+            long forwarded = 0;
+            try {
+                int n;
+                while ((n = in.read(buf, 0, (int) Math.min(buf.length, limit - forwarded))) > 0) {
+                    out.write(buf, 0, n);
+                    forwarded += n;
+                    if (counter != null) {
+                        counter.addAndGet(n);
+                    }
+                    if (forwarded >= limit) {
+                        break;
+                    }
+                }
+            } catch (IOException ignored) {
+            } finally {
+                try {
+                    a.close();
+                } catch (IOException ignored) {
+                }
+                try {
+                    b.close();
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+}
@@ -0,0 +1,136 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.enums.SlowConsumerPolicy;
+
+final class SlowConsumerTest {
+
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null)
+            server.close();
+    }
+
+    private static void awaitClients(TcpServer server, int expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (server.getConnectedClientsCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, server.getConnectedClientsCount());
+    }
+
+    // A client that never reads: its socket buffers fill up and the outbound
+    // queue grows until the policy applies.
+    private static void flood(TcpServer server) {
+        final String chunk = "x".repeat(64 * 1024);
+        final var sender = new Socket();
+        for (int i = 0; i < 2000; i++) {
+            server.broadcast(sender, chunk);
+        }
+    }
+
+    @Test
+    void dropNewestShouldKeepStalledClientConnected() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port)
+                .setMaxOutboundBacklog(16)
+                .setSlowConsumerPolicy(SlowConsumerPolicy.DROP_NEWEST);
+        server.start();
+
+        try (final var stalled = new Socket("127.0.0.1", port)) {
+            assertTrue(stalled.isConnected());
+            awaitClients(server, 1);
+
+            flood(server);
+
+            assertTrue(server.getSlowConsumerEvents(SlowConsumerPolicy.DROP_NEWEST) > 0);
+            assertEquals(0, server.getSlowConsumerEvents(SlowConsumerPolicy.DISCONNECT));
+            assertEquals(1, server.getConnectedClientsCount());
+        }
+    }
+
+    @Test
+    void disconnectShouldRemoveStalledClient() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port)
+                .setMaxOutboundBacklog(16)
+                .setSlowConsumerPolicy(SlowConsumerPolicy.DISCONNECT);
+        server.start();
+
+        try (final var stalled = new Socket("127.0.0.1", port)) {
+            assertTrue(stalled.isConnected());
+            awaitClients(server, 1);
+
+            flood(server);
+
+            assertEquals(1, server.getSlowConsumerEvents(SlowConsumerPolicy.DISCONNECT));
+            awaitClients(server, 0);
+        }
+    }
+
+    @Test
+    void directMessagesShouldBeRefusedRatherThanConflated() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port)
+                .setMaxOutboundBacklog(16)
+                .setSlowConsumerPolicy(SlowConsumerPolicy.CONFLATE);
+        server.start();
+
+        try (final var stalled = new Socket("127.0.0.1", port);
+                final var sender = new TcpClient("127.0.0.1", port)) {
+            // Learn the stalled session's id, then never read again
+            stalled.getOutputStream().write("!whoami\n".getBytes(StandardCharsets.UTF_8));
+            final var reader = new BufferedReader(
+                    new InputStreamReader(stalled.getInputStream(), StandardCharsets.UTF_8));
+            final long stalledId = Long.parseLong(reader.readLine().substring("OK ".length()));
+
+            sender.setResponseTimeoutMs(2000).connect();
+            awaitClients(server, 2);
+
+            final String chunk = "x".repeat(64 * 1024);
+            boolean refused = false;
+            for (int i = 0; i < 2000 && !refused; i++) {
+                refused = !server.sendTo(stalledId, chunk);
+            }
+
+            assertTrue(refused, "A full backlog must refuse direct messages");
+            assertEquals(0, server.getSlowConsumerEvents(SlowConsumerPolicy.CONFLATE));
+
+            // The writer may still free a slot while the socket buffers fill,
+            // so top the backlog up before each whisper
+            String reply = null;
+            for (int i = 0; i < 50 && !"ERROR Recipient busy".equals(reply); i++) {
+                while (server.sendTo(stalledId, chunk)) {
+                    // refill
+                }
+                reply = sender.sendMessage("!whisper " + stalledId + " psst", false);
+            }
+            assertEquals("ERROR Recipient busy", reply);
+            assertEquals(2, server.getConnectedClientsCount());
+        }
+    }
+}
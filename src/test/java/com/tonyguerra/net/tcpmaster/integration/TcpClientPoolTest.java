@@ -0,0 +1,168 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClientPool;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+import com.tonyguerra.net.tcpmaster.errors.TcpException;
+
+final class TcpClientPoolTest {
+
+    private TcpServer server;
+    private TcpClientPool pool;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null)
+            pool.close();
+        if (server != null)
+            server.close();
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void checkoutShouldPreferTheLeastLoadedConnection() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        pool = new TcpClientPool("127.0.0.1", port).setMinSize(1).setMaxSize(2);
+        pool.start();
+        assertEquals(1, pool.size());
+
+        try (final var first = pool.acquire();
+                final var second = pool.acquire()) {
+            // The first connection is busy, so a second one is opened
+            assertNotSame(first.client(), second.client());
+            assertEquals(2, pool.size());
+
+            // At the maximum, leases share the least-loaded connection
+            try (final var third = pool.acquire()) {
+                assertEquals(2, pool.size());
+                assertEquals("OK", third.client().sendMessage("plain", false));
+            }
+        }
+
+        try (final var again = pool.acquire()) {
+            assertTrue(again.client().isConnected());
+        }
+    }
+
+    @Test
+    void sharedConnectionsShouldServeConcurrentRequests() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        pool = new TcpClientPool("127.0.0.1", port).setMaxSize(2)
+                .setClientCustomizer(client -> client.setLogNonBroadcastMessages(false));
+        pool.start();
+
+        final List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int worker = t;
+            workers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 100; i++) {
+                    try (final var lease = pool.acquire()) {
+                        final String topic = "pool" + worker + "." + i;
+                        assertEquals("OK SUBSCRIBED " + topic, lease.client().sendMessage("!subscribe " + topic, false));
+                    } catch (TcpException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            }));
+        }
+
+        CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        assertTrue(pool.size() <= 2);
+    }
+
+    @Test
+    void exclusiveLeaseShouldNotBeShared() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        pool = new TcpClientPool("127.0.0.1", port).setMaxSize(1).setCheckoutTimeoutMs(200);
+        pool.start();
+
+        try (final var exclusive = pool.acquireExclusive()) {
+            assertTrue(exclusive.client().isConnected());
+            assertThrows(TcpException.class, pool::acquire);
+        }
+
+        try (final var shared = pool.acquire()) {
+            assertTrue(shared.client().isConnected());
+            assertThrows(TcpException.class, pool::acquireExclusive);
+        }
+    }
+
+    @Test
+    void idleConnectionsShouldBeEvictedDownToTheMinimum() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        pool = new TcpClientPool("127.0.0.1", port).setMinSize(1).setMaxSize(3).setIdleTimeoutMs(100)
+                .setHealthCheckIntervalMs(0);
+        pool.start();
+
+        try (final var a = pool.acquire(); final var b = pool.acquire(); final var c = pool.acquire()) {
+            assertEquals(3, pool.size());
+            assertNotSame(a.client(), b.client());
+            assertNotSame(b.client(), c.client());
+        }
+
+        awaitCondition(() -> pool.size() == 1);
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void failedHealthChecksShouldReplaceConnections() throws Exception {
+        final int port = freePort();
+        server = new TcpServer(port);
+        server.start();
+
+        pool = new TcpClientPool("127.0.0.1", port).setMinSize(2).setHealthCheckIntervalMs(50)
+                .setClientCustomizer(client -> client.setResponseTimeoutMs(500));
+        pool.start();
+
+        server.close();
+        awaitCondition(() -> pool.size() == 0);
+        assertEquals(0, pool.size());
+        assertEquals(2, pool.getHealthCheckFailures());
+
+        // Refilled to the minimum once the server is back
+        server = new TcpServer(port);
+        server.start();
+        awaitCondition(() -> pool.size() == 2);
+        assertEquals(2, pool.size());
+
+        try (final var lease = pool.acquire()) {
+            assertEquals("OK", lease.client().sendMessage("plain", false));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.tonyguerra.net.tcpmaster.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.tonyguerra.net.tcpmaster.core.TcpClient;
+import com.tonyguerra.net.tcpmaster.core.TcpServer;
+
+final class WhisperTest {
+
+    private TcpServer server;
+
+    private static int freePort() throws IOException {
+        try (final var ss = new ServerSocket(0)) {
+            return ss.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null)
+            server.close();
+    }
+
+    @Test
+    void whisperShouldReachOnlyTheTargetSession() throws Exception {
+        final int port = freePort();
+
+        server = new TcpServer(port);
+        server.start();
+
+        final var receivedByB = new ArrayBlockingQueue<String>(10);
+        final var receivedByC = new ArrayBlockingQueue<String>(10);
+
+        try (final var a = new TcpClient("127.0.0.1", port);
+                final var b = new TcpClient("127.0.0.1", port);
+                final var c = new TcpClient("127.0.0.1", port)) {
+
+            a.setResponseTimeoutMs(2000).connect();
+            b.setResponseTimeoutMs(2000).connect();
+            c.setResponseTimeoutMs(2000).connect();
+
+            b.addBroadcastListener(receivedByB::offer);
+            c.addBroadcastListener(receivedByC::offer);
+
+            final long idA = Long.parseLong(a.sendMessage("!whoami", false).substring("OK ".length()));
+            final long idB = Long.parseLong(b.sendMessage("!whoami", false).substring("OK ".length()));
+            assertNotEquals(idA, idB, "Session ids must be unique");
+
+            assertEquals("OK SENT", a.sendMessage("!whisper " + idB + " psst", false));
+
+            final String toB = receivedByB.poll(2, TimeUnit.SECONDS);
+            assertEquals("[WHISPER] #" + idA + " -> psst", toB);
+            assertNull(receivedByC.poll(300, TimeUnit.MILLISECONDS), "C must not see the whisper");
+
+            assertEquals("ERROR Unknown session", a.sendMessage("!whisper 999999 hello", false));
+            assertFalse(server.sendTo(-1, "nobody"));
+        }
+    }
+}